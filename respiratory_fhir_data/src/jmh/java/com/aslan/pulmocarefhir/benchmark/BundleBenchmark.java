@@ -0,0 +1,114 @@
+package com.aslan.pulmocarefhir.benchmark;
+
+import ca.uhn.fhir.context.FhirContext;
+import ca.uhn.fhir.rest.client.api.IGenericClient;
+import ca.uhn.fhir.rest.client.api.ServerValidationModeEnum;
+import com.aslan.pulmocarefhir.service.DeviceRegistry;
+import com.aslan.pulmocarefhir.service.SpirometryResourceFactory;
+import org.hl7.fhir.r4.model.*;
+import org.openjdk.jmh.annotations.*;
+
+import java.text.ParseException;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+// 리소스 생성, 번들 구성, JSON 인코딩(pretty/compact), 스텁 서버로의 트랜잭션 전송 비용을 측정하는 벤치마크
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Fork(1)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+public class BundleBenchmark {
+
+    // 번들 하나에 담기는 측정 레코드 수 (레코드당 Patient, Device, Observation 2건)
+    @Param({"1", "50", "500"})
+    public int records;
+
+    private FhirContext fhirContext;
+    private SpirometryResourceFactory resourceFactory;
+    private Map<String, String> requestData;
+    private Patient patient;
+    private Device device;
+    private Bundle bundle;
+    private StubFhirServer stubServer;
+    private IGenericClient client;
+    private Bundle singleRecordBundle;
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+        fhirContext = FhirContext.forR4();
+        resourceFactory = new SpirometryResourceFactory(new DeviceRegistry("Example Manufacturer", "Model XYZ", ""));
+
+        requestData = new HashMap<>();
+        requestData.put("username", "Hong");
+        requestData.put("birthDate", "1960-05-17");
+        requestData.put("address", "Seoul");
+        requestData.put("maritalStatus", "Married");
+        requestData.put("FVC", "3.42");
+        requestData.put("FEV1FVC", "71.5");
+
+        patient = resourceFactory.createPatient(requestData);
+        device = resourceFactory.createDevice();
+        bundle = new Bundle().setType(Bundle.BundleType.TRANSACTION);
+        for (int i = 0; i < records; i++) {
+            bundle.getEntry().addAll(createRecordBundle().getEntry());
+        }
+        singleRecordBundle = createRecordBundle();
+
+        stubServer = new StubFhirServer();
+        fhirContext.getRestfulClientFactory().setServerValidationMode(ServerValidationModeEnum.NEVER);
+        client = fhirContext.newRestfulGenericClient(stubServer.getBaseUrl());
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        stubServer.close();
+    }
+
+    @Benchmark
+    public Observation createObservation() {
+        return resourceFactory.createObservation("19868-9", "Forced vital capacity [Volume] Respiratory system by Spirometry",
+                3.42, patient, "L", device);
+    }
+
+    @Benchmark
+    public Device createDevice() {
+        return resourceFactory.createDevice();
+    }
+
+    @Benchmark
+    public Bundle createBundle() throws ParseException {
+        return createRecordBundle();
+    }
+
+    @Benchmark
+    public String encodePretty() {
+        return fhirContext.newJsonParser().setPrettyPrint(true).encodeResourceToString(bundle);
+    }
+
+    @Benchmark
+    public String encodeCompact() {
+        return fhirContext.newJsonParser().encodeResourceToString(bundle);
+    }
+
+    @Benchmark
+    public Bundle parse() {
+        return fhirContext.newJsonParser().parseResource(Bundle.class, fhirContext.newJsonParser().encodeResourceToString(bundle));
+    }
+
+    // 스텁 서버로의 트랜잭션 왕복 (요청 인코딩 + HTTP + 응답 파싱)
+    @Benchmark
+    public Bundle transaction() {
+        return client.transaction().withBundle(singleRecordBundle).execute();
+    }
+
+    private Bundle createRecordBundle() throws ParseException {
+        Patient recordPatient = resourceFactory.createPatient(requestData);
+        Device recordDevice = resourceFactory.createDevice();
+        List<Observation> observations = resourceFactory.createObservations(requestData, recordPatient, recordDevice);
+        return resourceFactory.createBundle(recordPatient, recordDevice, observations);
+    }
+}
@@ -0,0 +1,116 @@
+package com.aslan.pulmocarefhir.benchmark;
+
+import com.aslan.pulmocarefhir.metrics.FhirMetrics;
+import com.aslan.pulmocarefhir.service.ExcelExportService;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.apache.poi.ss.usermodel.Sheet;
+import org.apache.poi.ss.usermodel.Workbook;
+import org.apache.poi.xssf.usermodel.XSSFWorkbook;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Iterator;
+import java.util.concurrent.TimeUnit;
+
+// /to-excel (트리 + XSSFWorkbook + ByteArrayOutputStream) 과 /to-excel/stream (스트리밍 파서 + SXSSFWorkbook) 의
+// 지연 시간과 메모리를 entry 수별로 비교하는 벤치마크
+// 할당 총량은 -prof gc 의 gc.alloc.rate.norm, 동시에 힙에 올라가 있던 최대량은 PeakHeapProfiler 의 ·peak.heap 으로 확인한다
+// 정해진 힙 안에서 끝까지 처리되는지는 jmhJar 로 만든 jar 를 java -jar build/libs/*-jmh.jar ExcelExportBenchmark -jvmArgs -Xmx256m 처럼 힙을 고정하여 실행하면 확인할 수 있다
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 1)
+@Measurement(iterations = 3)
+@Fork(1)
+public class ExcelExportBenchmark {
+
+    // 메모리 변환은 1M entry 에서 힙이 부족하므로 100k 까지만 측정한다
+    @State(Scope.Benchmark)
+    public static class InMemoryInput {
+        @Param({"1000", "100000"})
+        public int entries;
+        Path bundleFile;
+
+        @Setup(Level.Trial)
+        public void setUp() throws IOException {
+            bundleFile = writeBundle(entries);
+        }
+
+        @TearDown(Level.Trial)
+        public void tearDown() throws IOException {
+            Files.deleteIfExists(bundleFile);
+        }
+    }
+
+    @State(Scope.Benchmark)
+    public static class StreamingInput {
+        @Param({"1000", "100000", "1000000"})
+        public int entries;
+        Path bundleFile;
+
+        @Setup(Level.Trial)
+        public void setUp() throws IOException {
+            bundleFile = writeBundle(entries);
+        }
+
+        @TearDown(Level.Trial)
+        public void tearDown() throws IOException {
+            Files.deleteIfExists(bundleFile);
+        }
+    }
+
+    private final ExcelExportService excelExportService = new ExcelExportService(new FhirMetrics(new SimpleMeterRegistry()), 100);
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    @Benchmark
+    public byte[] inMemory(InMemoryInput input) throws IOException {
+        JsonNode root = objectMapper.readTree(Files.readString(input.bundleFile));
+        Workbook workbook = new XSSFWorkbook();
+        Sheet sheet = workbook.createSheet("FHIR Data");
+        excelExportService.writeHeader(sheet);
+
+        int rowIndex = 1;
+        Iterator<JsonNode> elements = root.path("entry").elements();
+        while (elements.hasNext()) {
+            excelExportService.writeResourceRow(sheet.createRow(rowIndex++), elements.next().path("resource"));
+        }
+
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+        workbook.write(outputStream);
+        workbook.close();
+        return outputStream.toByteArray();
+    }
+
+    @Benchmark
+    public int streaming(StreamingInput input) throws IOException {
+        try (InputStream inputStream = new BufferedInputStream(Files.newInputStream(input.bundleFile))) {
+            return excelExportService.exportStreaming(inputStream, OutputStream.nullOutputStream());
+        }
+    }
+
+    // $everything 응답과 같은 형태의 Observation entry 를 가진 번들 JSON 파일을 만드는 메서드
+    static Path writeBundle(int entries) throws IOException {
+        Path file = Files.createTempFile("bundle-" + entries + "-", ".json");
+        try (Writer writer = Files.newBufferedWriter(file, StandardCharsets.UTF_8)) {
+            writer.write("{\"resourceType\":\"Bundle\",\"type\":\"searchset\",\"total\":" + entries + ",\"entry\":[");
+            for (int i = 0; i < entries; i++) {
+                if (i > 0) {
+                    writer.write(',');
+                }
+                writer.write("{\"fullUrl\":\"http://localhost:8080/fhir/Observation/" + i + "\",\"resource\":{"
+                        + "\"resourceType\":\"Observation\",\"id\":\"" + i + "\",\"status\":\"final\","
+                        + "\"category\":[{\"coding\":[{\"system\":\"http://terminology.hl7.org/CodeSystem/observation-category\",\"code\":\"vital-signs\",\"display\":\"Vital Signs\"}]}],"
+                        + "\"code\":{\"coding\":[{\"system\":\"http://loinc.org\",\"code\":\"19868-9\",\"display\":\"Forced vital capacity [Volume] Respiratory system by Spirometry\"}]},"
+                        + "\"subject\":{\"reference\":\"Patient/1\"},\"effectiveDateTime\":\"2024-05-01T09:00:00+09:00\","
+                        + "\"valueQuantity\":{\"value\":" + (3.0 + (i % 100) / 100.0) + ",\"unit\":\"L\",\"system\":\"http://unitsofmeasure.org\",\"code\":\"L\"},"
+                        + "\"device\":{\"reference\":\"Device/2\"}}}");
+            }
+            writer.write("]}");
+        }
+        return file;
+    }
+}
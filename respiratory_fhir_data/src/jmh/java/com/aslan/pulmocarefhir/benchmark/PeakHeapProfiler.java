@@ -0,0 +1,58 @@
+package com.aslan.pulmocarefhir.benchmark;
+
+import org.openjdk.jmh.infra.BenchmarkParams;
+import org.openjdk.jmh.infra.IterationParams;
+import org.openjdk.jmh.profile.InternalProfiler;
+import org.openjdk.jmh.results.AggregationPolicy;
+import org.openjdk.jmh.results.IterationResult;
+import org.openjdk.jmh.results.Result;
+import org.openjdk.jmh.results.ScalarResult;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+// 반복(iteration)마다 힙 메모리 풀의 최대 사용량을 재는 JMH 프로파일러 (-prof com.aslan.pulmocarefhir.benchmark.PeakHeapProfiler)
+// gc.alloc.rate.norm 은 할당한 총량이므로, 한 번에 힙에 올라가 있던 양은 이 값(·peak.heap)으로 비교한다
+// 반복 전에 GC 를 한 번 하고 각 풀의 최대값을 초기화한 뒤, 반복이 끝나면 풀별 최대값의 합을 보고한다
+// 풀마다 최대값에 이른 시점이 다를 수 있으므로 실제 최대 사용량의 상한이다
+public class PeakHeapProfiler implements InternalProfiler {
+
+    private static final double MEGABYTE = 1024.0 * 1024.0;
+
+    @Override
+    public String getDescription() {
+        return "Peak heap usage per iteration";
+    }
+
+    @Override
+    public void beforeIteration(BenchmarkParams benchmarkParams, IterationParams iterationParams) {
+        System.gc();
+        for (MemoryPoolMXBean pool : heapPools()) {
+            pool.resetPeakUsage();
+        }
+    }
+
+    @Override
+    public Collection<? extends Result> afterIteration(BenchmarkParams benchmarkParams, IterationParams iterationParams,
+                                                       IterationResult result) {
+        long peak = 0;
+        for (MemoryPoolMXBean pool : heapPools()) {
+            peak += pool.getPeakUsage().getUsed();
+        }
+        return List.of(new ScalarResult("·peak.heap", peak / MEGABYTE, "MB", AggregationPolicy.MAX));
+    }
+
+    private static List<MemoryPoolMXBean> heapPools() {
+        List<MemoryPoolMXBean> pools = new ArrayList<>();
+        for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+            if (pool.getType() == MemoryType.HEAP && pool.isValid()) {
+                pools.add(pool);
+            }
+        }
+        return pools;
+    }
+}
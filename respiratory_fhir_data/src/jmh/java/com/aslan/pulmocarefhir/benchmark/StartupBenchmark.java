@@ -0,0 +1,141 @@
+package com.aslan.pulmocarefhir.benchmark;
+
+import ca.uhn.fhir.context.FhirContext;
+import ca.uhn.fhir.context.PerformanceOptionsEnum;
+import ca.uhn.fhir.rest.client.api.IGenericClient;
+import ca.uhn.fhir.rest.client.api.ServerValidationModeEnum;
+import com.aslan.pulmocarefhir.FhirServerApplication;
+import com.aslan.pulmocarefhir.config.FhirContextPrewarmer;
+import com.aslan.pulmocarefhir.service.DeviceRegistry;
+import com.aslan.pulmocarefhir.service.SpirometryResourceFactory;
+import org.hl7.fhir.r4.model.*;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.boot.web.context.WebServerApplicationContext;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+// 새 JVM 에서 첫 번째 요청이 성공할 때까지 걸리는 시간을 기본 모드와 빠른 시작 모드(pre-warm)로 비교하는 벤치마크
+// 측정마다 새 JVM 을 띄우고(fork) 측정은 한 번만 하므로 클래스 로딩과 모델 스캔 비용이 그대로 포함된다
+// build.gradle 의 jmh 블록에서 fork/반복 횟수를 지정하면 아래 설정을 덮어쓰므로 전역 설정을 두지 않는다
+// - applicationFirstRequest: FhirServerApplication 을 스텁 서버에 연결하여 띄운 시점부터 POST /api/services 의 첫 성공 응답까지
+// - coldStart: FhirContext 생성(빠른 시작 모드는 pre-warm 포함)부터 첫 트랜잭션 응답까지
+// - firstRequest: FhirContext 준비를 측정 전에 끝낸 뒤 첫 트랜잭션 응답까지
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 0)
+@Measurement(iterations = 1)
+@Fork(10)
+public class StartupBenchmark {
+
+    @Param({"default", "prewarmed"})
+    public String mode;
+
+    private StubFhirServer stubServer;
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+        stubServer = new StubFhirServer();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        stubServer.close();
+    }
+
+    // firstRequest 에서만 쓰는 상태, 다른 벤치마크의 JVM 에서는 만들어지지 않으므로 coldStart 가 미리 로딩된 클래스를 쓰지 않는다
+    @State(Scope.Benchmark)
+    public static class ReadyContext {
+        FhirContext fhirContext;
+
+        @Setup(Level.Trial)
+        public void setUp(StartupBenchmark benchmark) {
+            fhirContext = benchmark.createContext();
+        }
+    }
+
+    // applicationFirstRequest 에서 띄운 애플리케이션, 측정이 끝나면 종료한다
+    @State(Scope.Benchmark)
+    public static class RunningApplication {
+        ConfigurableApplicationContext context;
+
+        @TearDown(Level.Iteration)
+        public void tearDown() {
+            if (context != null) {
+                context.close();
+                context = null;
+            }
+        }
+    }
+
+    @Benchmark
+    public int applicationFirstRequest(RunningApplication application) throws Exception {
+        application.context = new SpringApplicationBuilder(FhirServerApplication.class).run(
+                "--server.port=0",
+                "--spring.main.banner-mode=off",
+                "--logging.level.root=WARN",
+                "--spring.datasource.url=jdbc:h2:mem:startup-benchmark",
+                "--fhir.client.server-base=" + stubServer.getBaseUrl(),
+                "--fhir.client.server-validation=NEVER",
+                "--fhir.startup.prewarm=" + "prewarmed".equals(mode));
+        int port = ((WebServerApplicationContext) application.context).getWebServer().getPort();
+
+        HttpRequest request = HttpRequest.newBuilder(URI.create("http://127.0.0.1:" + port + "/api/services"))
+                .header("Content-Type", "application/json")
+                .POST(HttpRequest.BodyPublishers.ofString("{\"username\":\"Hong\",\"birthDate\":\"1960-05-17\",\"address\":\"Seoul\","
+                        + "\"maritalStatus\":\"Married\",\"FVC\":3.42,\"FEV1FVC\":71.5}"))
+                .build();
+        HttpResponse<String> response = HttpClient.newHttpClient().send(request, HttpResponse.BodyHandlers.ofString());
+        if (response.statusCode() != 201) {
+            throw new IllegalStateException("First request failed with HTTP " + response.statusCode() + ": " + response.body());
+        }
+        return response.statusCode();
+    }
+
+    @Benchmark
+    public Bundle coldStart() throws Exception {
+        return sendFirstTransaction(createContext());
+    }
+
+    @Benchmark
+    public Bundle firstRequest(ReadyContext readyContext) throws Exception {
+        return sendFirstTransaction(readyContext.fhirContext);
+    }
+
+    FhirContext createContext() {
+        FhirContext fhirContext = FhirContext.forR4();
+        if ("prewarmed".equals(mode)) {
+            fhirContext.setPerformanceOptions(PerformanceOptionsEnum.DEFERRED_MODEL_SCANNING);
+            FhirContextPrewarmer.prewarm(fhirContext);
+        }
+        return fhirContext;
+    }
+
+    private Bundle sendFirstTransaction(FhirContext fhirContext) throws Exception {
+        fhirContext.getRestfulClientFactory().setServerValidationMode(ServerValidationModeEnum.NEVER);
+        IGenericClient client = fhirContext.newRestfulGenericClient(stubServer.getBaseUrl());
+
+        Map<String, String> requestData = new HashMap<>();
+        requestData.put("username", "Hong");
+        requestData.put("birthDate", "1960-05-17");
+        requestData.put("address", "Seoul");
+        requestData.put("maritalStatus", "Married");
+        requestData.put("FVC", "3.42");
+        requestData.put("FEV1FVC", "71.5");
+
+        SpirometryResourceFactory resourceFactory = new SpirometryResourceFactory(new DeviceRegistry("Example Manufacturer", "Model XYZ", ""));
+        Patient patient = resourceFactory.createPatient(requestData);
+        Device device = resourceFactory.createDevice();
+        List<Observation> observations = resourceFactory.createObservations(requestData, patient, device);
+        return client.transaction().withBundle(resourceFactory.createBundle(patient, device, observations)).execute();
+    }
+}
@@ -0,0 +1,60 @@
+package com.aslan.pulmocarefhir.benchmark;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+// 실제 HAPI JPA 서버 대신 사용하는 로컬 스텁 서버
+// 트랜잭션 요청에는 Patient, Device, Observation 2건에 대한 고정된 transaction-response 번들을 돌려준다
+// 요청 처리 스레드는 close 에서 함께 종료하므로 trial 마다 만들고 닫아도 fork 에 스레드가 남지 않는다
+public class StubFhirServer implements AutoCloseable {
+
+    private static final byte[] TRANSACTION_RESPONSE = ("{\"resourceType\":\"Bundle\",\"type\":\"transaction-response\",\"entry\":["
+            + "{\"response\":{\"status\":\"201 Created\",\"location\":\"Patient/1/_history/1\"}},"
+            + "{\"response\":{\"status\":\"201 Created\",\"location\":\"Device/2/_history/1\"}},"
+            + "{\"response\":{\"status\":\"201 Created\",\"location\":\"Observation/3/_history/1\"}},"
+            + "{\"response\":{\"status\":\"201 Created\",\"location\":\"Observation/4/_history/1\"}}]}")
+            .getBytes(StandardCharsets.UTF_8);
+
+    private final ExecutorService executor;
+    private final HttpServer server;
+
+    public StubFhirServer() throws IOException {
+        CustomizableThreadFactory threadFactory = new CustomizableThreadFactory("stub-fhir-");
+        threadFactory.setDaemon(true);
+        executor = Executors.newFixedThreadPool(8, threadFactory);
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.createContext("/fhir", this::handle);
+        server.setExecutor(executor);
+        server.start();
+    }
+
+    public String getBaseUrl() {
+        return "http://127.0.0.1:" + server.getAddress().getPort() + "/fhir";
+    }
+
+    private void handle(HttpExchange exchange) throws IOException {
+        try (InputStream requestBody = exchange.getRequestBody()) {
+            requestBody.readAllBytes();
+        }
+        exchange.getResponseHeaders().set("Content-Type", "application/fhir+json");
+        exchange.sendResponseHeaders(200, TRANSACTION_RESPONSE.length);
+        try (OutputStream responseBody = exchange.getResponseBody()) {
+            responseBody.write(TRANSACTION_RESPONSE);
+        }
+    }
+
+    @Override
+    public void close() {
+        server.stop(0);
+        executor.shutdownNow();
+    }
+}
@@ -0,0 +1,90 @@
+package com.aslan.pulmocarefhir.loadtest;
+
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.util.HashMap;
+import java.util.Map;
+
+// 스레드별 누적 할당 바이트와 GC 횟수/시간을 스냅샷으로 남겨 측정 구간의 할당률을 계산한다
+// 스텁 서버와 부하 발생기 스레드는 이름으로 구분하여 애플리케이션 할당량에서 제외하고,
+// 측정 구간 중에 종료된 스레드의 할당량은 집계되지 않는다
+final class AllocationMeter {
+
+    static final String STUB_THREAD_PREFIX = "stub-fhir-";
+    static final String LOADGEN_THREAD_PREFIX = "loadgen-";
+
+    private final com.sun.management.ThreadMXBean threadBean =
+            (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+
+    AllocationMeter() {
+        threadBean.setThreadAllocatedMemoryEnabled(true);
+    }
+
+    Snapshot snapshot() {
+        Map<Long, Long> allocatedBytes = new HashMap<>();
+        Map<Long, String> categories = new HashMap<>();
+        for (Thread thread : Thread.getAllStackTraces().keySet()) {
+            long bytes = threadBean.getThreadAllocatedBytes(thread.getId());
+            if (bytes >= 0) {
+                allocatedBytes.put(thread.getId(), bytes);
+                categories.put(thread.getId(), category(thread.getName()));
+            }
+        }
+        long gcCount = 0;
+        long gcMillis = 0;
+        for (GarbageCollectorMXBean collector : ManagementFactory.getGarbageCollectorMXBeans()) {
+            gcCount += Math.max(0, collector.getCollectionCount());
+            gcMillis += Math.max(0, collector.getCollectionTime());
+        }
+        return new Snapshot(System.nanoTime(), allocatedBytes, categories, gcCount, gcMillis);
+    }
+
+    private static String category(String threadName) {
+        if (threadName.startsWith(STUB_THREAD_PREFIX) || "HTTP-Dispatcher".equals(threadName)) {
+            return "stub";
+        }
+        if (threadName.startsWith(LOADGEN_THREAD_PREFIX) || threadName.startsWith("HttpClient-") || "main".equals(threadName)) {
+            return "loadgen";
+        }
+        return "application";
+    }
+
+    static final class Snapshot {
+        private final long nanoTime;
+        private final Map<Long, Long> allocatedBytes;
+        private final Map<Long, String> categories;
+        private final long gcCount;
+        private final long gcMillis;
+
+        private Snapshot(long nanoTime, Map<Long, Long> allocatedBytes, Map<Long, String> categories, long gcCount, long gcMillis) {
+            this.nanoTime = nanoTime;
+            this.allocatedBytes = allocatedBytes;
+            this.categories = categories;
+            this.gcCount = gcCount;
+            this.gcMillis = gcMillis;
+        }
+
+        // 두 스냅샷 사이에 카테고리별로 할당된 바이트 수
+        Map<String, Long> allocatedSince(Snapshot start) {
+            Map<String, Long> result = new HashMap<>();
+            result.put("application", 0L);
+            result.put("stub", 0L);
+            result.put("loadgen", 0L);
+            allocatedBytes.forEach((threadId, bytes) ->
+                    result.merge(categories.get(threadId), bytes - start.allocatedBytes.getOrDefault(threadId, 0L), Long::sum));
+            return result;
+        }
+
+        double secondsSince(Snapshot start) {
+            return (nanoTime - start.nanoTime) / 1_000_000_000.0;
+        }
+
+        long gcCountSince(Snapshot start) {
+            return gcCount - start.gcCount;
+        }
+
+        long gcMillisSince(Snapshot start) {
+            return gcMillis - start.gcMillis;
+        }
+    }
+}
@@ -0,0 +1,206 @@
+package com.aslan.pulmocarefhir.loadtest;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+
+// 부하 테스트용 인프로세스 스텁 FHIR 서버
+// 트랜잭션/배치, $everything, Patient 조회, Observation 검색, metadata 요청에 HAPI JPA 서버와 같은 형태의 응답을 돌려주고,
+// 응답마다 고정 지연 + 무작위 지연을 주며 errorRate 비율로 503 을 돌려준다
+public class FaultInjectingFhirServer implements AutoCloseable {
+
+    private static final String ID_PLACEHOLDER = "@@ID@@";
+    private static final String LAST_UPDATED = "2024-05-01T09:00:00.000+09:00";
+    private static final byte[] CAPABILITY_STATEMENT = ("{\"resourceType\":\"CapabilityStatement\",\"status\":\"active\","
+            + "\"date\":\"2024-05-01\",\"kind\":\"instance\",\"fhirVersion\":\"4.0.1\",\"format\":[\"json\"]}")
+            .getBytes(StandardCharsets.UTF_8);
+    private static final byte[] UNAVAILABLE = ("{\"resourceType\":\"OperationOutcome\",\"issue\":[{\"severity\":\"error\","
+            + "\"code\":\"transient\",\"diagnostics\":\"Injected failure\"}]}").getBytes(StandardCharsets.UTF_8);
+    private static final byte[] NOT_FOUND = ("{\"resourceType\":\"OperationOutcome\",\"issue\":[{\"severity\":\"error\","
+            + "\"code\":\"not-found\",\"diagnostics\":\"Unknown resource\"}]}").getBytes(StandardCharsets.UTF_8);
+
+    private final HttpServer server;
+    private final ExecutorService executor;
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final long latencyMillis;
+    private final long jitterMillis;
+    private final double errorRate;
+    private final int observationsPerPatient;
+    private final String everythingTemplate;
+    private final String patientTemplate;
+    private final String observationsTemplate;
+    private final AtomicLong nextId = new AtomicLong(1);
+    private final AtomicLong requestCount = new AtomicLong();
+    private final AtomicLong injectedErrorCount = new AtomicLong();
+
+    public FaultInjectingFhirServer(long latencyMillis, long jitterMillis, double errorRate, int observationsPerPatient) throws IOException {
+        this.latencyMillis = latencyMillis;
+        this.jitterMillis = jitterMillis;
+        this.errorRate = errorRate;
+        this.observationsPerPatient = observationsPerPatient;
+        this.patientTemplate = patient();
+        this.everythingTemplate = searchset(observationsPerPatient + 1, entry("Patient", ID_PLACEHOLDER, patientTemplate) + observations(","));
+        this.observationsTemplate = searchset(observationsPerPatient, observations(""));
+
+        // 스레드 이름은 AllocationMeter 가 스텁의 할당량을 애플리케이션과 구분하는 데 사용한다
+        CustomizableThreadFactory threadFactory = new CustomizableThreadFactory(AllocationMeter.STUB_THREAD_PREFIX);
+        threadFactory.setDaemon(true);
+        executor = Executors.newCachedThreadPool(threadFactory);
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 1024);
+        server.createContext("/fhir", this::handle);
+        server.setExecutor(executor);
+        server.start();
+    }
+
+    public String getBaseUrl() {
+        return "http://127.0.0.1:" + server.getAddress().getPort() + "/fhir";
+    }
+
+    public long getRequestCount() {
+        return requestCount.get();
+    }
+
+    public long getInjectedErrorCount() {
+        return injectedErrorCount.get();
+    }
+
+    // 지연/오류 주입 없이 환자의 $everything 응답 본문을 반환하는 메서드
+    public String everything(String patientId) {
+        return everythingTemplate.replace(ID_PLACEHOLDER, patientId);
+    }
+
+    private void handle(HttpExchange exchange) throws IOException {
+        requestCount.incrementAndGet();
+        byte[] requestBody;
+        try (InputStream inputStream = exchange.getRequestBody()) {
+            requestBody = inputStream.readAllBytes();
+        }
+        sleep();
+
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        if (errorRate > 0 && random.nextDouble() < errorRate) {
+            injectedErrorCount.incrementAndGet();
+            respond(exchange, 503, UNAVAILABLE);
+            return;
+        }
+
+        try {
+            route(exchange, requestBody);
+        } catch (RuntimeException e) {
+            respond(exchange, 500, ("{\"resourceType\":\"OperationOutcome\",\"issue\":[{\"severity\":\"fatal\","
+                    + "\"code\":\"exception\",\"diagnostics\":\"" + e.getClass().getSimpleName() + "\"}]}").getBytes(StandardCharsets.UTF_8));
+        }
+    }
+
+    private void route(HttpExchange exchange, byte[] requestBody) throws IOException {
+        String path = exchange.getRequestURI().getPath().substring("/fhir".length());
+        String method = exchange.getRequestMethod();
+        if ("POST".equals(method) && (path.isEmpty() || "/".equals(path))) {
+            respond(exchange, 200, bundleResponse(objectMapper.readTree(requestBody)).getBytes(StandardCharsets.UTF_8));
+        } else if ("/metadata".equals(path)) {
+            respond(exchange, 200, CAPABILITY_STATEMENT);
+        } else if (path.startsWith("/Patient/") && path.endsWith("/$everything")) {
+            String id = path.substring("/Patient/".length(), path.length() - "/$everything".length());
+            respond(exchange, 200, everything(id).getBytes(StandardCharsets.UTF_8));
+        } else if (path.startsWith("/Patient/")) {
+            String id = path.substring("/Patient/".length());
+            respond(exchange, 200, patientTemplate.replace(ID_PLACEHOLDER, id).getBytes(StandardCharsets.UTF_8));
+        } else if ("/Observation".equals(path)) {
+            String query = exchange.getRequestURI().getQuery();
+            String id = query != null && query.contains("Patient/") ? query.substring(query.indexOf("Patient/") + 8).split("&")[0] : "1";
+            respond(exchange, 200, observationsTemplate.replace(ID_PLACEHOLDER, id).getBytes(StandardCharsets.UTF_8));
+        } else {
+            respond(exchange, 404, NOT_FOUND);
+        }
+    }
+
+    // 트랜잭션에는 요청 엔트리 순서대로 location 을, 배치(카운트 요청)에는 변경 없음에 해당하는 total 을 돌려준다
+    private String bundleResponse(JsonNode request) {
+        boolean batch = "batch".equals(request.path("type").asText());
+        StringBuilder response = new StringBuilder(256)
+                .append("{\"resourceType\":\"Bundle\",\"type\":\"").append(batch ? "batch-response" : "transaction-response").append("\",\"entry\":[");
+        int index = 0;
+        for (JsonNode entry : request.path("entry")) {
+            if (index++ > 0) {
+                response.append(',');
+            }
+            String url = entry.path("request").path("url").asText();
+            if (batch) {
+                int total = url.contains("_lastUpdated") ? 0 : observationsPerPatient;
+                response.append("{\"resource\":{\"resourceType\":\"Bundle\",\"type\":\"searchset\",\"total\":").append(total)
+                        .append("},\"response\":{\"status\":\"200 OK\"}}");
+            } else {
+                String location = url.contains("/") ? url.split("\\?")[0] : url.split("\\?")[0] + "/" + nextId.getAndIncrement();
+                response.append("{\"response\":{\"status\":\"201 Created\",\"location\":\"").append(location).append("/_history/1\"}}");
+            }
+        }
+        return response.append("]}").toString();
+    }
+
+    private void sleep() {
+        long delay = latencyMillis + (jitterMillis > 0 ? ThreadLocalRandom.current().nextLong(jitterMillis + 1) : 0);
+        if (delay <= 0) {
+            return;
+        }
+        try {
+            Thread.sleep(delay);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void respond(HttpExchange exchange, int status, byte[] body) throws IOException {
+        exchange.getResponseHeaders().set("Content-Type", "application/fhir+json");
+        exchange.sendResponseHeaders(status, body.length);
+        try (OutputStream outputStream = exchange.getResponseBody()) {
+            outputStream.write(body);
+        }
+    }
+
+    private String patient() {
+        return "{\"resourceType\":\"Patient\",\"id\":\"" + ID_PLACEHOLDER + "\",\"meta\":{\"lastUpdated\":\"" + LAST_UPDATED + "\"},"
+                + "\"name\":[{\"family\":\"Load\",\"given\":[\"Test\"]}],\"gender\":\"unknown\",\"birthDate\":\"1980-01-01\"}";
+    }
+
+    private String observations(String prefix) {
+        StringBuilder entries = new StringBuilder();
+        for (int i = 0; i < observationsPerPatient; i++) {
+            String observation = "{\"resourceType\":\"Observation\",\"id\":\"" + ID_PLACEHOLDER + "-" + i + "\","
+                    + "\"meta\":{\"lastUpdated\":\"" + LAST_UPDATED + "\"},\"status\":\"final\","
+                    + "\"code\":{\"coding\":[{\"system\":\"http://loinc.org\",\"code\":\"19868-9\","
+                    + "\"display\":\"Forced vital capacity [Volume] Respiratory system by Spirometry\"}]},"
+                    + "\"subject\":{\"reference\":\"Patient/" + ID_PLACEHOLDER + "\"},"
+                    + "\"effectiveDateTime\":\"2024-05-01T09:00:00+09:00\","
+                    + "\"valueQuantity\":{\"value\":" + (3.0 + (i % 100) / 100.0) + ",\"unit\":\"L\","
+                    + "\"system\":\"http://unitsofmeasure.org\",\"code\":\"L\"}}";
+            entries.append(i == 0 ? prefix : ",").append(entry("Observation", ID_PLACEHOLDER + "-" + i, observation));
+        }
+        return entries.toString();
+    }
+
+    private static String entry(String type, String id, String resource) {
+        return "{\"fullUrl\":\"http://127.0.0.1/fhir/" + type + "/" + id + "\",\"resource\":" + resource + "}";
+    }
+
+    private static String searchset(int total, String entries) {
+        return "{\"resourceType\":\"Bundle\",\"type\":\"searchset\",\"total\":" + total + ",\"entry\":[" + entries + "]}";
+    }
+
+    @Override
+    public void close() {
+        server.stop(0);
+        executor.shutdownNow();
+    }
+}
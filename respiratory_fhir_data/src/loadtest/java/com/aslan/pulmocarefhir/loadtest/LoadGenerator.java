@@ -0,0 +1,110 @@
+package com.aslan.pulmocarefhir.loadtest;
+
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+// 응답을 기다리지 않고 목표 요청률의 일정한 간격으로 요청을 보내는 개방형(open-model) 부하 발생기
+// 지연 시간은 실제 전송 시각이 아니라 예정된 전송 시각부터 측정하여, 서버가 느려져 전송이 밀린 시간도 지연에 포함한다 (coordinated omission 보정)
+// 시나리오 선택은 시드가 고정된 Random 을 쓰므로 같은 설정이면 같은 요청 순서가 재현된다
+final class LoadGenerator {
+
+    private final HttpClient httpClient;
+    private final List<LoadScenario> scenarios;
+    private final int totalWeight;
+    private final Random random;
+    private final Semaphore inFlight;
+    private final int maxInFlight;
+
+    LoadGenerator(HttpClient httpClient, List<LoadScenario> scenarios, long seed, int maxInFlight) {
+        this.httpClient = httpClient;
+        this.scenarios = scenarios;
+        this.totalWeight = scenarios.stream().mapToInt(LoadScenario::getWeight).sum();
+        this.random = new Random(seed);
+        this.inFlight = new Semaphore(maxInFlight);
+        this.maxInFlight = maxInFlight;
+        if (totalWeight <= 0) {
+            throw new IllegalArgumentException("At least one scenario must have a positive weight.");
+        }
+    }
+
+    // warmup 동안 보낸 요청은 집계하지 않고, 이후 measure 동안 보낸 요청의 결과만 시나리오에 기록한다
+    // 측정 구간의 시작과 끝에서 listener 를 호출하고, 끝나면 남은 요청을 drainMillis 까지 기다린다
+    // 반환값은 그때까지 끝나지 않은 요청 수이다
+    int run(double requestsPerSecond, long warmupMillis, long measureMillis, long drainMillis,
+            MeasurementListener listener) throws InterruptedException {
+        long intervalNanos = (long) (1_000_000_000L / requestsPerSecond);
+        long start = System.nanoTime();
+        long measureStart = start + TimeUnit.MILLISECONDS.toNanos(warmupMillis);
+        long end = measureStart + TimeUnit.MILLISECONDS.toNanos(measureMillis);
+
+        boolean measuring = false;
+        for (long sequence = 0; ; sequence++) {
+            long intended = start + sequence * intervalNanos;
+            if (intended >= end) {
+                break;
+            }
+            long now;
+            while ((now = System.nanoTime()) < intended) {
+                LockSupport.parkNanos(intended - now);
+            }
+
+            LoadScenario scenario = pick();
+            HttpRequest request = scenario.newRequest(random);
+            boolean measured = intended >= measureStart;
+            if (measured && !measuring) {
+                measuring = true;
+                listener.measurementStarted();
+            }
+            if (!inFlight.tryAcquire()) {
+                if (measured) {
+                    scenario.recordDropped();
+                }
+                continue;
+            }
+            httpClient.sendAsync(request, HttpResponse.BodyHandlers.discarding())
+                    .whenComplete((response, error) -> {
+                        inFlight.release();
+                        if (!measured) {
+                            return;
+                        }
+                        long latencyMicros = TimeUnit.NANOSECONDS.toMicros(System.nanoTime() - intended);
+                        if (error == null && response.statusCode() / 100 == 2) {
+                            scenario.recordSuccess(latencyMicros);
+                        } else {
+                            scenario.recordError(latencyMicros);
+                        }
+                    });
+        }
+        listener.measurementEnded();
+
+        if (inFlight.tryAcquire(maxInFlight, drainMillis, TimeUnit.MILLISECONDS)) {
+            inFlight.release(maxInFlight);
+            return 0;
+        }
+        return maxInFlight - inFlight.availablePermits();
+    }
+
+    // 가중치에 비례하여 시나리오를 고른다
+    private LoadScenario pick() {
+        int point = random.nextInt(totalWeight);
+        for (LoadScenario scenario : scenarios) {
+            point -= scenario.getWeight();
+            if (point < 0) {
+                return scenario;
+            }
+        }
+        return scenarios.get(scenarios.size() - 1);
+    }
+
+    interface MeasurementListener {
+        void measurementStarted();
+
+        void measurementEnded();
+    }
+}
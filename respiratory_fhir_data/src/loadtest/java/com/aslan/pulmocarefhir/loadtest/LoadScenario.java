@@ -0,0 +1,72 @@
+package com.aslan.pulmocarefhir.loadtest;
+
+import org.HdrHistogram.Histogram;
+import org.HdrHistogram.Recorder;
+
+import java.net.http.HttpRequest;
+import java.util.Random;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+
+// 부하 테스트에서 보내는 요청 한 종류 (이름, 혼합 비율, 요청 생성 함수)와 그 결과 집계
+// 지연 시간은 마이크로초 단위로 기록한다
+final class LoadScenario {
+
+    private final String name;
+    private final int weight;
+    private final Function<Random, HttpRequest> requestFactory;
+    private final Recorder recorder = new Recorder(3);
+    private final LongAdder successCount = new LongAdder();
+    private final LongAdder errorCount = new LongAdder();
+    private final LongAdder droppedCount = new LongAdder();
+
+    LoadScenario(String name, int weight, Function<Random, HttpRequest> requestFactory) {
+        this.name = name;
+        this.weight = weight;
+        this.requestFactory = requestFactory;
+    }
+
+    String getName() {
+        return name;
+    }
+
+    int getWeight() {
+        return weight;
+    }
+
+    HttpRequest newRequest(Random random) {
+        return requestFactory.apply(random);
+    }
+
+    void recordSuccess(long latencyMicros) {
+        recorder.recordValue(latencyMicros);
+        successCount.increment();
+    }
+
+    // 실패한 요청도 지연 시간 분포에 포함하여 빠른 실패가 지표를 좋게 보이게 하지 않도록 한다
+    void recordError(long latencyMicros) {
+        recorder.recordValue(latencyMicros);
+        errorCount.increment();
+    }
+
+    // 동시 요청 한도를 넘어 보내지 못한 요청
+    void recordDropped() {
+        droppedCount.increment();
+    }
+
+    Histogram takeHistogram() {
+        return recorder.getIntervalHistogram();
+    }
+
+    long getSuccessCount() {
+        return successCount.sum();
+    }
+
+    long getErrorCount() {
+        return errorCount.sum();
+    }
+
+    long getDroppedCount() {
+        return droppedCount.sum();
+    }
+}
@@ -0,0 +1,239 @@
+package com.aslan.pulmocarefhir.loadtest;
+
+import com.aslan.pulmocarefhir.FhirServerApplication;
+import org.HdrHistogram.Histogram;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.boot.web.context.WebServerApplicationContext;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+
+import java.io.PrintWriter;
+import java.io.StringWriter;
+import java.net.URI;
+import java.net.URLEncoder;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.Duration;
+import java.util.*;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.stream.Collectors;
+
+// 스텁 FHIR 서버와 애플리케이션을 한 프로세스에서 띄우고, 등록/조회/엑셀 변환 요청을 목표 요청률로 보낸 뒤
+// 시나리오별 처리량, 지연 시간 분위수(p50/p99/p999), 할당률, GC 를 출력하는 부하 테스트
+// 외부 FHIR 서버나 네트워크 없이 실행되며, 같은 옵션과 시드로 같은 요청 순서를 재현한다
+//
+// 실행: ./gradlew loadTest -PloadTestArgs="--rate=200 --duration=60 --latency-ms=20 --error-rate=0.01"
+// 옵션 (기본값):
+//   --rate=100                    초당 요청 수
+//   --warmup=10 --duration=60     워밍업/측정 시간(초)
+//   --drain=30                    측정 후 남은 요청을 기다리는 시간(초)
+//   --max-in-flight=2000          동시 요청 한도 (넘는 요청은 dropped 로 집계)
+//   --mix=create:5,query:4,excel:1  시나리오 가중치
+//   --seed=42                     시나리오/데이터 선택 시드
+//   --stubs=1                     스텁 서버 수 (2 이상이면 fhir.shards.endpoints 로 샤드 라우팅)
+//   --latency-ms=10 --jitter-ms=5 스텁 응답 지연 (고정 + 0~jitter 무작위)
+//   --error-rate=0                스텁이 503 을 돌려주는 비율
+//   --observations=20             스텁의 환자당 Observation 수 (조회/엑셀 변환 크기)
+//   --patients=1000               조회 대상 환자 ID 수
+//   --report=build/loadtest/report.txt  결과를 파일로도 저장
+// 이름에 '.' 이 들어간 옵션은 애플리케이션 속성으로 전달한다 (예: --fhir.everything-cache.fresh-seconds=0)
+public class LoadTestRunner {
+
+    private static final Set<String> OPTIONS = Set.of("rate", "warmup", "duration", "drain", "max-in-flight", "mix", "seed",
+            "stubs", "latency-ms", "jitter-ms", "error-rate", "observations", "patients", "report");
+
+    public static void main(String[] args) throws Exception {
+        Map<String, String> options = new LinkedHashMap<>();
+        List<String> applicationArgs = new ArrayList<>();
+        for (String arg : args) {
+            if (!arg.startsWith("--") || !arg.contains("=")) {
+                throw new IllegalArgumentException("Options must be given as --name=value: " + arg);
+            }
+            String name = arg.substring(2, arg.indexOf('='));
+            if (OPTIONS.contains(name)) {
+                options.put(name, arg.substring(arg.indexOf('=') + 1));
+            } else if (name.contains(".")) {
+                applicationArgs.add(arg);
+            } else {
+                throw new IllegalArgumentException("Unknown option: " + arg);
+            }
+        }
+
+        double rate = Double.parseDouble(options.getOrDefault("rate", "100"));
+        long warmupSeconds = Long.parseLong(options.getOrDefault("warmup", "10"));
+        long durationSeconds = Long.parseLong(options.getOrDefault("duration", "60"));
+        long drainSeconds = Long.parseLong(options.getOrDefault("drain", "30"));
+        int maxInFlight = Integer.parseInt(options.getOrDefault("max-in-flight", "2000"));
+        long seed = Long.parseLong(options.getOrDefault("seed", "42"));
+        int stubCount = Integer.parseInt(options.getOrDefault("stubs", "1"));
+        long latencyMillis = Long.parseLong(options.getOrDefault("latency-ms", "10"));
+        long jitterMillis = Long.parseLong(options.getOrDefault("jitter-ms", "5"));
+        double errorRate = Double.parseDouble(options.getOrDefault("error-rate", "0"));
+        int observations = Integer.parseInt(options.getOrDefault("observations", "20"));
+        int patients = Integer.parseInt(options.getOrDefault("patients", "1000"));
+        Map<String, Integer> mix = parseMix(options.getOrDefault("mix", "create:5,query:4,excel:1"));
+        if (rate <= 0 || durationSeconds <= 0 || stubCount <= 0 || patients <= 0) {
+            throw new IllegalArgumentException("rate, duration, stubs and patients must be positive.");
+        }
+
+        List<FaultInjectingFhirServer> stubs = new ArrayList<>();
+        for (int i = 0; i < stubCount; i++) {
+            stubs.add(new FaultInjectingFhirServer(latencyMillis, jitterMillis, errorRate, observations));
+        }
+
+        // 명령행 인자로 전달해야 application.properties 보다 우선한다
+        List<String> springArgs = new ArrayList<>(List.of(
+                "--server.port=0",
+                "--spring.main.banner-mode=off",
+                "--logging.level.root=WARN",
+                "--spring.datasource.url=jdbc:h2:mem:loadtest;DB_CLOSE_DELAY=-1",
+                "--fhir.export.directory=" + Files.createTempDirectory("loadtest-exports"),
+                "--fhir.client.server-base=" + stubs.get(0).getBaseUrl()));
+        if (stubCount > 1) {
+            springArgs.add("--fhir.shards.endpoints=" + stubs.stream().map(FaultInjectingFhirServer::getBaseUrl).collect(Collectors.joining(",")));
+        }
+        springArgs.addAll(applicationArgs);
+
+        ExecutorService clientExecutor = Executors.newFixedThreadPool(4, new CustomizableThreadFactory(AllocationMeter.LOADGEN_THREAD_PREFIX));
+        ConfigurableApplicationContext application = new SpringApplicationBuilder(FhirServerApplication.class)
+                .run(springArgs.toArray(new String[0]));
+        try {
+            int port = ((WebServerApplicationContext) application).getWebServer().getPort();
+            String baseUrl = "http://127.0.0.1:" + port;
+            HttpClient httpClient = HttpClient.newBuilder()
+                    .version(HttpClient.Version.HTTP_1_1)
+                    .connectTimeout(Duration.ofSeconds(5))
+                    .executor(clientExecutor)
+                    .build();
+
+            // 엑셀 변환 요청 본문은 스텁의 $everything 응답을 그대로 사용한다
+            String excelPayload = stubs.get(0).everything("load-0");
+
+            Duration requestTimeout = Duration.ofSeconds(Math.max(30, drainSeconds));
+            List<LoadScenario> scenarios = List.of(
+                    new LoadScenario("create", mix.getOrDefault("create", 0), random -> HttpRequest.newBuilder(URI.create(baseUrl + "/api/services"))
+                            .timeout(requestTimeout)
+                            .header("Content-Type", "application/json")
+                            .POST(HttpRequest.BodyPublishers.ofString(String.format(Locale.ROOT,
+                                    "{\"username\":\"load-%d\",\"birthDate\":\"19%02d-0%d-1%d\",\"address\":\"Seoul\",\"maritalStatus\":\"M\","
+                                            + "\"FVC\":%.2f,\"FEV1FVC\":%.2f}",
+                                    random.nextInt(patients), 40 + random.nextInt(60), 1 + random.nextInt(9), random.nextInt(10),
+                                    2.0 + random.nextInt(300) / 100.0, 50.0 + random.nextInt(4000) / 100.0)))
+                            .build()),
+                    new LoadScenario("query", mix.getOrDefault("query", 0), random -> HttpRequest.newBuilder(URI.create(baseUrl + "/api/patients/query"))
+                            .timeout(requestTimeout)
+                            .header("Content-Type", "application/x-www-form-urlencoded")
+                            .POST(HttpRequest.BodyPublishers.ofString("patientId=" + URLEncoder.encode("load-" + random.nextInt(patients), StandardCharsets.UTF_8)))
+                            .build()),
+                    new LoadScenario("excel", mix.getOrDefault("excel", 0), random -> HttpRequest.newBuilder(URI.create(baseUrl + "/api/services/to-excel"))
+                            .timeout(requestTimeout)
+                            .header("Content-Type", "application/json")
+                            .POST(HttpRequest.BodyPublishers.ofString(excelPayload))
+                            .build()));
+
+            AllocationMeter allocationMeter = new AllocationMeter();
+            AllocationMeter.Snapshot[] snapshots = new AllocationMeter.Snapshot[2];
+            LoadGenerator generator = new LoadGenerator(httpClient, scenarios, seed, maxInFlight);
+            int unfinished = generator.run(rate, warmupSeconds * 1000, durationSeconds * 1000, drainSeconds * 1000,
+                    new LoadGenerator.MeasurementListener() {
+                        @Override
+                        public void measurementStarted() {
+                            snapshots[0] = allocationMeter.snapshot();
+                        }
+
+                        @Override
+                        public void measurementEnded() {
+                            snapshots[1] = allocationMeter.snapshot();
+                        }
+                    });
+
+            String report = report(options, scenarios, durationSeconds, snapshots[0], snapshots[1], stubs, unfinished);
+            System.out.print(report);
+            if (options.containsKey("report")) {
+                Path reportPath = Paths.get(options.get("report"));
+                if (reportPath.getParent() != null) {
+                    Files.createDirectories(reportPath.getParent());
+                }
+                Files.writeString(reportPath, report);
+            }
+        } finally {
+            application.close();
+            clientExecutor.shutdownNow();
+            stubs.forEach(FaultInjectingFhirServer::close);
+        }
+    }
+
+    // "create:5,query:4,excel:1" 형식의 가중치를 읽는 메서드
+    private static Map<String, Integer> parseMix(String mix) {
+        Map<String, Integer> weights = new HashMap<>();
+        for (String part : mix.split(",")) {
+            String[] pair = part.trim().split(":");
+            if (pair.length != 2 || !Set.of("create", "query", "excel").contains(pair[0])) {
+                throw new IllegalArgumentException("Invalid mix entry: " + part);
+            }
+            weights.put(pair[0], Integer.parseInt(pair[1]));
+        }
+        return weights;
+    }
+
+    private static String report(Map<String, String> options, List<LoadScenario> scenarios, long durationSeconds,
+                                 AllocationMeter.Snapshot start, AllocationMeter.Snapshot end,
+                                 List<FaultInjectingFhirServer> stubs, int unfinished) {
+        StringWriter buffer = new StringWriter();
+        PrintWriter out = new PrintWriter(buffer);
+        out.printf("Load test options: %s%n", options);
+        out.printf("%-8s %9s %8s %8s %10s %10s %10s %10s %10s%n",
+                "scenario", "completed", "errors", "dropped", "req/s", "p50 ms", "p99 ms", "p999 ms", "max ms");
+
+        Histogram total = new Histogram(3);
+        long totalCompleted = 0;
+        long totalErrors = 0;
+        long totalDropped = 0;
+        for (LoadScenario scenario : scenarios) {
+            if (scenario.getWeight() <= 0) {
+                continue;
+            }
+            Histogram histogram = scenario.takeHistogram();
+            total.add(histogram);
+            long completed = scenario.getSuccessCount() + scenario.getErrorCount();
+            totalCompleted += completed;
+            totalErrors += scenario.getErrorCount();
+            totalDropped += scenario.getDroppedCount();
+            printRow(out, scenario.getName(), completed, scenario.getErrorCount(), scenario.getDroppedCount(), durationSeconds, histogram);
+        }
+        printRow(out, "total", totalCompleted, totalErrors, totalDropped, durationSeconds, total);
+
+        if (start != null && end != null) {
+            double seconds = end.secondsSince(start);
+            Map<String, Long> allocated = end.allocatedSince(start);
+            out.printf("Allocation rate: application %.1f MB/s, stub %.1f MB/s, load generator %.1f MB/s (exited threads not counted)%n",
+                    allocated.get("application") / seconds / 1_048_576, allocated.get("stub") / seconds / 1_048_576,
+                    allocated.get("loadgen") / seconds / 1_048_576);
+            if (totalCompleted > 0) {
+                out.printf("Application allocation per request: %.1f KB%n", allocated.get("application") / 1024.0 / totalCompleted);
+            }
+            out.printf("GC: %d collections, %d ms%n", end.gcCountSince(start), end.gcMillisSince(start));
+        }
+        out.printf("Stub FHIR servers: %d requests, %d injected errors%n",
+                stubs.stream().mapToLong(FaultInjectingFhirServer::getRequestCount).sum(),
+                stubs.stream().mapToLong(FaultInjectingFhirServer::getInjectedErrorCount).sum());
+        if (unfinished > 0) {
+            out.printf("Requests still in flight after drain: %d%n", unfinished);
+        }
+        out.flush();
+        return buffer.toString();
+    }
+
+    private static void printRow(PrintWriter out, String name, long completed, long errors, long dropped,
+                                 long durationSeconds, Histogram histogram) {
+        out.printf(Locale.ROOT, "%-8s %9d %8d %8d %10.1f %10.2f %10.2f %10.2f %10.2f%n",
+                name, completed, errors, dropped, (double) completed / durationSeconds,
+                histogram.getValueAtPercentile(50) / 1000.0, histogram.getValueAtPercentile(99) / 1000.0,
+                histogram.getValueAtPercentile(99.9) / 1000.0, histogram.getMaxValue() / 1000.0);
+    }
+}
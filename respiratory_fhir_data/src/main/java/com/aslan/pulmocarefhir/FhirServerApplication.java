@@ -5,10 +5,12 @@ import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
 import org.springframework.boot.web.servlet.ServletRegistrationBean;
 import org.springframework.context.annotation.Bean;
+import org.springframework.scheduling.annotation.EnableScheduling;
 
 import javax.servlet.ServletException;
 
 @SpringBootApplication
+@EnableScheduling
 public class FhirServerApplication {
     public static void main(String[] args) {
         SpringApplication.run(FhirServerApplication.class, args);
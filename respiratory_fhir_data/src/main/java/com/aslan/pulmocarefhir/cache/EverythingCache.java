@@ -0,0 +1,187 @@
+package com.aslan.pulmocarefhir.cache;
+
+import ca.uhn.fhir.util.UrlUtil;
+import com.aslan.pulmocarefhir.metrics.FhirMetrics;
+import com.aslan.pulmocarefhir.routing.ShardRouter;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import org.hl7.fhir.r4.model.*;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.Date;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+// 환자별 $everything 조회 결과를 화면/응답에 쓰는 형태(요약 등)로 변환하여 보관하는 캐시
+// 같은 환자라도 조회 옵션이 다르면 다른 키로 보관한다
+// 마지막으로 본 리소스 수정 시각(Last-Modified)과 관찰 개수를 기록해 두고, 재조회 시 _lastUpdated 카운트 요청으로
+// 변경 여부만 확인하여 변경이 없으면 전체 번들을 다시 받아 인코딩하지 않는다
+@Component
+public class EverythingCache {
+
+    private static final Logger logger = LoggerFactory.getLogger(EverythingCache.class);
+
+    private final ShardRouter shardRouter;
+    private final FhirMetrics metrics;
+    private final Cache<String, CachedEverything> cache;
+    private final long freshMillis;
+    private final AtomicLong hitCount = new AtomicLong();
+    private final AtomicLong revalidatedCount = new AtomicLong();
+    private final AtomicLong missCount = new AtomicLong();
+    // 환자 ID 해시별 무효화 세대, 조회 중에 무효화된 결과는 저장하지 않는다
+    private final AtomicLongArray generations = new AtomicLongArray(1024);
+
+    public EverythingCache(ShardRouter shardRouter,
+                           FhirMetrics metrics,
+                           @Value("${fhir.everything-cache.maximum-size:1000}") long maximumSize,
+                           @Value("${fhir.everything-cache.fresh-seconds:5}") long freshSeconds,
+                           @Value("${fhir.everything-cache.expire-after-write-seconds:3600}") long expireAfterWriteSeconds) {
+        this.shardRouter = shardRouter;
+        this.metrics = metrics;
+        this.freshMillis = Duration.ofSeconds(freshSeconds).toMillis();
+        this.cache = Caffeine.newBuilder()
+                .maximumSize(maximumSize)
+                .expireAfterWrite(Duration.ofSeconds(expireAfterWriteSeconds))
+                .build();
+    }
+
+    // 캐시된 결과가 유효하면 그대로 반환하고, 변경되었거나 없으면 다시 조회하여 변환한 결과를 저장하는 메서드
+    // cacheKey 는 patientId 로 시작해야 하며(PatientQuery.cacheKey), 같은 키에는 항상 같은 타입의 결과를 저장한다
+    @SuppressWarnings("unchecked")
+    public <T> T getOrFetch(String cacheKey, String patientId, Supplier<Bundle> fetcher, Function<Bundle, T> converter) {
+        long now = System.currentTimeMillis();
+        CachedEverything cached = cache.getIfPresent(cacheKey);
+        if (cached != null) {
+            // 재검증 후 freshMillis 이내의 반복 조회는 서버에 묻지 않는다
+            if (now - cached.validatedAt < freshMillis) {
+                hitCount.incrementAndGet();
+                return (T) cached.value;
+            }
+            if (!hasChanged(patientId, cached)) {
+                cached.validatedAt = now;
+                revalidatedCount.incrementAndGet();
+                return (T) cached.value;
+            }
+        }
+
+        missCount.incrementAndGet();
+        long generation = generations.get(stripe(patientId));
+        // 번들은 max-records/_count 로 잘릴 수 있으므로 재검증 기준이 되는 관찰 개수는 서버의 전체 개수를 사용한다
+        // 조회 전에 세어 두어야 그 사이에 삭제된 관찰이 다음 재검증에서 변경으로 보인다
+        int observationCount = countObservations(patientId);
+        Bundle bundle = fetcher.get();
+        T value = converter.apply(bundle);
+        CachedEverything fetched = new CachedEverything(value, lastModified(bundle), observationCount, now);
+        cache.asMap().compute(cacheKey, (key, existing) ->
+                generations.get(stripe(patientId)) == generation ? fetched : existing);
+        return value;
+    }
+
+    // 환자의 캐시된 결과를 조회 옵션과 관계없이 모두 제거하는 메서드
+    // 세대를 먼저 올려 이미 진행 중인 조회가 변경 전 결과를 다시 저장하지 못하게 한다
+    public void invalidate(String patientId) {
+        generations.incrementAndGet(stripe(patientId));
+        cache.asMap().keySet().removeIf(key -> key.equals(patientId) || key.startsWith(patientId + "|"));
+    }
+
+    // 캐시 적중/재검증/실패 통계를 반환하는 메서드
+    public Map<String, Object> getStatistics() {
+        Map<String, Object> statistics = new LinkedHashMap<>();
+        statistics.put("size", cache.estimatedSize());
+        statistics.put("hitCount", hitCount.get());
+        statistics.put("revalidatedCount", revalidatedCount.get());
+        statistics.put("missCount", missCount.get());
+        return statistics;
+    }
+
+    // Patient 와 Observation 의 변경 여부를 카운트 요청만 담은 batch 한 번으로 확인하는 메서드
+    private boolean hasChanged(String patientId, CachedEverything cached) {
+        if (cached.lastModified == null) {
+            return true;
+        }
+        String escapedId = UrlUtil.escapeUrlParam(patientId);
+        String since = UrlUtil.escapeUrlParam("gt" + new InstantType(cached.lastModified).getValueAsString());
+
+        Bundle batch = new Bundle().setType(Bundle.BundleType.BATCH);
+        addCountRequest(batch, "Patient?_id=" + escapedId + "&_lastUpdated=" + since);
+        addCountRequest(batch, "Observation?subject=Patient/" + escapedId + "&_lastUpdated=" + since);
+        // 삭제된 관찰은 _lastUpdated 로 알 수 없으므로 전체 개수를 비교한다
+        addCountRequest(batch, "Observation?subject=Patient/" + escapedId);
+
+        try {
+            Bundle response = metrics.timeUpstream("everything-revalidate", () -> shardRouter.clientFor(patientId).transaction().withBundle(batch).execute());
+            return total(response, 0) != 0
+                    || total(response, 1) != 0
+                    || total(response, 2) != cached.observationCount;
+        } catch (RuntimeException e) {
+            logger.warn("Revalidation of $everything for Patient/{} failed, fetching again: {}", patientId, e.getMessage());
+            return true;
+        }
+    }
+
+    private void addCountRequest(Bundle batch, String url) {
+        batch.addEntry().getRequest()
+                .setMethod(Bundle.HTTPVerb.GET)
+                .setUrl(url + "&_summary=count");
+    }
+
+    private int total(Bundle response, int index) {
+        if (index >= response.getEntry().size()) {
+            return -1;
+        }
+        Resource resource = response.getEntry().get(index).getResource();
+        return resource instanceof Bundle ? ((Bundle) resource).getTotal() : -1;
+    }
+
+    // 번들에 포함된 리소스 중 가장 최근 수정 시각을 구하는 메서드, 없으면 번들 자체의 수정 시각을 사용한다
+    private Date lastModified(Bundle bundle) {
+        Date lastModified = null;
+        for (Bundle.BundleEntryComponent entry : bundle.getEntry()) {
+            Date lastUpdated = entry.hasResource() ? entry.getResource().getMeta().getLastUpdated() : null;
+            if (lastUpdated != null && (lastModified == null || lastUpdated.after(lastModified))) {
+                lastModified = lastUpdated;
+            }
+        }
+        return lastModified != null ? lastModified : bundle.getMeta().getLastUpdated();
+    }
+
+    // 서버에 저장된 환자의 전체 관찰 개수를 구하는 메서드, 실패하면 -1 을 반환하여 다음 조회에서 다시 받게 한다
+    private int countObservations(String patientId) {
+        String url = "Observation?subject=Patient/" + UrlUtil.escapeUrlParam(patientId) + "&_summary=count";
+        try {
+            Bundle response = metrics.timeUpstream("everything-count", () -> shardRouter.clientFor(patientId).search()
+                    .byUrl(url).returnBundle(Bundle.class).execute());
+            return response.getTotal();
+        } catch (RuntimeException e) {
+            logger.warn("Counting observations of Patient/{} failed: {}", patientId, e.getMessage());
+            return -1;
+        }
+    }
+
+    private int stripe(String patientId) {
+        return (patientId.hashCode() & 0x7fffffff) % generations.length();
+    }
+
+    // 캐시에 저장되는 조회 결과와 재검증 기준 정보
+    private static class CachedEverything {
+        private final Object value;
+        private final Date lastModified;
+        private final int observationCount;
+        private volatile long validatedAt;
+
+        CachedEverything(Object value, Date lastModified, int observationCount, long validatedAt) {
+            this.value = value;
+            this.lastModified = lastModified;
+            this.observationCount = observationCount;
+            this.validatedAt = validatedAt;
+        }
+    }
+}
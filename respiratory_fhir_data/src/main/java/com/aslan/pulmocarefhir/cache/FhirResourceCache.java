@@ -0,0 +1,84 @@
+package com.aslan.pulmocarefhir.cache;
+
+import ca.uhn.fhir.rest.server.exceptions.ResourceGoneException;
+import ca.uhn.fhir.rest.server.exceptions.ResourceNotFoundException;
+import com.aslan.pulmocarefhir.event.TransactionCommittedEvent;
+import com.aslan.pulmocarefhir.metrics.FhirMetrics;
+import com.aslan.pulmocarefhir.routing.ShardRouter;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.LoadingCache;
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.hl7.fhir.r4.model.Patient;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+// 모든 컨트롤러와 서비스가 공유하는 환자 리소스 캐시
+// 최대 크기와 TTL 로 메모리 사용량을 제한하고, 캐시에 없으면 FHIR 서버에서 읽어온다(read-through)
+// 관찰 정보는 관찰 인덱스, 시계열 저장소, $everything 캐시에서 조회한다
+@Component
+public class FhirResourceCache {
+
+    private final ShardRouter shardRouter;
+    private final LoadingCache<String, Patient> patientCache;
+
+    public FhirResourceCache(ShardRouter shardRouter,
+                             FhirMetrics metrics,
+                             @Value("${fhir.cache.maximum-size:10000}") long maximumSize,
+                             @Value("${fhir.cache.expire-after-write-seconds:600}") long expireAfterWriteSeconds) {
+        this.shardRouter = shardRouter;
+        this.patientCache = Caffeine.newBuilder()
+                .maximumSize(maximumSize)
+                .expireAfterWrite(Duration.ofSeconds(expireAfterWriteSeconds))
+                .recordStats()
+                .build(this::loadPatient);
+
+        // 적중률과 제거 횟수를 cache.* 미터로 노출
+        CaffeineCacheMetrics.monitor(metrics.getRegistry(), patientCache, "fhir.patients");
+    }
+
+    // 환자 정보를 조회하는 메서드, 서버에도 없으면 null 을 반환
+    public Patient getPatient(String patientId) {
+        return patientCache.get(patientId);
+    }
+
+    // 트랜잭션이 반영되면 서버가 부여한 ID 로 환자 정보를 캐시에 저장하는 메서드
+    @EventListener
+    public void onTransactionCommitted(TransactionCommittedEvent event) {
+        for (Patient patient : event.getCommittedResources(Patient.class)) {
+            patientCache.put(patient.getIdElement().getIdPart(), patient);
+        }
+    }
+
+    // 캐시 적중/실패/제거 통계를 반환하는 메서드
+    public Map<String, Object> getStatistics() {
+        Map<String, Object> statistics = new LinkedHashMap<>();
+        statistics.put("patients", toMap(patientCache.stats(), patientCache.estimatedSize()));
+        return statistics;
+    }
+
+    private Map<String, Object> toMap(CacheStats stats, long size) {
+        Map<String, Object> map = new LinkedHashMap<>();
+        map.put("size", size);
+        map.put("hitCount", stats.hitCount());
+        map.put("missCount", stats.missCount());
+        map.put("hitRate", stats.hitRate());
+        map.put("evictionCount", stats.evictionCount());
+        map.put("loadFailureCount", stats.loadFailureCount());
+        return map;
+    }
+
+    // 캐시에 없는 환자를 FHIR 서버에서 읽어오는 메서드
+    private Patient loadPatient(String patientId) {
+        try {
+            return shardRouter.clientFor(patientId).read().resource(Patient.class).withId(patientId).execute();
+        } catch (ResourceNotFoundException | ResourceGoneException e) {
+            return null;
+        }
+    }
+}
@@ -0,0 +1,69 @@
+package com.aslan.pulmocarefhir.config;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.task.support.TaskExecutorAdapter;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.web.servlet.config.annotation.AsyncSupportConfigurer;
+import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
+
+import java.lang.reflect.InvocationTargetException;
+import java.util.concurrent.*;
+
+// FHIR 서버를 호출하는 요청을 Tomcat 워커 스레드 대신 실행하는 전용 실행기 설정
+// JDK 가 가상 스레드를 지원하면 요청마다 가상 스레드를 사용하고, 아니면 크기가 제한된 스레드 풀을 사용한다
+// 스레드 풀 큐까지 가득 차면 호출한 스레드에서 직접 실행하여 자연스럽게 유입 속도를 늦춘다
+@Configuration
+public class AsyncConfiguration implements WebMvcConfigurer {
+
+    private static final Logger logger = LoggerFactory.getLogger(AsyncConfiguration.class);
+
+    @Value("${fhir.async.virtual-threads:true}")
+    private boolean virtualThreads;
+
+    @Value("${fhir.async.core-pool-size:16}")
+    private int corePoolSize;
+
+    @Value("${fhir.async.max-pool-size:64}")
+    private int maxPoolSize;
+
+    @Value("${fhir.async.queue-capacity:500}")
+    private int queueCapacity;
+
+    @Bean(destroyMethod = "shutdown")
+    public ExecutorService fhirRequestExecutor() {
+        if (virtualThreads) {
+            ExecutorService executor = newVirtualThreadExecutor();
+            if (executor != null) {
+                logger.info("FHIR requests run on virtual threads");
+                return executor;
+            }
+        }
+        logger.info("FHIR requests run on a thread pool (core={}, max={}, queue={})", corePoolSize, maxPoolSize, queueCapacity);
+        return new ThreadPoolExecutor(corePoolSize, maxPoolSize, 60L, TimeUnit.SECONDS,
+                new ArrayBlockingQueue<>(queueCapacity), new CustomizableThreadFactory("fhir-request-"),
+                new ThreadPoolExecutor.CallerRunsPolicy());
+    }
+
+    // StreamingResponseBody 응답도 같은 실행기에서 기록한다
+    @Override
+    public void configureAsyncSupport(AsyncSupportConfigurer configurer) {
+        configurer.setTaskExecutor(new TaskExecutorAdapter(fhirRequestExecutor()));
+    }
+
+    // 컴파일 대상은 Java 11 이므로 Executors.newVirtualThreadPerTaskExecutor 는 리플렉션으로 찾는다
+    private ExecutorService newVirtualThreadExecutor() {
+        try {
+            return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+        } catch (NoSuchMethodException | IllegalAccessException e) {
+            return null;
+        } catch (InvocationTargetException e) {
+            // 미리보기 기능이 꺼진 JDK 에서는 UnsupportedOperationException 이 발생한다
+            logger.warn("Virtual threads are not available: {}", e.getCause().getMessage());
+            return null;
+        }
+    }
+}
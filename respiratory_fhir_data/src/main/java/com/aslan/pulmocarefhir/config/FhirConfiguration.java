@@ -1,20 +1,53 @@
 package com.aslan.pulmocarefhir.config;
 
 import ca.uhn.fhir.context.FhirContext;
+import ca.uhn.fhir.context.PerformanceOptionsEnum;
 import ca.uhn.fhir.rest.client.api.IGenericClient;
+import ca.uhn.fhir.rest.client.api.IRestfulClientFactory;
+import ca.uhn.fhir.rest.client.api.ServerValidationModeEnum;
+import org.apache.http.impl.client.CloseableHttpClient;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 
+import java.util.concurrent.TimeUnit;
+
 @Configuration
 public class FhirConfiguration {
 
+    private static final Logger logger = LoggerFactory.getLogger(FhirConfiguration.class);
+
+    // 빠른 시작 모드에서는 모델 스캔을 실제로 쓰는 타입으로 미루고(DEFERRED_MODEL_SCANNING),
+    // 이 앱이 쓰는 Patient/Device/Observation/Bundle 만 시작 시점에 미리 준비하여 첫 요청 지연을 줄인다
     @Bean
-    public FhirContext fhirContext() {
-        return FhirContext.forR4(); // 혹은 원하는 FHIR 버전으로 변경
+    public FhirContext fhirContext(@Value("${fhir.startup.prewarm:false}") boolean prewarm) {
+        FhirContext fhirContext = FhirContext.forR4(); // 혹은 원하는 FHIR 버전으로 변경
+        if (prewarm) {
+            long start = System.nanoTime();
+            fhirContext.setPerformanceOptions(PerformanceOptionsEnum.DEFERRED_MODEL_SCANNING);
+            FhirContextPrewarmer.prewarm(fhirContext);
+            logger.info("FhirContext pre-warmed for {} in {} ms",
+                    FhirContextPrewarmer.RESOURCE_TYPES, TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+        }
+        return fhirContext;
+    }
+
+    // 기본 FHIR 클라이언트가 쓰는 커넥션 풀 기반 HTTP 클라이언트
+    @Bean(destroyMethod = "close")
+    public CloseableHttpClient fhirHttpClient(FhirHttpClientFactory httpClientFactory) {
+        return httpClientFactory.create();
     }
 
     @Bean
-    public IGenericClient fhirClient(FhirContext fhirContext) {
-        return fhirContext.newRestfulGenericClient("http://localhost:8080/fhir");
+    public IGenericClient fhirClient(FhirContext fhirContext,
+                                     CloseableHttpClient fhirHttpClient,
+                                     @Value("${fhir.client.server-base:http://localhost:8080/fhir}") String serverBase,
+                                     @Value("${fhir.client.server-validation:ONCE}") ServerValidationModeEnum serverValidation) {
+        IRestfulClientFactory clientFactory = fhirContext.getRestfulClientFactory();
+        clientFactory.setHttpClient(fhirHttpClient);
+        clientFactory.setServerValidationMode(serverValidation);
+        return fhirContext.newRestfulGenericClient(serverBase);
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,58 @@
+package com.aslan.pulmocarefhir.config;
+
+import ca.uhn.fhir.context.FhirContext;
+import ca.uhn.fhir.parser.IParser;
+import org.hl7.fhir.r4.model.*;
+
+import java.util.Date;
+import java.util.List;
+
+// 이 앱이 사용하는 리소스 타입의 모델 정의를 시작 시점에 미리 만들어 두는 클래스
+// 첫 요청에서 모델 스캔과 파서 클래스 로딩이 일어나지 않도록 샘플 번들을 한 번 인코딩/파싱한다
+public final class FhirContextPrewarmer {
+
+    public static final List<Class<? extends Resource>> RESOURCE_TYPES =
+            List.of(Patient.class, Device.class, Observation.class, Bundle.class, OperationOutcome.class);
+
+    private FhirContextPrewarmer() {
+    }
+
+    public static void prewarm(FhirContext fhirContext) {
+        for (Class<? extends Resource> type : RESOURCE_TYPES) {
+            fhirContext.getResourceDefinition(type);
+        }
+
+        Bundle bundle = sampleBundle();
+        IParser parser = fhirContext.newJsonParser();
+        parser.parseResource(Bundle.class, parser.encodeResourceToString(bundle));
+        fhirContext.newJsonParser().setPrettyPrint(true).encodeResourceToString(bundle);
+    }
+
+    // 앱이 만드는 것과 같은 모양의 트랜잭션 번들, 파서와 검증기를 미리 준비할 때 사용한다
+    public static Bundle sampleBundle() {
+        Patient patient = new Patient();
+        patient.setId("prewarm-patient");
+        patient.addName().setFamily("prewarm");
+        patient.setBirthDate(new Date());
+        Observation observation = new Observation();
+        observation.setId("prewarm-observation");
+        observation.getCode().addCoding().setSystem("http://loinc.org").setCode("19868-9");
+        observation.setStatus(Observation.ObservationStatus.FINAL);
+        observation.setValue(new Quantity().setValue(1.0).setUnit("L").setSystem("http://unitsofmeasure.org").setCode("L"));
+        observation.setEffective(new DateTimeType(new Date()));
+        observation.getSubject().setReference("urn:uuid:prewarm-patient");
+        Device device = new Device();
+        device.setId("prewarm-device");
+        device.setManufacturer("prewarm");
+
+        Bundle bundle = new Bundle().setType(Bundle.BundleType.TRANSACTION);
+        bundle.addEntry().setFullUrl("urn:uuid:prewarm-patient").setResource(patient)
+                .getRequest().setMethod(Bundle.HTTPVerb.POST).setUrl("Patient");
+        bundle.addEntry().setFullUrl("urn:uuid:prewarm-device").setResource(device)
+                .getRequest().setMethod(Bundle.HTTPVerb.POST).setUrl("Device");
+        bundle.addEntry().setFullUrl("urn:uuid:prewarm-observation").setResource(observation)
+                .getRequest().setMethod(Bundle.HTTPVerb.POST).setUrl("Observation");
+
+        return bundle;
+    }
+}
@@ -0,0 +1,69 @@
+package com.aslan.pulmocarefhir.config;
+
+import org.apache.http.client.config.RequestConfig;
+import org.apache.http.impl.client.CloseableHttpClient;
+import org.apache.http.impl.client.DefaultConnectionKeepAliveStrategy;
+import org.apache.http.impl.client.HttpClients;
+import org.apache.http.impl.conn.PoolingHttpClientConnectionManager;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.TimeUnit;
+
+// FHIR 서버 호출에 쓰는 커넥션 풀 기반 HTTP 클라이언트를 만드는 컴포넌트
+// keep-alive 로 연결을 재사용하고, 풀에서 연결을 기다리는 시간과 연결/응답 타임아웃을 제한한다
+// 샤드를 여러 개 쓰면 샤드마다 하나씩 만들어 풀을 따로 둔다
+@Component
+public class FhirHttpClientFactory {
+
+    private final int connectTimeoutMillis;
+    private final int socketTimeoutMillis;
+    private final int connectionRequestTimeoutMillis;
+    private final int poolMaxTotal;
+    private final int poolMaxPerRoute;
+    private final long keepAliveMillis;
+    private final long idleEvictionMillis;
+
+    public FhirHttpClientFactory(@Value("${fhir.client.connect-timeout-ms:2000}") int connectTimeoutMillis,
+                                 @Value("${fhir.client.socket-timeout-ms:30000}") int socketTimeoutMillis,
+                                 @Value("${fhir.client.connection-request-timeout-ms:1000}") int connectionRequestTimeoutMillis,
+                                 @Value("${fhir.client.pool-max-total:50}") int poolMaxTotal,
+                                 @Value("${fhir.client.pool-max-per-route:50}") int poolMaxPerRoute,
+                                 @Value("${fhir.client.keep-alive-ms:30000}") long keepAliveMillis,
+                                 @Value("${fhir.client.idle-eviction-ms:60000}") long idleEvictionMillis) {
+        this.connectTimeoutMillis = connectTimeoutMillis;
+        this.socketTimeoutMillis = socketTimeoutMillis;
+        this.connectionRequestTimeoutMillis = connectionRequestTimeoutMillis;
+        this.poolMaxTotal = poolMaxTotal;
+        this.poolMaxPerRoute = poolMaxPerRoute;
+        this.keepAliveMillis = keepAliveMillis;
+        this.idleEvictionMillis = idleEvictionMillis;
+    }
+
+    public CloseableHttpClient create() {
+        PoolingHttpClientConnectionManager connectionManager = new PoolingHttpClientConnectionManager();
+        connectionManager.setMaxTotal(poolMaxTotal);
+        connectionManager.setDefaultMaxPerRoute(poolMaxPerRoute);
+        // 오래 쉬었던 연결은 재사용 전에 닫혔는지 확인한다
+        connectionManager.setValidateAfterInactivity(2000);
+
+        RequestConfig requestConfig = RequestConfig.custom()
+                .setConnectTimeout(connectTimeoutMillis)
+                .setSocketTimeout(socketTimeoutMillis)
+                .setConnectionRequestTimeout(connectionRequestTimeoutMillis)
+                .build();
+
+        return HttpClients.custom()
+                .setConnectionManager(connectionManager)
+                .setDefaultRequestConfig(requestConfig)
+                // 서버가 Keep-Alive 헤더로 알려준 시간과 설정값 중 짧은 쪽만큼 연결을 유지한다
+                .setKeepAliveStrategy((response, context) -> {
+                    long serverKeepAlive = DefaultConnectionKeepAliveStrategy.INSTANCE.getKeepAliveDuration(response, context);
+                    return serverKeepAlive > 0 ? Math.min(serverKeepAlive, keepAliveMillis) : keepAliveMillis;
+                })
+                .evictExpiredConnections()
+                .evictIdleConnections(idleEvictionMillis, TimeUnit.MILLISECONDS)
+                .disableCookieManagement()
+                .build();
+    }
+}
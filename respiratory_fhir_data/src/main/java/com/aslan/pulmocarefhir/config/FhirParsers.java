@@ -0,0 +1,28 @@
+package com.aslan.pulmocarefhir.config;
+
+import ca.uhn.fhir.context.FhirContext;
+import ca.uhn.fhir.parser.IParser;
+import org.springframework.stereotype.Component;
+
+// 스레드마다 JSON 파서를 하나씩 만들어 재사용하는 컴포넌트
+// IParser 는 스레드 안전하지 않으므로 스레드별로 두고, 받은 파서의 설정(prettyPrint, summaryMode 등)은 바꾸지 않는다
+// 다른 설정이 필요하면 fhirContext.newJsonParser() 로 새로 만들어 쓴다
+@Component
+public class FhirParsers {
+
+    private final ThreadLocal<IParser> compactParser;
+    private final ThreadLocal<IParser> prettyParser;
+
+    public FhirParsers(FhirContext fhirContext) {
+        this.compactParser = ThreadLocal.withInitial(fhirContext::newJsonParser);
+        this.prettyParser = ThreadLocal.withInitial(() -> fhirContext.newJsonParser().setPrettyPrint(true));
+    }
+
+    public IParser json() {
+        return compactParser.get();
+    }
+
+    public IParser prettyJson() {
+        return prettyParser.get();
+    }
+}
@@ -0,0 +1,41 @@
+package com.aslan.pulmocarefhir.config;
+
+import com.aslan.pulmocarefhir.waveform.WaveformWebSocketHandler;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.web.socket.config.annotation.EnableWebSocket;
+import org.springframework.web.socket.config.annotation.WebSocketConfigurer;
+import org.springframework.web.socket.config.annotation.WebSocketHandlerRegistry;
+import org.springframework.web.socket.server.standard.ServletServerContainerFactoryBean;
+
+// 폐활량계 측정 곡선 스트리밍 WebSocket 엔드포인트 설정
+@Configuration
+@EnableWebSocket
+public class WebSocketConfiguration implements WebSocketConfigurer {
+
+    private final WaveformWebSocketHandler waveformHandler;
+
+    // 비어 있으면 같은 출처의 브라우저만 허용한다 (Origin 헤더를 보내지 않는 장비 클라이언트는 항상 허용)
+    @Value("${fhir.waveform.allowed-origins:}")
+    private String[] allowedOrigins;
+
+    public WebSocketConfiguration(WaveformWebSocketHandler waveformHandler) {
+        this.waveformHandler = waveformHandler;
+    }
+
+    @Override
+    public void registerWebSocketHandlers(WebSocketHandlerRegistry registry) {
+        registry.addHandler(waveformHandler, "/ws/spirometry").setAllowedOriginPatterns(allowedOrigins);
+    }
+
+    // 바이너리 메시지 하나의 최대 크기와 측정이 멈춘 연결을 정리할 유휴 시간
+    @Bean
+    public ServletServerContainerFactoryBean createWebSocketContainer(@Value("${fhir.waveform.max-message-bytes:65536}") int maxMessageBytes,
+                                                                      @Value("${fhir.waveform.idle-timeout-ms:60000}") long idleTimeoutMillis) {
+        ServletServerContainerFactoryBean container = new ServletServerContainerFactoryBean();
+        container.setMaxBinaryMessageBufferSize(maxMessageBytes);
+        container.setMaxSessionIdleTimeout(idleTimeoutMillis);
+        return container;
+    }
+}
@@ -0,0 +1,110 @@
+package com.aslan.pulmocarefhir.controller;
+
+import com.aslan.pulmocarefhir.export.BulkExportService;
+import com.aslan.pulmocarefhir.export.ExportJob;
+import org.springframework.core.io.FileSystemResource;
+import org.springframework.core.io.Resource;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+import org.springframework.web.server.ResponseStatusException;
+import org.springframework.web.servlet.support.ServletUriComponentsBuilder;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.time.format.DateTimeParseException;
+import java.util.*;
+
+// FHIR Bulk Data $export 방식의 내보내기 API
+// 시작 요청은 202 와 상태 조회 URL(Content-Location)을 반환하고, 상태 조회는 진행 중이면 202, 끝나면 파일 목록을 반환한다
+@RestController
+@RequestMapping("/api/export")
+public class ExportController {
+
+    private final BulkExportService bulkExportService;
+
+    public ExportController(BulkExportService bulkExportService) {
+        this.bulkExportService = bulkExportService;
+    }
+
+    // 내보내기 작업을 시작하는 메서드, _type 으로 리소스 타입을, _since 로 이후에 변경된 리소스만 고를 수 있다
+    @RequestMapping(value = "/$export", method = {RequestMethod.GET, RequestMethod.POST})
+    public ResponseEntity<Void> kickOff(@RequestParam(value = "_type", required = false) String types,
+                                        @RequestParam(value = "_since", required = false) String since) throws IOException {
+        List<String> requestedTypes = types == null ? BulkExportService.SUPPORTED_TYPES : Arrays.asList(types.split(","));
+        for (String type : requestedTypes) {
+            if (!BulkExportService.SUPPORTED_TYPES.contains(type)) {
+                throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Unsupported _type: " + type);
+            }
+        }
+
+        Instant sinceInstant = null;
+        if (since != null) {
+            try {
+                sinceInstant = Instant.parse(since);
+            } catch (DateTimeParseException e) {
+                throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Invalid _since, use an instant like 2024-01-01T00:00:00Z");
+            }
+        }
+
+        ExportJob job = bulkExportService.start(requestedTypes, sinceInstant);
+        return ResponseEntity.status(HttpStatus.ACCEPTED)
+                .header(HttpHeaders.CONTENT_LOCATION, baseUrl() + "/status/" + job.getId())
+                .build();
+    }
+
+    // 작업 상태를 조회하는 메서드
+    @GetMapping("/status/{jobId}")
+    public ResponseEntity<Map<String, Object>> getStatus(@PathVariable String jobId) {
+        ExportJob job = bulkExportService.find(jobId)
+                .orElseThrow(() -> new ResponseStatusException(HttpStatus.NOT_FOUND, "Unknown export job: " + jobId));
+
+        switch (job.getStatus()) {
+            case IN_PROGRESS:
+                return ResponseEntity.status(HttpStatus.ACCEPTED)
+                        .header("X-Progress", String.valueOf(job.getProgress()))
+                        .header(HttpHeaders.RETRY_AFTER, "5")
+                        .build();
+            case COMPLETED:
+                return ResponseEntity.ok(job.getManifest(baseUrl()));
+            case FAILED:
+                return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).body(job.getManifest(baseUrl()));
+            default:
+                throw new ResponseStatusException(HttpStatus.NOT_FOUND, "Export job was cancelled: " + jobId);
+        }
+    }
+
+    // 작업을 취소하거나 끝난 작업의 파일을 지우는 메서드
+    @DeleteMapping("/status/{jobId}")
+    public ResponseEntity<Void> delete(@PathVariable String jobId) {
+        if (!bulkExportService.delete(jobId)) {
+            throw new ResponseStatusException(HttpStatus.NOT_FOUND, "Unknown export job: " + jobId);
+        }
+        return ResponseEntity.status(HttpStatus.ACCEPTED).build();
+    }
+
+    // 완료된 리소스 타입별 gzip NDJSON 파일을 내려받는 메서드
+    @GetMapping("/{jobId}/{type}.ndjson.gz")
+    public ResponseEntity<Resource> download(@PathVariable String jobId, @PathVariable String type) {
+        ExportJob job = bulkExportService.find(jobId)
+                .filter(found -> found.getStatus() == ExportJob.Status.COMPLETED && found.getTypes().contains(type))
+                .orElseThrow(() -> new ResponseStatusException(HttpStatus.NOT_FOUND, "No completed export file: " + jobId + "/" + type));
+
+        Path file = job.getOutputFile(type);
+        if (!Files.exists(file)) {
+            throw new ResponseStatusException(HttpStatus.NOT_FOUND, "No completed export file: " + jobId + "/" + type);
+        }
+        return ResponseEntity.ok()
+                .contentType(MediaType.parseMediaType("application/gzip"))
+                .header(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=" + type + ".ndjson.gz")
+                .body(new FileSystemResource(file));
+    }
+
+    private String baseUrl() {
+        return ServletUriComponentsBuilder.fromCurrentContextPath().path("/api/export").toUriString();
+    }
+}
@@ -0,0 +1,102 @@
+package com.aslan.pulmocarefhir.controller;
+
+import com.aslan.pulmocarefhir.domain.ObservationRecord;
+import com.aslan.pulmocarefhir.service.BackfillStatus;
+import com.aslan.pulmocarefhir.service.ObservationIndexService;
+import com.aslan.pulmocarefhir.timeseries.LungFunctionSeriesStore;
+import com.aslan.pulmocarefhir.timeseries.SeriesStatistics;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.ZoneOffset;
+import java.util.*;
+
+@RestController
+@RequestMapping("/api/observations")
+public class ObservationController {
+
+    private static final int MAX_PAGE_SIZE = 1000;
+
+    private final ObservationIndexService observationIndexService;
+    private final LungFunctionSeriesStore seriesStore;
+
+    public ObservationController(ObservationIndexService observationIndexService, LungFunctionSeriesStore seriesStore) {
+        this.observationIndexService = observationIndexService;
+        this.seriesStore = seriesStore;
+    }
+
+    // 환자의 특정 LOINC 코드 측정값을 기간으로 조회하는 GET 메서드 (예: 최근 2년간의 FEV1/FVC)
+    @GetMapping("/trend")
+    public ResponseEntity<Map<String, Object>> getTrend(@RequestParam String patientId,
+                                                        @RequestParam String code,
+                                                        @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate from,
+                                                        @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate to,
+                                                        @RequestParam(defaultValue = "0") int page,
+                                                        @RequestParam(defaultValue = "100") int size) {
+        Instant fromInstant = from != null ? from.atStartOfDay(ZoneOffset.UTC).toInstant() : Instant.EPOCH;
+        Instant toInstant = to != null ? to.plusDays(1).atStartOfDay(ZoneOffset.UTC).toInstant() : Instant.now();
+        PageRequest pageRequest = PageRequest.of(Math.max(page, 0), Math.min(Math.max(size, 1), MAX_PAGE_SIZE));
+
+        Page<ObservationRecord> records = observationIndexService.findTrend(patientId, code, fromInstant, toInstant, pageRequest);
+
+        List<Map<String, Object>> items = new ArrayList<>();
+        for (ObservationRecord record : records) {
+            Map<String, Object> item = new LinkedHashMap<>();
+            item.put("observationId", record.getObservationId());
+            item.put("effectiveTime", record.getEffectiveTime().toString());
+            item.put("value", record.getValue());
+            item.put("unit", record.getUnit());
+            items.add(item);
+        }
+
+        Map<String, Object> body = new LinkedHashMap<>();
+        body.put("patientId", patientId);
+        body.put("code", code);
+        body.put("page", records.getNumber());
+        body.put("size", records.getSize());
+        body.put("totalElements", records.getTotalElements());
+        body.put("totalPages", records.getTotalPages());
+        body.put("items", items);
+        return ResponseEntity.ok(body);
+    }
+
+    // 환자의 폐기능 측정값 집계(최소/최대/평균, 연간 변화량, 최신값)를 조회하는 GET 메서드, code 를 생략하면 모든 코드를 집계한다
+    @GetMapping("/{patientId}/summary")
+    public ResponseEntity<Object> getSummary(@PathVariable String patientId,
+                                             @RequestParam(required = false) String code,
+                                             @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate from,
+                                             @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate to) {
+        long fromMillis = from != null ? from.atStartOfDay(ZoneOffset.UTC).toInstant().toEpochMilli() : Long.MIN_VALUE;
+        long toMillis = to != null ? to.plusDays(1).atStartOfDay(ZoneOffset.UTC).toInstant().toEpochMilli() - 1 : Long.MAX_VALUE;
+
+        if (code != null) {
+            SeriesStatistics statistics = seriesStore.statistics(patientId, code, fromMillis, toMillis);
+            return ResponseEntity.ok(statistics);
+        }
+        return ResponseEntity.ok(seriesStore.statistics(patientId, fromMillis, toMillis));
+    }
+
+    // 시계열 저장소의 환자 수와 측정값 수를 조회하는 GET 메서드
+    @GetMapping("/series/stats")
+    public ResponseEntity<Map<String, Object>> getSeriesStatistics() {
+        return ResponseEntity.ok(seriesStore.getStatistics());
+    }
+
+    // FHIR 서버의 관찰 정보로 인덱스를 다시 채우는 백필 작업을 시작하는 POST 메서드
+    @PostMapping("/index/rebuild")
+    public ResponseEntity<BackfillStatus> rebuildIndex() {
+        return ResponseEntity.status(HttpStatus.ACCEPTED).body(observationIndexService.startBackfill());
+    }
+
+    // 백필 작업의 진행 상태를 조회하는 GET 메서드
+    @GetMapping("/index/rebuild")
+    public ResponseEntity<BackfillStatus> getRebuildStatus() {
+        return ResponseEntity.ok(observationIndexService.getBackfillStatus());
+    }
+}
@@ -16,17 +16,21 @@ import org.springframework.web.bind.annotation.*;
 import java.io.ByteArrayOutputStream;
 import java.text.ParseException;
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
 
 @Controller
 @RequestMapping("/api/patients")
 public class PatientController {
 
     private final PatientService patientService;
+    private final ExecutorService requestExecutor;
     private static final Logger logger = LoggerFactory.getLogger(PatientController.class);
 
     @Autowired
-    public PatientController(PatientService patientService) {
+    public PatientController(PatientService patientService, ExecutorService requestExecutor) {
         this.patientService = patientService;
+        this.requestExecutor = requestExecutor;
     }
 
     @GetMapping
@@ -40,30 +44,33 @@ public class PatientController {
     }
 
     @PostMapping
-    public String createPatient(@RequestParam Map<String, String> requestData, Model model) {
-        try {
-            String response = patientService.createPatient(requestData);
-            model.addAttribute("response", response);
-            return "result";
-        } catch (ParseException e) {
-            model.addAttribute("error", "Invalid birthDate format. Please use 'yyyy-MM-dd'.");
-            return "error";
-        } catch (Exception e) {
-            model.addAttribute("error", "Error creating patient: " + e.getMessage());
-            return "error";
-        }
+    public CompletableFuture<String> createPatient(@RequestParam Map<String, String> requestData, Model model) {
+        return CompletableFuture.supplyAsync(() -> {
+            try {
+                String response = patientService.createPatient(requestData);
+                model.addAttribute("response", response);
+                return "result";
+            } catch (ParseException e) {
+                model.addAttribute("error", "Invalid birthDate format. Please use 'yyyy-MM-dd'.");
+                return "error";
+            } catch (Exception e) {
+                model.addAttribute("error", "Error creating patient: " + e.getMessage());
+                return "error";
+            }
+        }, requestExecutor);
     }
 
     @PostMapping("/query")
-    public String queryPatient(@RequestParam("patientId") String patientId, Model model) {
-        try {
-            String response = patientService.queryPatient(patientId);
-            model.addAttribute("response", response);
-            return "result";
-        } catch (Exception e) {
-            model.addAttribute("error", "Error querying patient: " + e.getMessage());
-            return "error";
-        }
+    public CompletableFuture<String> queryPatient(@RequestParam("patientId") String patientId, Model model) {
+        return CompletableFuture.supplyAsync(() -> {
+            try {
+                model.addAttribute("summary", patientService.queryPatient(patientId));
+                return "result";
+            } catch (Exception e) {
+                model.addAttribute("error", "Error querying patient: " + e.getMessage());
+                return "error";
+            }
+        }, requestExecutor);
     }
 
     @GetMapping("/downloadExcel")
@@ -1,10 +1,31 @@
 package com.aslan.pulmocarefhir.controller;
 
-import ca.uhn.fhir.context.FhirContext;
-import ca.uhn.fhir.rest.client.api.IGenericClient;
-import ca.uhn.fhir.rest.gclient.ITransactionTyped;
+import ca.uhn.fhir.rest.client.exceptions.FhirClientConnectionException;
+import ca.uhn.fhir.rest.server.exceptions.BaseServerResponseException;
+import ca.uhn.fhir.rest.server.exceptions.ResourceGoneException;
+import ca.uhn.fhir.rest.server.exceptions.ResourceNotFoundException;
+import com.aslan.pulmocarefhir.cache.EverythingCache;
+import com.aslan.pulmocarefhir.cache.FhirResourceCache;
+import com.aslan.pulmocarefhir.config.FhirParsers;
+import com.aslan.pulmocarefhir.domain.JournalEntry;
+import com.aslan.pulmocarefhir.elasticsearch.ElasticsearchIndexer;
+import com.aslan.pulmocarefhir.metrics.FhirMetrics;
+import com.aslan.pulmocarefhir.routing.ShardRouter;
+import com.aslan.pulmocarefhir.routing.ShardUnavailableException;
+import com.aslan.pulmocarefhir.service.BulkIngestionService;
+import com.aslan.pulmocarefhir.service.EverythingPages;
+import com.aslan.pulmocarefhir.service.EverythingService;
+import com.aslan.pulmocarefhir.service.ExcelExportService;
+import com.aslan.pulmocarefhir.service.PatientQuery;
+import com.aslan.pulmocarefhir.service.PatientService;
+import com.aslan.pulmocarefhir.service.SpirometryResourceFactory;
+import com.aslan.pulmocarefhir.service.SpreadsheetImportService;
+import com.aslan.pulmocarefhir.service.SubmissionResult;
+import com.aslan.pulmocarefhir.validation.BundleValidationException;
+import com.aslan.pulmocarefhir.service.WriteBehindJournalService;
 import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.Timer;
 import org.apache.poi.ss.usermodel.Row;
 import org.apache.poi.ss.usermodel.Sheet;
 import org.apache.poi.ss.usermodel.Workbook;
@@ -17,208 +38,272 @@ import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.multipart.MultipartFile;
+import org.springframework.web.server.ResponseStatusException;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+import javax.servlet.http.HttpServletRequest;
 import java.io.ByteArrayOutputStream;
 import java.io.File;
 import java.io.FileOutputStream;
 import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.text.ParseException;
-import java.text.SimpleDateFormat;
 import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
 
 
 @RestController
 @RequestMapping("/api/services")
 public class ServiceController {
 
-    private final FhirContext fhirContext;  // FHIR 컨텍스트 객체
-    private final IGenericClient client;  // FHIR 클라이언트 객체
+    private final BulkIngestionService bulkIngestionService;  // 대량 등록 서비스 객체
+    private final ExcelExportService excelExportService;  // 엑셀 변환 서비스 객체
+    private final EverythingService everythingService;  // $everything 페이지 조회 서비스 객체
+    private final WriteBehindJournalService journalService;  // 저장 후 전송 저널 서비스 객체
+    private final ElasticsearchIndexer elasticsearchIndexer;  // Elasticsearch 색인 파이프라인 객체
+    private final ShardRouter shardRouter;  // 환자별 FHIR 서버(샤드) 라우터
+    private final FhirMetrics metrics;  // 지연 시간과 페이로드 크기 측정 객체
+    private final ExecutorService requestExecutor;  // FHIR 서버 호출을 실행하는 전용 실행기
+    private final SpirometryResourceFactory resourceFactory;  // Patient/Device/Observation/Bundle 리소스 생성 객체
+    private final SpreadsheetImportService spreadsheetImportService;  // xlsx/csv 가져오기 서비스 객체
+    private final FhirParsers parsers;  // 스레드별로 재사용하는 JSON 파서
+    private final PatientService patientService;  // 번들 검증/저널 기록/샤드 전송 서비스 객체
     private final ObjectMapper objectMapper = new ObjectMapper();
-    private final Map<String, Patient> patientMap = new HashMap<>();  // 환자 정보를 저장하는 맵
-    private final Map<String, List<Observation>> observationMap = new HashMap<>();  // 관찰 정보를 저장하는 맵
-    private static final Logger logger = LoggerFactory.getLogger(PatientController.class);  // 로그 출력을 위한 로거 객체
-
-    public ServiceController(FhirContext fhirContext, IGenericClient client) {
-        this.fhirContext = fhirContext;
-        this.client = client;
+    private final FhirResourceCache resourceCache;  // 환자와 관찰 정보를 저장하는 공유 캐시
+    private final EverythingCache everythingCache;  // $everything 조회 결과 캐시
+    private static final Logger logger = LoggerFactory.getLogger(ServiceController.class);  // 로그 출력을 위한 로거 객체
+
+    public ServiceController(FhirResourceCache resourceCache,
+                             EverythingCache everythingCache, BulkIngestionService bulkIngestionService, ExcelExportService excelExportService,
+                             EverythingService everythingService, WriteBehindJournalService journalService,
+                             ElasticsearchIndexer elasticsearchIndexer,
+                             ShardRouter shardRouter, FhirMetrics metrics,
+                             ExecutorService requestExecutor, SpirometryResourceFactory resourceFactory,
+                             SpreadsheetImportService spreadsheetImportService, FhirParsers parsers,
+                             PatientService patientService) {
+        this.resourceCache = resourceCache;
+        this.everythingCache = everythingCache;
+        this.bulkIngestionService = bulkIngestionService;
+        this.excelExportService = excelExportService;
+        this.everythingService = everythingService;
+        this.journalService = journalService;
+        this.elasticsearchIndexer = elasticsearchIndexer;
+        this.shardRouter = shardRouter;
+        this.metrics = metrics;
+        this.requestExecutor = requestExecutor;
+        this.resourceFactory = resourceFactory;
+        this.spreadsheetImportService = spreadsheetImportService;
+        this.parsers = parsers;
+        this.patientService = patientService;
     }
 
     // POST 요청을 처리하는 메서드, 환자와 관찰 정보를 생성
+    // FHIR 서버 호출은 전용 실행기에서 수행하고 Tomcat 워커 스레드는 바로 반환한다
     @PostMapping
-    public ResponseEntity<String> createPatient(@RequestBody Map<String, Object> requestData) {
-        // 새로운 Patient 리소스를 생성
-        Patient patient = new Patient();
-        String patientId = UUID.randomUUID().toString();
-        patient.setId(patientId);
+    public CompletableFuture<ResponseEntity<String>> createPatient(@RequestBody Map<String, Object> requestData) {
+        return CompletableFuture.supplyAsync(() -> createAndSend(requestData), requestExecutor);
+    }
 
-        // 요청 데이터에서 사용자 이름을 가져와 설정
-        patient.addName().setFamily((String) requestData.get("username")).addGiven((String) requestData.get("username"));
+    private ResponseEntity<String> createAndSend(Map<String, Object> requestData) {
+        // JSON 값(문자열/숫자)을 리소스 생성에 쓰는 문자열 맵으로 변환
+        Map<String, String> record = new HashMap<>();
+        requestData.forEach((key, value) -> record.put(key, value != null ? String.valueOf(value) : null));
 
-        // 생년월일 문자열을 Date 객체로 변환
-        String birthDateString = (String) requestData.get("birthDate");
+        // Patient, Device(서버에 이미 있으면 번들에는 참조만 들어간다), Observation 리소스와 번들을 생성
+        Bundle bundle;
         try {
-            Date birthDate = new SimpleDateFormat("yyyy-MM-dd").parse(birthDateString);
-            patient.setBirthDate(birthDate);
+            Patient patient = resourceFactory.createPatient(record);
+            Device device = resourceFactory.createDevice();
+            List<Observation> observations = resourceFactory.createObservations(record, patient, device);
+            bundle = resourceFactory.createBundle(patient, device, observations);
         } catch (ParseException e) {
             return ResponseEntity.status(HttpStatus.BAD_REQUEST).body("Invalid birthDate format. Please use 'yyyy-MM-dd'.");
+        } catch (NumberFormatException e) {
+            return ResponseEntity.status(HttpStatus.BAD_REQUEST).body("FVC and FEV1FVC must be numbers.");
         }
 
-        // 요청 데이터에서 주소와 결혼 상태를 가져와 설정
-        patient.addAddress().setText((String) requestData.get("address"));
-        patient.setMaritalStatus(new CodeableConcept().setText((String) requestData.get("maritalStatus")));
-
-        // 생성된 Patient 리소스를 로그에 출력
-        logger.info("Created Patient: {}", fhirContext.newJsonParser().setPrettyPrint(true).encodeResourceToString(patient));
-
-        // 새로운 Device 리소스를 생성
-        Device device = new Device();
-        String deviceId = UUID.randomUUID().toString();
-        device.setId(deviceId);
-        device.setManufacturer("Example Manufacturer");
-
-        // deviceName 필드를 사용하여 모델 이름 설정
-        Device.DeviceDeviceNameComponent deviceNameComponent = new Device.DeviceDeviceNameComponent();
-        deviceNameComponent.setName("Model XYZ");
-        deviceNameComponent.setType(Device.DeviceNameType.MODELNAME);
-        device.addDeviceName(deviceNameComponent);
-
-        // 장치 유형 설정
-        CodeableConcept type = new CodeableConcept();
-        type.addCoding(new Coding().setSystem("http://snomed.info/sct").setCode("127783003").setDisplay("Spirometry"));
-        device.setType(type);
-
-        // 생성된 Device 리소스를 로그에 출력
-        logger.info("Created Device: {}", fhirContext.newJsonParser().setPrettyPrint(true).encodeResourceToString(device));
-
-        // 요청 데이터에서 의료 데이터를 가져와 Observation 리소스를 생성
-        List<Observation> observations = new ArrayList<>();
-        observations.add(createObservation("19868-9", "Forced vital capacity [Volume] Respiratory system by Spirometry", (Double) requestData.get("FVC"), patient, "L", device));
-        observations.add(createObservation("19926-5", "FEV1/FVC", (Double) requestData.get("FEV1FVC"), patient, "%", device));
-
-        // 생성된 Observation 리소스를 로그에 출력
-        for (Observation observation : observations) {
-            logger.info("Created Observation: {}", fhirContext.newJsonParser().setPrettyPrint(true).encodeResourceToString(observation));
+        // 검증 후 저널에 기록하거나 환자가 배정된 JPA Server(샤드)에 전송
+        // fail-fast 검증 모드에서 오류가 있으면 서버에 보내지 않고 422 로 응답
+        SubmissionResult result;
+        try {
+            result = patientService.send(bundle);
+        } catch (BundleValidationException e) {
+            Map<String, Object> body = new LinkedHashMap<>();
+            body.put("message", "Bundle validation failed");
+            body.put("errors", e.getErrors());
+            return ResponseEntity.status(HttpStatus.UNPROCESSABLE_ENTITY)
+                    .contentType(MediaType.APPLICATION_JSON)
+                    .body(objectMapper.valueToTree(body).toString());
         }
 
-        // 환자와 관찰 정보를 맵에 저장
-        patientMap.put(patientId, patient);
-        observationMap.put(patientId, observations);
-
-        // 번들 리소스를 생성
-        Bundle bundle = new Bundle();
-        bundle.setType(Bundle.BundleType.TRANSACTION);
-
-        // Patient 리소스를 번들에 추가
-        Bundle.BundleEntryComponent patientEntry = bundle.addEntry();
-        patientEntry.setFullUrl("urn:uuid:" + patient.getId());
-        patientEntry.setResource(patient);
-        patientEntry.getRequest().setUrl("Patient").setMethod(Bundle.HTTPVerb.POST);
-
-        // Device 리소스를 번들에 추가
-        Bundle.BundleEntryComponent deviceEntry = bundle.addEntry();
-        deviceEntry.setFullUrl("urn:uuid:" + device.getId());
-        deviceEntry.setResource(device);
-        deviceEntry.getRequest().setUrl("Device").setMethod(Bundle.HTTPVerb.POST);
-
-        // Observation 리소스를 번들에 추가
-        for (Observation observation : observations) {
-            observation.getSubject().setReference("urn:uuid:" + patient.getId());
-            observation.setDevice(new Reference("urn:uuid:" + device.getId()));  // Device 참조 설정
-            Bundle.BundleEntryComponent observationEntry = bundle.addEntry();
-            observationEntry.setFullUrl("urn:uuid:" + observation.getId());
-            observationEntry.setResource(observation);
-            observationEntry.getRequest().setUrl("Observation").setMethod(Bundle.HTTPVerb.POST);
+        // 저장 후 전송 모드에서는 저널 항목을 바로 응답
+        if (result.isJournaled()) {
+            JournalEntry entry = result.getJournalEntry();
+            return ResponseEntity.status(HttpStatus.ACCEPTED)
+                    .body("{\"journalId\":" + entry.getId() + ",\"status\":\"" + entry.getStatus() + "\"}");
         }
 
-        // 번들 리소스를 로그에 출력
-        logger.info("Created Bundle: {}", fhirContext.newJsonParser().setPrettyPrint(true).encodeResourceToString(bundle));
-
-        //번들 리소스 JPA Server에 전송
-        ITransactionTyped<Bundle> transaction = client.transaction().withBundle(bundle);
-        Bundle responseBundle = transaction.encodedJson().execute();  // 여기를 수정
+        // 응답 번들 JSON 문자열로 반환
+        String responseBundleJson = metrics.timeEncode("transaction-result",
+                () -> parsers.json().encodeResourceToString(result.getResponseBundle()));
+        return ResponseEntity.status(HttpStatus.CREATED).body(responseBundleJson);
+    }
 
-        // 서버로부터의 응답 번들을 로그에 출력
-        logger.info("Response Bundle: {}", fhirContext.newJsonParser().setPrettyPrint(true).encodeResourceToString(responseBundle));
+    // NDJSON 으로 전달된 여러 건의 측정 데이터를 배치 트랜잭션으로 등록하고, 레코드별 결과를 NDJSON 으로 스트리밍하는 메서드
+    @PostMapping("/bulk")
+    public ResponseEntity<StreamingResponseBody> bulkCreatePatients(HttpServletRequest request) {
+        StreamingResponseBody body = outputStream -> bulkIngestionService.ingestNdjson(request.getInputStream(), outputStream);
+        return ResponseEntity.ok()
+                .contentType(MediaType.parseMediaType("application/x-ndjson"))
+                .body(body);
+    }
 
-        // 응답 번들 JSON 문자열로 반환
-        String responseBundleJson = fhirContext.newJsonParser().encodeResourceToString(responseBundle);
+    // 업로드한 xlsx/csv 의 행을 배치 트랜잭션으로 등록하고, 행별 결과를 NDJSON 으로 스트리밍하는 메서드
+    // 업로드 파일은 응답을 스트리밍하는 동안 정리되지 않도록 별도 임시 파일로 옮겨서 읽는다
+    @PostMapping("/import")
+    public ResponseEntity<StreamingResponseBody> importSpreadsheet(@RequestParam("file") MultipartFile file) throws IOException {
+        String filename = String.valueOf(file.getOriginalFilename()).toLowerCase(Locale.ROOT);
+        boolean xlsx = filename.endsWith(".xlsx");
+        if (!xlsx && !filename.endsWith(".csv")) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Only .xlsx and .csv files are supported.");
+        }
 
-        // 번들 리소스를 JSON 문자열로 반환
-        return ResponseEntity.status(HttpStatus.CREATED).body(responseBundleJson);
+        Path upload = Files.createTempFile("fhir-import-", xlsx ? ".xlsx" : ".csv");
+        file.transferTo(upload);
+        if (xlsx) {
+            try {
+                spreadsheetImportService.checkXlsx(upload);
+            } catch (IllegalArgumentException e) {
+                Files.deleteIfExists(upload);
+                throw new ResponseStatusException(HttpStatus.PAYLOAD_TOO_LARGE, e.getMessage());
+            } catch (IOException e) {
+                Files.deleteIfExists(upload);
+                throw new ResponseStatusException(HttpStatus.BAD_REQUEST, e.getMessage());
+            }
+        }
+        StreamingResponseBody body = outputStream -> {
+            try {
+                if (xlsx) {
+                    spreadsheetImportService.importXlsx(upload, outputStream);
+                } else {
+                    spreadsheetImportService.importCsv(upload, outputStream);
+                }
+            } finally {
+                Files.deleteIfExists(upload);
+            }
+        };
+        return ResponseEntity.ok()
+                .contentType(MediaType.parseMediaType("application/x-ndjson"))
+                .body(body);
     }
 
     // 특정 환자 정보를 조회하는 GET 메서드
     @GetMapping("/{id}")
-    public ResponseEntity<Patient> getPatient(@PathVariable String id) {
-        Patient patient = patientMap.get(id);
+    public CompletableFuture<ResponseEntity<Patient>> getPatient(@PathVariable String id) {
+        return CompletableFuture.supplyAsync(() -> {
+            Patient patient = resourceCache.getPatient(id);
+
+            if (patient == null) {
+                return ResponseEntity.status(HttpStatus.NOT_FOUND).body(null);
+            }
+
+            return ResponseEntity.ok(patient);
+        }, requestExecutor);
+    }
+
+    // 환자의 전체 기록($everything)을 모든 페이지에 걸쳐 조회하면서 받은 페이지부터 바로 응답으로 스트리밍하는 GET 메서드
+    // _summary, _elements, _count 는 FHIR 서버에 전달하고, 기본은 공백 없는 JSON 이며 _pretty=true 일 때만 들여쓴다
+    // 클라이언트가 gzip 을 허용하면 server.compression 설정에 따라 압축하여 전송한다
+    // 첫 페이지는 응답 상태를 정하기 전에 조회하므로, 없는 환자는 404, 서버 오류는 502/503 으로 응답한다
+    @GetMapping("/{id}/everything")
+    public ResponseEntity<StreamingResponseBody> streamEverything(@PathVariable String id,
+                                                                  @RequestParam(value = "_summary", required = false) String summary,
+                                                                  @RequestParam(value = "_elements", required = false) String elements,
+                                                                  @RequestParam(value = "_count", required = false) Integer count,
+                                                                  @RequestParam(value = "_pretty", defaultValue = "false") boolean pretty) {
+        PatientQuery query;
+        try {
+            query = PatientQuery.of(summary, elements, count, pretty);
+        } catch (IllegalArgumentException e) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, e.getMessage());
+        }
+        EverythingPages pages;
+        try {
+            pages = everythingService.open(id, query);
+        } catch (ResourceNotFoundException | ResourceGoneException e) {
+            throw new ResponseStatusException(HttpStatus.NOT_FOUND, "Unknown patient: " + id);
+        } catch (ShardUnavailableException e) {
+            throw new ResponseStatusException(HttpStatus.SERVICE_UNAVAILABLE, e.getMessage());
+        } catch (FhirClientConnectionException e) {
+            throw new ResponseStatusException(HttpStatus.BAD_GATEWAY, "FHIR server unreachable: " + e.getMessage());
+        } catch (BaseServerResponseException e) {
+            HttpStatus status = e.getStatusCode() >= 500 ? HttpStatus.BAD_GATEWAY : HttpStatus.BAD_REQUEST;
+            throw new ResponseStatusException(status, "FHIR server returned " + e.getStatusCode() + ": " + e.getMessage());
+        }
+        StreamingResponseBody body = outputStream -> everythingService.streamTo(pages, query, outputStream);
+        return ResponseEntity.ok()
+                .contentType(MediaType.parseMediaType("application/fhir+json"))
+                .body(body);
+    }
 
-        if (patient == null) {
+    // 저널 항목의 전송 상태를 조회하는 GET 메서드
+    @GetMapping("/journal/{journalId}")
+    public ResponseEntity<Map<String, Object>> getJournalEntry(@PathVariable Long journalId) {
+        Optional<JournalEntry> entry = journalService.find(journalId);
+        if (entry.isEmpty()) {
             return ResponseEntity.status(HttpStatus.NOT_FOUND).body(null);
         }
 
-        return ResponseEntity.ok(patient);
+        Map<String, Object> body = new LinkedHashMap<>();
+        body.put("journalId", entry.get().getId());
+        body.put("status", entry.get().getStatus());
+        body.put("attempts", entry.get().getAttempts());
+        body.put("createdAt", String.valueOf(entry.get().getCreatedAt()));
+        body.put("forwardedAt", String.valueOf(entry.get().getForwardedAt()));
+        body.put("lastError", entry.get().getLastError());
+        return ResponseEntity.ok(body);
     }
 
-    // Observation 리소스를 생성하는 메서드
-    private Observation createObservation(String code, String display, Double value, Patient patient, String unit) {
-        return createObservation(code, display, value, patient, unit, null);
+    // 상태별 저널 항목 수를 조회하는 GET 메서드
+    @GetMapping("/journal/stats")
+    public ResponseEntity<Map<String, Long>> getJournalStatistics() {
+        return ResponseEntity.ok(journalService.getStatistics());
     }
 
-    private Observation createObservation(String code, String display, Double value, Patient patient, String unit, Device device) {
-        Observation observation = new Observation();
-        observation.setId(UUID.randomUUID().toString());
-        observation.setStatus(Observation.ObservationStatus.FINAL);
-
-        // category 필드 추가
-        observation.getCategory().add(new CodeableConcept().addCoding(new Coding()
-                .setSystem("http://terminology.hl7.org/CodeSystem/observation-category")
-                .setCode("vital-signs")
-                .setDisplay("Vital Signs")));
-
-        // LOINC 코드 설정
-        observation.getCode().addCoding()
-                .setSystem("http://loinc.org")
-                .setCode(code)
-                .setDisplay(display);
-
-        // 값 설정
-        observation.setValue(new Quantity()
-                .setValue(value)
-                .setUnit(unit)
-                .setSystem("http://unitsofmeasure.org")
-                .setCode(unit));
-
-        // 대상 환자 설정
-        observation.getSubject().setReference("Patient/" + patient.getId());
-
-        // 유효 시간 설정
-        observation.setEffective(new DateTimeType(new Date()));
-
-        // 장치 참조 설정
-        if (device != null) {
-            observation.setDevice(new Reference("Device/" + device.getId()));
-        }
+    // Elasticsearch 색인 큐 깊이와 전송 지연 시간을 조회하는 GET 메서드
+    @GetMapping("/indexer/stats")
+    public ResponseEntity<Map<String, Object>> getIndexerStatistics() {
+        return ResponseEntity.ok(elasticsearchIndexer.getStatistics());
+    }
 
-        return observation;
+    // FHIR 서버(샤드)별 상태를 조회하는 GET 메서드
+    @GetMapping("/shards/stats")
+    public ResponseEntity<List<Map<String, Object>>> getShardStatistics() {
+        return ResponseEntity.ok(shardRouter.getStatistics());
     }
+
+    // 환자/관찰 캐시의 적중, 실패, 제거 통계를 조회하는 GET 메서드
+    @GetMapping("/cache/stats")
+    public ResponseEntity<Map<String, Object>> getCacheStatistics() {
+        Map<String, Object> statistics = new LinkedHashMap<>(resourceCache.getStatistics());
+        statistics.put("everything", everythingCache.getStatistics());
+        return ResponseEntity.ok(statistics);
+    }
+
     @PostMapping("/to-excel")
     public ResponseEntity<byte[]> convertToExcel(@RequestBody String fhirData) {
-        logger.info("Received Data: {}", fhirData);
+        logger.debug("Received Data: {} chars", fhirData.length());
         try {
+            Timer.Sample sample = metrics.startTimer();
             JsonNode root = objectMapper.readTree(fhirData);
             Workbook workbook = new XSSFWorkbook();
             Sheet sheet = workbook.createSheet("FHIR Data");
 
             // Header Row
-            Row headerRow = sheet.createRow(0);
-            headerRow.createCell(0).setCellValue("ResourceType");
-            headerRow.createCell(1).setCellValue("ID");
-            headerRow.createCell(2).setCellValue("Name/Status");
-            headerRow.createCell(3).setCellValue("BirthDate/Category");
-            headerRow.createCell(4).setCellValue("Address/Code");
-            headerRow.createCell(5).setCellValue("MaritalStatus/Display");
-            headerRow.createCell(6).setCellValue("Value");
-            headerRow.createCell(7).setCellValue("Unit");
-            headerRow.createCell(8).setCellValue("Device");
+            excelExportService.writeHeader(sheet);
 
             // Data Rows
             JsonNode entries = root.path("entry");
@@ -229,52 +314,7 @@ public class ServiceController {
                 JsonNode resource = entry.path("resource");
 
                 Row row = sheet.createRow(rowIndex++);
-                row.createCell(0).setCellValue(resource.path("resourceType").asText());
-                row.createCell(1).setCellValue(resource.path("id").asText());
-
-                if (resource.path("resourceType").asText().equals("Patient")) {
-                    row.createCell(2).setCellValue(resource.path("name").get(0).path("family").asText());
-                    row.createCell(3).setCellValue(resource.path("birthDate").asText());
-                    row.createCell(4).setCellValue(resource.path("address").get(0).path("text").asText());
-                    row.createCell(5).setCellValue(resource.path("maritalStatus").path("text").asText());
-                } else if (resource.path("resourceType").asText().equals("Observation")) {
-                    row.createCell(2).setCellValue(resource.path("status").asText());
-
-                    JsonNode categoryNode = resource.path("category");
-                    String category = categoryNode.isArray() && categoryNode.size() > 0
-                            ? categoryNode.get(0).path("coding").get(0).path("display").asText()
-                            : "";
-                    row.createCell(3).setCellValue(category);
-
-                    JsonNode codeNode = resource.path("code").path("coding");
-                    String code = codeNode.isArray() && codeNode.size() > 0
-                            ? codeNode.get(0).path("code").asText()
-                            : "";
-                    String display = codeNode.isArray() && codeNode.size() > 0
-                            ? codeNode.get(0).path("display").asText()
-                            : "";
-                    row.createCell(4).setCellValue(code);
-                    row.createCell(5).setCellValue(display);
-
-                    JsonNode valueNode = resource.path("valueQuantity");
-                    row.createCell(6).setCellValue(valueNode.path("value").asDouble());
-                    row.createCell(7).setCellValue(valueNode.path("unit").asText());
-
-                    JsonNode deviceNode = resource.path("device");
-                    row.createCell(8).setCellValue(deviceNode.path("reference").asText());
-                } else if (resource.path("resourceType").asText().equals("Device")) {
-                    row.createCell(2).setCellValue(resource.path("manufacturer").asText());
-                    row.createCell(3).setCellValue(resource.path("deviceName").get(0).path("name").asText());
-                    row.createCell(4).setCellValue(resource.path("type").path("coding").get(0).path("display").asText());
-                } else {
-                    row.createCell(2).setCellValue("");
-                    row.createCell(3).setCellValue("");
-                    row.createCell(4).setCellValue("");
-                    row.createCell(5).setCellValue("");
-                    row.createCell(6).setCellValue("");
-                    row.createCell(7).setCellValue("");
-                    row.createCell(8).setCellValue("");
-                }
+                excelExportService.writeResourceRow(row, resource);
             }
 
             ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
@@ -282,6 +322,7 @@ public class ServiceController {
             workbook.close();
 
             byte[] excelData = outputStream.toByteArray();
+            metrics.recordExcel(sample, "in-memory", rowIndex - 1);
 
             HttpHeaders headers = new HttpHeaders();
             headers.setContentType(MediaType.APPLICATION_OCTET_STREAM);
@@ -295,4 +336,21 @@ public class ServiceController {
             return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).body(null);
         }
     }
+
+    // 요청 본문을 메모리에 올리지 않고 스트리밍으로 읽어 xlsx 를 바로 응답에 쓰는 엑셀 변환 메서드
+    @PostMapping("/to-excel/stream")
+    public ResponseEntity<StreamingResponseBody> convertToExcelStreaming(HttpServletRequest request) {
+        StreamingResponseBody body = outputStream -> {
+            int rows = excelExportService.exportStreaming(request.getInputStream(), outputStream);
+            logger.info("Exported {} entries to Excel", rows);
+        };
+
+        HttpHeaders headers = new HttpHeaders();
+        headers.setContentType(MediaType.APPLICATION_OCTET_STREAM);
+        headers.setContentDispositionFormData("attachment", "fhir_data.xlsx");
+
+        return ResponseEntity.ok()
+                .headers(headers)
+                .body(body);
+    }
 }
\ No newline at end of file
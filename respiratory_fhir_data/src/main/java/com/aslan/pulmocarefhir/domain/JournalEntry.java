@@ -0,0 +1,104 @@
+package com.aslan.pulmocarefhir.domain;
+
+import javax.persistence.*;
+import java.time.Instant;
+
+// FHIR 서버로 전송하기 전에 로컬 DB 에 먼저 기록해 두는 트랜잭션 번들
+@Entity
+@Table(name = "fhir_journal", indexes = @Index(name = "idx_fhir_journal_status", columnList = "status, nextAttemptAt"))
+public class JournalEntry {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Lob
+    @Column(nullable = false)
+    private String payload;
+
+    @Enumerated(EnumType.STRING)
+    @Column(nullable = false, length = 16)
+    private JournalStatus status;
+
+    private int attempts;
+
+    @Column(nullable = false)
+    private Instant createdAt;
+
+    private Instant nextAttemptAt;
+
+    private Instant forwardedAt;
+
+    @Column(length = 1000)
+    private String lastError;
+
+    protected JournalEntry() {
+    }
+
+    public JournalEntry(String payload, Instant createdAt) {
+        this.payload = payload;
+        this.status = JournalStatus.PENDING;
+        this.createdAt = createdAt;
+        this.nextAttemptAt = createdAt;
+    }
+
+    // 전송 성공으로 표시하는 메서드
+    public void markForwarded(Instant now) {
+        this.status = JournalStatus.FORWARDED;
+        this.attempts++;
+        this.forwardedAt = now;
+        this.nextAttemptAt = null;
+        this.lastError = null;
+    }
+
+    // 재시도 시각을 정하고 실패 사유를 기록하는 메서드
+    public void markRetry(Instant nextAttemptAt, String error) {
+        this.attempts++;
+        this.nextAttemptAt = nextAttemptAt;
+        this.lastError = truncate(error);
+    }
+
+    // 더 이상 재시도하지 않도록 실패로 표시하는 메서드
+    public void markFailed(String error) {
+        this.status = JournalStatus.FAILED;
+        this.attempts++;
+        this.nextAttemptAt = null;
+        this.lastError = truncate(error);
+    }
+
+    private String truncate(String error) {
+        return error != null && error.length() > 1000 ? error.substring(0, 1000) : error;
+    }
+
+    public Long getId() {
+        return id;
+    }
+
+    public String getPayload() {
+        return payload;
+    }
+
+    public JournalStatus getStatus() {
+        return status;
+    }
+
+    public int getAttempts() {
+        return attempts;
+    }
+
+    public Instant getCreatedAt() {
+        return createdAt;
+    }
+
+    public Instant getNextAttemptAt() {
+        return nextAttemptAt;
+    }
+
+    public Instant getForwardedAt() {
+        return forwardedAt;
+    }
+
+    public String getLastError() {
+        return lastError;
+    }
+}
@@ -0,0 +1,8 @@
+package com.aslan.pulmocarefhir.domain;
+
+// 저널 항목의 전송 상태
+public enum JournalStatus {
+    PENDING,    // 전송 대기 (재시도 포함)
+    FORWARDED,  // FHIR 서버에 전송 완료
+    FAILED      // 서버가 거부하여 더 이상 재시도하지 않음
+}
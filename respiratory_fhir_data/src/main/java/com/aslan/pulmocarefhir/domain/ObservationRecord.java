@@ -0,0 +1,79 @@
+package com.aslan.pulmocarefhir.domain;
+
+import javax.persistence.*;
+import java.time.Instant;
+
+// 추세 조회를 위해 환자, LOINC 코드, 측정 시각으로 색인한 관찰 값
+@Entity
+@Table(name = "observation_record",
+        indexes = @Index(name = "idx_observation_record_trend", columnList = "patientId, code, effectiveTime"),
+        uniqueConstraints = @UniqueConstraint(name = "uk_observation_record_observation", columnNames = "observationId"))
+public class ObservationRecord {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(nullable = false, length = 64)
+    private String observationId;
+
+    @Column(nullable = false, length = 64)
+    private String patientId;
+
+    @Column(nullable = false, length = 32)
+    private String code;
+
+    @Column(nullable = false)
+    private Instant effectiveTime;
+
+    @Column(name = "measured_value")
+    private Double value;
+
+    @Column(length = 32)
+    private String unit;
+
+    protected ObservationRecord() {
+    }
+
+    public ObservationRecord(String observationId, String patientId, String code, Instant effectiveTime, Double value, String unit) {
+        this.observationId = observationId;
+        update(patientId, code, effectiveTime, value, unit);
+    }
+
+    // 백필 시 서버의 최신 값으로 갱신하는 메서드
+    public void update(String patientId, String code, Instant effectiveTime, Double value, String unit) {
+        this.patientId = patientId;
+        this.code = code;
+        this.effectiveTime = effectiveTime;
+        this.value = value;
+        this.unit = unit;
+    }
+
+    public Long getId() {
+        return id;
+    }
+
+    public String getObservationId() {
+        return observationId;
+    }
+
+    public String getPatientId() {
+        return patientId;
+    }
+
+    public String getCode() {
+        return code;
+    }
+
+    public Instant getEffectiveTime() {
+        return effectiveTime;
+    }
+
+    public Double getValue() {
+        return value;
+    }
+
+    public String getUnit() {
+        return unit;
+    }
+}
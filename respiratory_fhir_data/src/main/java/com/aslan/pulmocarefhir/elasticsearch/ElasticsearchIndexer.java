@@ -0,0 +1,360 @@
+package com.aslan.pulmocarefhir.elasticsearch;
+
+import com.aslan.pulmocarefhir.event.TransactionCommittedEvent;
+import com.aslan.pulmocarefhir.util.ObservationValues;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import org.hl7.fhir.r4.model.Observation;
+import org.hl7.fhir.r4.model.Patient;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.*;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+// 서버에 반영된 Patient/Observation 을 Elasticsearch 에 비동기로 색인하는 파이프라인
+// 제한된 크기의 큐에 쌓아 두고, 전용 스레드가 batchSize 또는 flushInterval 중 먼저 도달하는 시점에 _bulk API 로 전송한다
+// 큐가 가득 차면 이벤트 하나당 최대 offerTimeout 까지만 생산자를 기다리게 하고, 그래도 자리가 없으면 버리고 개수를 기록한다
+// 이벤트는 FHIR 쓰기 요청 스레드에서 동기로 처리되므로, 문서 수와 관계없이 이벤트 하나가 기다리는 시간은 offerTimeout 을 넘지 않는다
+@Component
+public class ElasticsearchIndexer implements MeterBinder {
+
+    private static final Logger logger = LoggerFactory.getLogger(ElasticsearchIndexer.class);
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final HttpClient httpClient;
+    private final boolean enabled;
+    private final URI bulkUri;
+    private final String indexPrefix;
+    private final BlockingQueue<IndexDocument> queue;
+    private final int batchSize;
+    private final long flushIntervalMillis;
+    private final long offerTimeoutMillis;
+    private final int maxRetries;
+    private final long retryBackoffMillis;
+
+    private final AtomicLong indexedCount = new AtomicLong();
+    private final AtomicLong droppedCount = new AtomicLong();
+    private final AtomicLong failedCount = new AtomicLong();
+    private final AtomicLong flushCount = new AtomicLong();
+    private final AtomicLong flushTimeTotalMillis = new AtomicLong();
+    private final AtomicLong lastFlushMillis = new AtomicLong();
+    private final AtomicLong maxFlushMillis = new AtomicLong();
+
+    private volatile Timer flushTimer;
+    private volatile boolean running;
+    private Thread flusher;
+
+    public ElasticsearchIndexer(@Value("${fhir.elasticsearch.enabled:false}") boolean enabled,
+                                @Value("${fhir.elasticsearch.url:http://localhost:9200}") String url,
+                                @Value("${fhir.elasticsearch.index-prefix:fhir-}") String indexPrefix,
+                                @Value("${fhir.elasticsearch.queue-capacity:10000}") int queueCapacity,
+                                @Value("${fhir.elasticsearch.batch-size:500}") int batchSize,
+                                @Value("${fhir.elasticsearch.flush-interval-ms:1000}") long flushIntervalMillis,
+                                @Value("${fhir.elasticsearch.offer-timeout-ms:50}") long offerTimeoutMillis,
+                                @Value("${fhir.elasticsearch.max-retries:5}") int maxRetries,
+                                @Value("${fhir.elasticsearch.retry-backoff-ms:500}") long retryBackoffMillis) {
+        this.enabled = enabled;
+        this.bulkUri = URI.create(url.endsWith("/") ? url + "_bulk" : url + "/_bulk");
+        this.indexPrefix = indexPrefix;
+        this.queue = new ArrayBlockingQueue<>(queueCapacity);
+        this.batchSize = batchSize;
+        this.flushIntervalMillis = flushIntervalMillis;
+        this.offerTimeoutMillis = offerTimeoutMillis;
+        this.maxRetries = maxRetries;
+        this.retryBackoffMillis = retryBackoffMillis;
+        this.httpClient = HttpClient.newBuilder().connectTimeout(Duration.ofSeconds(5)).build();
+    }
+
+    @PostConstruct
+    public void start() {
+        if (!enabled) {
+            return;
+        }
+        running = true;
+        flusher = new Thread(this::runFlusher, "elasticsearch-indexer");
+        flusher.setDaemon(true);
+        flusher.start();
+    }
+
+    // 전송 중인 배치와 큐에 남은 문서를 보낼 수 있도록 전송 스레드를 인터럽트하지 않고 끝나기를 기다린다
+    // 제한 시간 안에 끝나지 않을 때만(Elasticsearch 응답 없음 등) 인터럽트하여 남은 재시도를 포기시킨다
+    @PreDestroy
+    public void stop() throws InterruptedException {
+        if (flusher == null) {
+            return;
+        }
+        running = false;
+        flusher.join(TimeUnit.SECONDS.toMillis(10));
+        if (flusher.isAlive()) {
+            logger.warn("Elasticsearch indexer did not finish within 10 s, {} documents left in queue", queue.size());
+            flusher.interrupt();
+            flusher.join(TimeUnit.SECONDS.toMillis(1));
+        }
+    }
+
+    // 서버에 반영된 리소스를 색인 큐에 넣는 메서드
+    @EventListener
+    public void onTransactionCommitted(TransactionCommittedEvent event) {
+        if (!enabled) {
+            return;
+        }
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(offerTimeoutMillis);
+        for (Patient patient : event.getCommittedResources(Patient.class)) {
+            enqueue(new IndexDocument(indexPrefix + "patients", patient.getIdElement().getIdPart(), toDocument(patient)), deadline);
+        }
+        for (Observation observation : event.getCommittedResources(Observation.class)) {
+            enqueue(new IndexDocument(indexPrefix + "observations", observation.getIdElement().getIdPart(), toDocument(observation)), deadline);
+        }
+    }
+
+    // 큐 깊이, 색인/버림/실패 건수, 전송 지연 시간을 반환하는 메서드
+    public Map<String, Object> getStatistics() {
+        long flushes = flushCount.get();
+        Map<String, Object> statistics = new LinkedHashMap<>();
+        statistics.put("enabled", enabled);
+        statistics.put("queueDepth", queue.size());
+        statistics.put("queueRemainingCapacity", queue.remainingCapacity());
+        statistics.put("indexedCount", indexedCount.get());
+        statistics.put("droppedCount", droppedCount.get());
+        statistics.put("failedCount", failedCount.get());
+        statistics.put("flushCount", flushes);
+        statistics.put("lastFlushMillis", lastFlushMillis.get());
+        statistics.put("maxFlushMillis", maxFlushMillis.get());
+        statistics.put("meanFlushMillis", flushes > 0 ? (double) flushTimeTotalMillis.get() / flushes : 0.0);
+        return statistics;
+    }
+
+    public int getQueueDepth() {
+        return queue.size();
+    }
+
+    // 큐 깊이, 색인/버림/실패 건수와 전송 지연 시간을 /actuator/prometheus 에 노출하는 메서드
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        Gauge.builder("fhir.elasticsearch.queue.depth", queue, BlockingQueue::size)
+                .baseUnit("documents")
+                .register(registry);
+        FunctionCounter.builder("fhir.elasticsearch.documents", indexedCount, AtomicLong::get)
+                .tag("result", "indexed")
+                .register(registry);
+        FunctionCounter.builder("fhir.elasticsearch.documents", droppedCount, AtomicLong::get)
+                .tag("result", "dropped")
+                .register(registry);
+        FunctionCounter.builder("fhir.elasticsearch.documents", failedCount, AtomicLong::get)
+                .tag("result", "failed")
+                .register(registry);
+        flushTimer = Timer.builder("fhir.elasticsearch.flush")
+                .publishPercentileHistogram()
+                .register(registry);
+    }
+
+    // 이벤트의 기한(deadline, System.nanoTime 기준)이 지났으면 기다리지 않고 바로 버린다
+    private void enqueue(IndexDocument document, long deadline) {
+        try {
+            long remaining = deadline - System.nanoTime();
+            boolean queued = remaining > 0
+                    ? queue.offer(document, remaining, TimeUnit.NANOSECONDS)
+                    : queue.offer(document);
+            if (!queued) {
+                droppedCount.incrementAndGet();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            droppedCount.incrementAndGet();
+        }
+    }
+
+    // 첫 문서가 들어온 뒤 batchSize 가 차거나 flushInterval 이 지나면 전송한다
+    private void runFlusher() {
+        List<IndexDocument> batch = new ArrayList<>(batchSize);
+        boolean interrupted = false;
+        while (!interrupted && (running || !queue.isEmpty())) {
+            try {
+                IndexDocument first = queue.poll(flushIntervalMillis, TimeUnit.MILLISECONDS);
+                if (first == null) {
+                    continue;
+                }
+                batch.add(first);
+                long deadline = System.currentTimeMillis() + flushIntervalMillis;
+                while (batch.size() < batchSize) {
+                    queue.drainTo(batch, batchSize - batch.size());
+                    long remaining = deadline - System.currentTimeMillis();
+                    if (batch.size() >= batchSize || remaining <= 0) {
+                        break;
+                    }
+                    IndexDocument next = queue.poll(remaining, TimeUnit.MILLISECONDS);
+                    if (next == null) {
+                        break;
+                    }
+                    batch.add(next);
+                }
+            } catch (InterruptedException e) {
+                // 종료 제한 시간을 넘겨 인터럽트된 경우, 이미 모은 배치만 보내 보고 끝낸다
+                Thread.currentThread().interrupt();
+                interrupted = true;
+            }
+
+            if (!batch.isEmpty()) {
+                flush(batch);
+                batch.clear();
+            }
+        }
+    }
+
+    // _bulk 요청을 보내고, 429/5xx 로 실패한 문서만 백오프 후 다시 보내는 메서드
+    private void flush(List<IndexDocument> batch) {
+        long started = System.currentTimeMillis();
+        List<IndexDocument> pending = batch;
+        for (int attempt = 0; !pending.isEmpty(); attempt++) {
+            if (attempt > 0) {
+                if (attempt > maxRetries) {
+                    logger.warn("Dropping {} documents after {} retries", pending.size(), maxRetries);
+                    failedCount.addAndGet(pending.size());
+                    break;
+                }
+                if (!sleep(retryBackoffMillis << Math.min(attempt - 1, 10))) {
+                    failedCount.addAndGet(pending.size());
+                    break;
+                }
+            }
+            pending = send(pending);
+        }
+
+        long elapsed = System.currentTimeMillis() - started;
+        flushCount.incrementAndGet();
+        flushTimeTotalMillis.addAndGet(elapsed);
+        lastFlushMillis.set(elapsed);
+        maxFlushMillis.accumulateAndGet(elapsed, Math::max);
+        Timer timer = flushTimer;
+        if (timer != null) {
+            timer.record(elapsed, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    // 문서를 전송하고 다시 보내야 할 문서 목록을 반환하는 메서드
+    private List<IndexDocument> send(List<IndexDocument> documents) {
+        StringBuilder body = new StringBuilder();
+        for (IndexDocument document : documents) {
+            ObjectNode action = objectMapper.createObjectNode();
+            action.putObject("index").put("_index", document.index).put("_id", document.id);
+            body.append(action).append('\n').append(document.source).append('\n');
+        }
+
+        HttpRequest request = HttpRequest.newBuilder(bulkUri)
+                .timeout(Duration.ofSeconds(30))
+                .header("Content-Type", "application/x-ndjson")
+                .POST(HttpRequest.BodyPublishers.ofString(body.toString(), StandardCharsets.UTF_8))
+                .build();
+        try {
+            HttpResponse<String> response = httpClient.send(request, HttpResponse.BodyHandlers.ofString());
+            if (response.statusCode() == 429 || response.statusCode() >= 500) {
+                logger.warn("Elasticsearch bulk request returned {}", response.statusCode());
+                return documents;
+            }
+            if (response.statusCode() >= 400) {
+                logger.error("Elasticsearch bulk request rejected with {}: {}", response.statusCode(), response.body());
+                failedCount.addAndGet(documents.size());
+                return Collections.emptyList();
+            }
+            return retryableItems(documents, objectMapper.readTree(response.body()));
+        } catch (IOException e) {
+            logger.warn("Elasticsearch bulk request failed: {}", e.getMessage());
+            return documents;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return documents;
+        }
+    }
+
+    // 응답의 items 를 확인하여 429/5xx 문서는 재시도 대상으로, 그 외 오류는 실패로 분류하는 메서드
+    private List<IndexDocument> retryableItems(List<IndexDocument> documents, JsonNode response) {
+        if (!response.path("errors").asBoolean(false)) {
+            indexedCount.addAndGet(documents.size());
+            return Collections.emptyList();
+        }
+        List<IndexDocument> retry = new ArrayList<>();
+        JsonNode items = response.path("items");
+        for (int i = 0; i < documents.size(); i++) {
+            int status = items.path(i).path("index").path("status").asInt(500);
+            if (status < 300) {
+                indexedCount.incrementAndGet();
+            } else if (status == 429 || status >= 500) {
+                retry.add(documents.get(i));
+            } else {
+                logger.warn("Elasticsearch rejected document {}: {}", documents.get(i).id, items.path(i).path("index").path("error"));
+                failedCount.incrementAndGet();
+            }
+        }
+        return retry;
+    }
+
+    private boolean sleep(long millis) {
+        try {
+            Thread.sleep(millis);
+            return true;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+
+    private String toDocument(Patient patient) {
+        ObjectNode document = objectMapper.createObjectNode();
+        document.put("patientId", patient.getIdElement().getIdPart());
+        document.put("family", patient.hasName() ? patient.getNameFirstRep().getFamily() : null);
+        document.put("birthDate", patient.hasBirthDate() ? patient.getBirthDateElement().getValueAsString() : null);
+        document.put("address", patient.hasAddress() ? patient.getAddressFirstRep().getText() : null);
+        document.put("maritalStatus", patient.hasMaritalStatus() ? patient.getMaritalStatus().getText() : null);
+        return document.toString();
+    }
+
+    private String toDocument(Observation observation) {
+        ObjectNode document = objectMapper.createObjectNode();
+        document.put("observationId", observation.getIdElement().getIdPart());
+        document.put("patientId", observation.getSubject().getReferenceElement().getIdPart());
+        document.put("deviceId", observation.hasDevice() ? observation.getDevice().getReferenceElement().getIdPart() : null);
+        document.put("status", observation.hasStatus() ? observation.getStatus().toCode() : null);
+        document.put("code", ObservationValues.loincCode(observation));
+        document.put("display", observation.getCode().getCodingFirstRep().getDisplay());
+        document.put("value", ObservationValues.quantityValue(observation));
+        document.put("unit", ObservationValues.quantityUnit(observation));
+        Date effective = ObservationValues.effectiveTime(observation);
+        document.put("effectiveTime", effective != null ? effective.toInstant().toString() : null);
+        return document.toString();
+    }
+
+    // 색인할 문서
+    private static class IndexDocument {
+        private final String index;
+        private final String id;
+        private final String source;
+
+        IndexDocument(String index, String id, String source) {
+            this.index = index;
+            this.id = id;
+            this.source = source;
+        }
+    }
+}
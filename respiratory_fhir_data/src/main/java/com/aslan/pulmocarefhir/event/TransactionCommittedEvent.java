@@ -0,0 +1,74 @@
+package com.aslan.pulmocarefhir.event;
+
+import org.hl7.fhir.r4.model.*;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+// 트랜잭션 번들이 FHIR 서버에 반영된 뒤 발행되는 이벤트
+// 캐시, 관찰 인덱스 등 로컬 읽기 모델은 이 이벤트를 받아 서버가 부여한 ID 로 갱신한다
+public class TransactionCommittedEvent {
+
+    private final Bundle requestBundle;
+    private final Bundle responseBundle;
+    private Map<String, String> assignedIds;
+
+    public TransactionCommittedEvent(Bundle requestBundle, Bundle responseBundle) {
+        this.requestBundle = requestBundle;
+        this.responseBundle = responseBundle;
+    }
+
+    public Bundle getRequestBundle() {
+        return requestBundle;
+    }
+
+    public Bundle getResponseBundle() {
+        return responseBundle;
+    }
+
+    // 요청 번들의 리소스 중 지정한 타입을 서버가 부여한 ID 로 바꾼 복사본으로 반환하는 메서드
+    // Observation 의 subject/device 처럼 urn:uuid 로 된 참조도 "리소스타입/ID" 로 바꾼다
+    public <T extends Resource> List<T> getCommittedResources(Class<T> type) {
+        Map<String, String> ids = getAssignedIds();
+        List<T> resources = new ArrayList<>();
+        for (Bundle.BundleEntryComponent entry : requestBundle.getEntry()) {
+            String assignedId = ids.get(entry.getFullUrl());
+            if (assignedId == null || !type.isInstance(entry.getResource())) {
+                continue;
+            }
+            T resource = type.cast(entry.getResource().copy());
+            resource.setId(assignedId);
+            if (resource instanceof Observation) {
+                Observation observation = (Observation) resource;
+                resolveReference(observation.getSubject(), ids);
+                resolveReference(observation.getDevice(), ids);
+            }
+            resources.add(resource);
+        }
+        return resources;
+    }
+
+    // urn:uuid 형태의 fullUrl 을 응답 location 의 "리소스타입/ID" 로 매핑한 결과를 반환하는 메서드
+    public synchronized Map<String, String> getAssignedIds() {
+        if (assignedIds == null) {
+            assignedIds = new HashMap<>();
+            for (int i = 0; i < requestBundle.getEntry().size() && i < responseBundle.getEntry().size(); i++) {
+                String location = responseBundle.getEntry().get(i).getResponse().getLocation();
+                String fullUrl = requestBundle.getEntry().get(i).getFullUrl();
+                if (location != null && fullUrl != null) {
+                    assignedIds.put(fullUrl, new IdType(location).toUnqualifiedVersionless().getValue());
+                }
+            }
+        }
+        return assignedIds;
+    }
+
+    private void resolveReference(Reference reference, Map<String, String> ids) {
+        String assignedId = ids.get(reference.getReference());
+        if (assignedId != null) {
+            reference.setReference(assignedId);
+        }
+    }
+}
@@ -0,0 +1,239 @@
+package com.aslan.pulmocarefhir.export;
+
+import ca.uhn.fhir.context.FhirContext;
+import ca.uhn.fhir.parser.IParser;
+import ca.uhn.fhir.rest.client.api.IGenericClient;
+import ca.uhn.fhir.rest.gclient.IQuery;
+import ca.uhn.fhir.rest.param.DateRangeParam;
+import com.aslan.pulmocarefhir.metrics.FhirMetrics;
+import com.aslan.pulmocarefhir.routing.Shard;
+import com.aslan.pulmocarefhir.routing.ShardRouter;
+import com.aslan.pulmocarefhir.service.DeviceRegistry;
+import org.hl7.fhir.instance.model.api.IBaseBundle;
+import org.hl7.fhir.r4.model.Bundle;
+import org.hl7.fhir.r4.model.Device;
+import org.hl7.fhir.r4.model.Identifier;
+import org.hl7.fhir.r4.model.Resource;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.stereotype.Service;
+import org.springframework.util.FileSystemUtils;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.zip.GZIPOutputStream;
+
+// FHIR Bulk Data $export 방식(시작/상태 조회/다운로드)의 대량 내보내기 서비스
+// 리소스 타입별로 서버 검색 결과를 페이지 단위로 받아 gzip 압축 NDJSON 파일에 바로 기록하므로
+// 환자마다 $everything 을 호출하지 않고, 메모리에는 한 페이지만 유지한다
+@Service
+public class BulkExportService {
+
+    public static final List<String> SUPPORTED_TYPES = List.of("Patient", "Device", "Observation");
+
+    private static final Logger logger = LoggerFactory.getLogger(BulkExportService.class);
+
+    private final FhirContext fhirContext;
+    private final ShardRouter shardRouter;
+    private final FhirMetrics metrics;
+    private final Path baseDirectory;
+    private final int pageSize;
+    private final Duration retention;
+    private final ExecutorService executor;
+    private final Map<String, ExportJob> jobs = new ConcurrentHashMap<>();
+
+    public BulkExportService(FhirContext fhirContext,
+                             ShardRouter shardRouter,
+                             FhirMetrics metrics,
+                             @Value("${fhir.export.directory:./data/exports}") String directory,
+                             @Value("${fhir.export.page-size:500}") int pageSize,
+                             @Value("${fhir.export.retention-hours:24}") long retentionHours,
+                             @Value("${fhir.export.worker-threads:1}") int workerThreads) {
+        this.fhirContext = fhirContext;
+        this.shardRouter = shardRouter;
+        this.metrics = metrics;
+        this.baseDirectory = Paths.get(directory);
+        this.pageSize = pageSize;
+        this.retention = Duration.ofHours(retentionHours);
+        this.executor = Executors.newFixedThreadPool(workerThreads, new CustomizableThreadFactory("fhir-export-"));
+    }
+
+    // 작업 목록은 메모리에만 있으므로 이전 실행에서 남은 작업 디렉터리는 다시 찾을 수 없다, 시작할 때 지운다
+    // 설정한 디렉터리에 다른 파일이 있어도 지우지 않도록 작업 ID(UUID) 이름의 디렉터리만 지운다
+    @PostConstruct
+    public void removeOrphanedExports() throws IOException {
+        if (!Files.isDirectory(baseDirectory)) {
+            return;
+        }
+        try (DirectoryStream<Path> directories = Files.newDirectoryStream(baseDirectory, Files::isDirectory)) {
+            for (Path directory : directories) {
+                if (isJobId(directory.getFileName().toString())) {
+                    FileSystemUtils.deleteRecursively(directory);
+                    logger.info("Removed orphaned bulk export {}", directory.getFileName());
+                }
+            }
+        }
+    }
+
+    // 내보내기 작업을 등록하고 백그라운드에서 시작하는 메서드
+    public ExportJob start(List<String> types, Instant since) throws IOException {
+        String id = UUID.randomUUID().toString();
+        Path directory = Files.createDirectories(baseDirectory.resolve(id));
+        ExportJob job = new ExportJob(id, types, since, directory);
+        jobs.put(id, job);
+        executor.submit(() -> run(job));
+        return job;
+    }
+
+    public Optional<ExportJob> find(String id) {
+        return Optional.ofNullable(jobs.get(id));
+    }
+
+    // 작업을 취소하고 파일을 지우는 메서드, 실행 중이면 현재 페이지를 마친 뒤 멈춘다
+    public boolean delete(String id) {
+        ExportJob job = jobs.remove(id);
+        if (job == null) {
+            return false;
+        }
+        job.requestCancel();
+        if (job.getStatus() != ExportJob.Status.IN_PROGRESS) {
+            deleteFiles(job);
+        }
+        return true;
+    }
+
+    // 보관 기간이 지난 작업과 파일을 정리하는 메서드
+    @Scheduled(fixedDelayString = "${fhir.export.purge-interval-ms:3600000}")
+    public void purge() {
+        Instant threshold = Instant.now().minus(retention);
+        for (ExportJob job : jobs.values()) {
+            if (job.getFinishedAt() != null && job.getFinishedAt().isBefore(threshold)) {
+                jobs.remove(job.getId());
+                deleteFiles(job);
+            }
+        }
+    }
+
+    private void run(ExportJob job) {
+        // 검색 시작 전 시각을 기록해 두면 다음 증분 내보내기의 _since 로 쓸 수 있다
+        job.started(Instant.now());
+        try {
+            for (String type : job.getTypes()) {
+                exportType(job, type);
+                if (job.isCancelRequested()) {
+                    break;
+                }
+            }
+            if (job.isCancelRequested()) {
+                job.cancelled();
+            } else {
+                job.completed();
+                logger.info("Bulk export {} completed: {}", job.getId(), job.getTypes());
+            }
+        } catch (IOException | RuntimeException e) {
+            logger.error("Bulk export {} failed", job.getId(), e);
+            job.failed(e.getMessage());
+        }
+        // delete() 는 실행 중인 작업의 파일을 지우지 않으므로, 마지막 확인 이후 완료/실패 직전에 도착한 취소 요청도 여기서 처리한다
+        if (job.isCancelRequested()) {
+            deleteFiles(job);
+        }
+    }
+
+    // 한 리소스 타입의 모든 페이지를 임시 파일에 기록한 뒤 완료되면 최종 파일 이름으로 바꾸는 메서드
+    // 취소 요청이 있으면 현재 페이지까지만 기록하고 멈춘다, 샤드가 여러 개면 모든 샤드의 리소스를 차례대로 기록한다
+    // Device 는 샤드마다 같은 장비가 한 번씩 등록되므로 장비 식별자(urn:pulmocare:device)가 같으면 처음 것만 기록한다
+    private void exportType(ExportJob job, String type) throws IOException {
+        Path target = job.getOutputFile(type);
+        Path partial = target.resolveSibling(target.getFileName() + ".part");
+        IParser parser = fhirContext.newJsonParser();
+        Set<String> deviceKeys = new HashSet<>();
+        long count = 0;
+        job.progress(type, 0);
+
+        try (Writer writer = new BufferedWriter(new OutputStreamWriter(
+                new GZIPOutputStream(Files.newOutputStream(partial), 64 * 1024), StandardCharsets.UTF_8))) {
+            for (Shard shard : shardRouter.getShards()) {
+                IGenericClient client = shard.getClient();
+                IQuery<Bundle> query = client.search()
+                        .forResource(type)
+                        .count(pageSize)
+                        .returnBundle(Bundle.class);
+                if (job.getSince() != null) {
+                    query = query.lastUpdated(new DateRangeParam().setLowerBoundInclusive(Date.from(job.getSince())));
+                }
+                Bundle page = metrics.timeUpstream("export-page", query::execute);
+                while (true) {
+                    for (Bundle.BundleEntryComponent entry : page.getEntry()) {
+                        if (entry.hasResource() && type.equals(entry.getResource().fhirType())
+                                && !isDuplicateDevice(entry.getResource(), deviceKeys)) {
+                            parser.encodeResourceToWriter(entry.getResource(), writer);
+                            writer.write('\n');
+                            count++;
+                        }
+                    }
+                    job.progress(type, count);
+                    if (job.isCancelRequested()) {
+                        return;
+                    }
+                    if (page.getLink(IBaseBundle.LINK_NEXT) == null) {
+                        break;
+                    }
+                    Bundle current = page;
+                    page = metrics.timeUpstream("export-page", () -> client.loadPage().next(current).execute());
+                }
+            }
+        }
+        Files.move(partial, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    // 이미 기록한 장비 식별자를 가진 Device 인지 확인하고, 처음 보는 식별자는 기록해 두는 메서드
+    private static boolean isDuplicateDevice(Resource resource, Set<String> deviceKeys) {
+        if (!(resource instanceof Device)) {
+            return false;
+        }
+        for (Identifier identifier : ((Device) resource).getIdentifier()) {
+            if (DeviceRegistry.DEVICE_IDENTIFIER_SYSTEM.equals(identifier.getSystem()) && identifier.hasValue()) {
+                return !deviceKeys.add(identifier.getValue());
+            }
+        }
+        return false;
+    }
+
+    private static boolean isJobId(String name) {
+        try {
+            return UUID.fromString(name).toString().equals(name);
+        } catch (IllegalArgumentException e) {
+            return false;
+        }
+    }
+
+    private void deleteFiles(ExportJob job) {
+        try {
+            FileSystemUtils.deleteRecursively(job.getDirectory());
+        } catch (IOException e) {
+            logger.warn("Could not delete export files of {}: {}", job.getId(), e.getMessage());
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+}
@@ -0,0 +1,134 @@
+package com.aslan.pulmocarefhir.export;
+
+import java.nio.file.Path;
+import java.time.Instant;
+import java.util.*;
+
+// 대량 내보내기 작업 하나의 상태
+// 작업 스레드가 진행 상황을 갱신하고, 상태 조회 요청은 getManifest 로 그 시점의 복사본을 읽는다
+public class ExportJob {
+
+    public enum Status { IN_PROGRESS, COMPLETED, FAILED, CANCELLED }
+
+    private final String id;
+    private final List<String> types;
+    private final Instant since;
+    private final Instant requestedAt = Instant.now();
+    private final Path directory;
+    private final Map<String, Long> counts = new LinkedHashMap<>();
+    private Status status = Status.IN_PROGRESS;
+    private String currentType;
+    private Instant transactionTime;
+    private Instant finishedAt;
+    private String error;
+    private volatile boolean cancelRequested;
+
+    ExportJob(String id, List<String> types, Instant since, Path directory) {
+        this.id = id;
+        this.types = List.copyOf(types);
+        this.since = since;
+        this.directory = directory;
+    }
+
+    public String getId() {
+        return id;
+    }
+
+    public List<String> getTypes() {
+        return types;
+    }
+
+    public Instant getSince() {
+        return since;
+    }
+
+    public Path getDirectory() {
+        return directory;
+    }
+
+    public Path getOutputFile(String type) {
+        return directory.resolve(type + ".ndjson.gz");
+    }
+
+    public synchronized Status getStatus() {
+        return status;
+    }
+
+    public synchronized Instant getFinishedAt() {
+        return finishedAt;
+    }
+
+    public synchronized String getError() {
+        return error;
+    }
+
+    // 진행 중이면 "Observation: 12000 resources" 형태로, 끝났으면 null 을 반환하는 메서드
+    public synchronized String getProgress() {
+        if (status != Status.IN_PROGRESS || currentType == null) {
+            return null;
+        }
+        return currentType + ": " + counts.getOrDefault(currentType, 0L) + " resources";
+    }
+
+    public boolean isCancelRequested() {
+        return cancelRequested;
+    }
+
+    void requestCancel() {
+        cancelRequested = true;
+    }
+
+    synchronized void started(Instant transactionTime) {
+        this.transactionTime = transactionTime;
+    }
+
+    synchronized void progress(String type, long count) {
+        currentType = type;
+        counts.put(type, count);
+    }
+
+    synchronized void completed() {
+        finish(Status.COMPLETED, null);
+    }
+
+    synchronized void failed(String error) {
+        finish(Status.FAILED, error);
+    }
+
+    synchronized void cancelled() {
+        finish(Status.CANCELLED, null);
+    }
+
+    private void finish(Status status, String error) {
+        this.status = status;
+        this.error = error;
+        this.currentType = null;
+        this.finishedAt = Instant.now();
+    }
+
+    // Bulk Data 완료 응답 형식의 매니페스트를 반환하는 메서드, 파일 URL 은 baseUrl 기준으로 만든다
+    public synchronized Map<String, Object> getManifest(String baseUrl) {
+        Map<String, Object> manifest = new LinkedHashMap<>();
+        manifest.put("transactionTime", String.valueOf(transactionTime));
+        manifest.put("request", baseUrl + "/$export?_type=" + String.join(",", types)
+                + (since != null ? "&_since=" + since : ""));
+        manifest.put("requiresAccessToken", false);
+
+        List<Map<String, Object>> output = new ArrayList<>();
+        for (String type : types) {
+            Map<String, Object> file = new LinkedHashMap<>();
+            file.put("type", type);
+            file.put("url", baseUrl + "/" + id + "/" + type + ".ndjson.gz");
+            file.put("count", counts.getOrDefault(type, 0L));
+            output.add(file);
+        }
+        manifest.put("output", output);
+
+        List<Map<String, Object>> errors = new ArrayList<>();
+        if (error != null) {
+            errors.add(Map.of("type", "OperationOutcome", "diagnostics", error));
+        }
+        manifest.put("error", errors);
+        return manifest;
+    }
+}
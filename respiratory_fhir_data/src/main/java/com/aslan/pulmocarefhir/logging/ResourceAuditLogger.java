@@ -0,0 +1,95 @@
+package com.aslan.pulmocarefhir.logging;
+
+import com.aslan.pulmocarefhir.config.FhirParsers;
+import org.hl7.fhir.r4.model.Bundle;
+import org.hl7.fhir.r4.model.Resource;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PreDestroy;
+import java.util.*;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+// 생성/전송한 번들을 로그로 남기는 컴포넌트
+// 기본으로는 리소스 종류별 개수와 ID 만 기록하고(fhir.audit), 리소스 전체 JSON 은 fhir.audit.payload 로거의 DEBUG 가
+// 켜져 있고 샘플링(N 건 중 1 건)에 걸린 경우에만 별도 스레드에서 인코딩하여 최대 길이까지 기록한다
+// 인코딩 큐가 가득 차면 요청 스레드를 막지 않고 해당 로그를 버린다
+@Component
+public class ResourceAuditLogger {
+
+    private static final Logger auditLogger = LoggerFactory.getLogger("fhir.audit");
+    private static final Logger payloadLogger = LoggerFactory.getLogger("fhir.audit.payload");
+
+    private final FhirParsers parsers;
+    private final int sampleRate;
+    private final int maxChars;
+    private final ThreadPoolExecutor encoder;
+    private final AtomicLong sequence = new AtomicLong();
+    private final AtomicLong droppedCount = new AtomicLong();
+
+    public ResourceAuditLogger(FhirParsers parsers,
+                               @Value("${fhir.audit.payload-sample-rate:100}") int sampleRate,
+                               @Value("${fhir.audit.payload-max-chars:8192}") int maxChars,
+                               @Value("${fhir.audit.queue-capacity:256}") int queueCapacity) {
+        this.parsers = parsers;
+        this.sampleRate = sampleRate;
+        this.maxChars = maxChars;
+        this.encoder = new ThreadPoolExecutor(1, 1, 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(queueCapacity), new CustomizableThreadFactory("fhir-audit-"));
+    }
+
+    // 번들에 담긴 리소스의 종류별 개수와 ID 를 기록하는 메서드
+    // 전체 JSON 은 번들이 더 이상 수정되지 않는 시점(전송 또는 저널 기록 이후)에 호출해야 다른 스레드에서 안전하게 인코딩된다
+    public void logBundle(String label, Bundle bundle) {
+        if (auditLogger.isInfoEnabled()) {
+            Map<String, List<String>> idsByType = new TreeMap<>();
+            for (Bundle.BundleEntryComponent entry : bundle.getEntry()) {
+                if (entry.hasResource()) {
+                    Resource resource = entry.getResource();
+                    idsByType.computeIfAbsent(resource.fhirType(), key -> new ArrayList<>())
+                            .add(resource.getIdElement().getIdPart());
+                } else if (entry.hasResponse()) {
+                    idsByType.computeIfAbsent("response", key -> new ArrayList<>())
+                            .add(entry.getResponse().getLocation());
+                }
+            }
+            auditLogger.info("{}: type={}, entries={}, resources={}", label, bundle.getType(), bundle.getEntry().size(), idsByType);
+        }
+        logPayload(label, bundle);
+    }
+
+    // 샘플링에 걸린 리소스만 별도 스레드에서 인코딩하여 기록하는 메서드
+    public void logPayload(String label, Resource resource) {
+        if (!payloadLogger.isDebugEnabled() || sampleRate <= 0 || sequence.getAndIncrement() % sampleRate != 0) {
+            return;
+        }
+        try {
+            encoder.execute(() -> payloadLogger.debug("{}: {}", label, truncate(parsers.json().encodeResourceToString(resource))));
+        } catch (RejectedExecutionException e) {
+            droppedCount.incrementAndGet();
+        }
+    }
+
+    public long getDroppedCount() {
+        return droppedCount.get();
+    }
+
+    private String truncate(String encoded) {
+        if (encoded.length() <= maxChars) {
+            return encoded;
+        }
+        return encoded.substring(0, maxChars) + "...(" + (encoded.length() - maxChars) + " more chars)";
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        encoder.shutdown();
+    }
+}
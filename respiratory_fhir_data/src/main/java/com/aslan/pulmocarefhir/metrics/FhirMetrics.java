@@ -0,0 +1,110 @@
+package com.aslan.pulmocarefhir.metrics;
+
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.stereotype.Component;
+
+import java.util.function.Supplier;
+
+// 요청 지연의 주요 구간(FHIR 서버 호출, JSON 인코딩/파싱, 엑셀 생성)과 번들 크기, 페이로드 크기를 기록하는 컴포넌트
+// 모든 미터는 백분위 히스토그램을 게시하므로 /actuator/prometheus 에서 p50/p95/p99 를 계산할 수 있다
+@Component
+public class FhirMetrics {
+
+    private final MeterRegistry registry;
+
+    public FhirMetrics(MeterRegistry registry) {
+        this.registry = registry;
+    }
+
+    public MeterRegistry getRegistry() {
+        return registry;
+    }
+
+    // FHIR 서버 호출 시간을 operation, outcome 태그로 기록하는 메서드
+    public <T> T timeUpstream(String operation, Supplier<T> call) {
+        Timer.Sample sample = Timer.start(registry);
+        String outcome = "error";
+        try {
+            T result = call.get();
+            outcome = "success";
+            return result;
+        } finally {
+            sample.stop(timer("fhir.upstream.requests", "operation", operation, "outcome", outcome));
+        }
+    }
+
+    // JSON 인코딩 시간과 결과 크기를 기록하는 메서드
+    public String timeEncode(String type, Supplier<String> encoder) {
+        Timer.Sample sample = Timer.start(registry);
+        String encoded = encoder.get();
+        sample.stop(timer("fhir.json.encode", "type", type));
+        recordPayloadBytes(type, encoded);
+        return encoded;
+    }
+
+    // JSON 파싱 시간을 기록하는 메서드
+    public <T> T timeParse(String type, Supplier<T> parser) {
+        Timer.Sample sample = Timer.start(registry);
+        try {
+            return parser.get();
+        } finally {
+            sample.stop(timer("fhir.json.parse", "type", type));
+        }
+    }
+
+    public Timer.Sample startTimer() {
+        return Timer.start(registry);
+    }
+
+    // 엑셀 생성 시간과 행 수를 기록하는 메서드
+    public void recordExcel(Timer.Sample sample, String mode, int rows) {
+        sample.stop(timer("fhir.excel.generation", "mode", mode));
+        summary("fhir.excel.rows", "rows", "mode", mode).record(rows);
+    }
+
+    // 번들 entry 수를 기록하는 메서드
+    public void recordBundleEntries(String operation, int entries) {
+        summary("fhir.bundle.entries", "entries", "operation", operation).record(entries);
+    }
+
+    // 페이로드의 UTF-8 바이트 수를 기록하는 메서드
+    public void recordPayloadBytes(String type, String payload) {
+        summary("fhir.payload.size", "bytes", "type", type).record(utf8Length(payload));
+    }
+
+    private Timer timer(String name, String... tags) {
+        return Timer.builder(name)
+                .tags(tags)
+                .publishPercentileHistogram()
+                .register(registry);
+    }
+
+    private DistributionSummary summary(String name, String baseUnit, String... tags) {
+        return DistributionSummary.builder(name)
+                .baseUnit(baseUnit)
+                .tags(tags)
+                .publishPercentileHistogram()
+                .register(registry);
+    }
+
+    // 문자열을 실제로 인코딩하지 않고 UTF-8 바이트 수를 계산하는 메서드
+    static long utf8Length(String value) {
+        long length = 0;
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c < 0x80) {
+                length++;
+            } else if (c < 0x800) {
+                length += 2;
+            } else if (Character.isHighSurrogate(c)) {
+                length += 4;
+                i++;
+            } else {
+                length += 3;
+            }
+        }
+        return length;
+    }
+}
@@ -0,0 +1,65 @@
+package com.aslan.pulmocarefhir.metrics;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.TimeGauge;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import javax.servlet.FilterChain;
+import javax.servlet.ServletException;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+// JVM 시작부터 애플리케이션 준비 완료, 첫 번째 성공 응답까지 걸린 시간을 기록하는 필터
+// 콜드 스타트 개선(빠른 시작 모드, AppCDS) 전후를 fhir.startup.* 지표와 로그로 비교할 수 있다
+@Component
+public class StartupMetrics extends OncePerRequestFilter {
+
+    private static final Logger logger = LoggerFactory.getLogger(StartupMetrics.class);
+
+    private final long jvmStartMillis = ManagementFactory.getRuntimeMXBean().getStartTime();
+    private final AtomicLong readyMillis = new AtomicLong(-1);
+    private final AtomicLong firstSuccessMillis = new AtomicLong(-1);
+
+    public StartupMetrics(MeterRegistry registry) {
+        TimeGauge.builder("fhir.startup.ready", readyMillis, TimeUnit.MILLISECONDS, AtomicLong::get)
+                .description("Time from JVM start until the application was ready")
+                .register(registry);
+        TimeGauge.builder("fhir.startup.first-successful-request", firstSuccessMillis, TimeUnit.MILLISECONDS, AtomicLong::get)
+                .description("Time from JVM start until the first successful response")
+                .register(registry);
+    }
+
+    @EventListener
+    public void onApplicationReady(ApplicationReadyEvent event) {
+        readyMillis.set(System.currentTimeMillis() - jvmStartMillis);
+        logger.info("Application ready {} ms after JVM start", readyMillis.get());
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain filterChain)
+            throws ServletException, IOException {
+        filterChain.doFilter(request, response);
+        // 비동기 요청은 응답이 실제로 끝나는 async dispatch 에서 확인한다
+        if (firstSuccessMillis.get() < 0 && !request.isAsyncStarted() && response.getStatus() < 400) {
+            long elapsed = System.currentTimeMillis() - jvmStartMillis;
+            if (firstSuccessMillis.compareAndSet(-1, elapsed)) {
+                logger.info("First successful request ({} {}) {} ms after JVM start",
+                        request.getMethod(), request.getRequestURI(), elapsed);
+            }
+        }
+    }
+
+    @Override
+    protected boolean shouldNotFilterAsyncDispatch() {
+        return false;
+    }
+}
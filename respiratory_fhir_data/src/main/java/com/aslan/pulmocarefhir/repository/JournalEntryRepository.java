@@ -0,0 +1,22 @@
+package com.aslan.pulmocarefhir.repository;
+
+import com.aslan.pulmocarefhir.domain.JournalEntry;
+import com.aslan.pulmocarefhir.domain.JournalStatus;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.Instant;
+import java.util.List;
+
+public interface JournalEntryRepository extends JpaRepository<JournalEntry, Long> {
+
+    // 재시도 시각이 지난 전송 대기 항목을 오래된 순서로 조회
+    List<JournalEntry> findByStatusAndNextAttemptAtLessThanEqualOrderByIdAsc(JournalStatus status, Instant now, Pageable pageable);
+
+    long countByStatus(JournalStatus status);
+
+    // 보관 기간이 지난 전송 완료 항목 삭제
+    @Transactional
+    long deleteByStatusAndForwardedAtBefore(JournalStatus status, Instant cutoff);
+}
@@ -0,0 +1,19 @@
+package com.aslan.pulmocarefhir.repository;
+
+import com.aslan.pulmocarefhir.domain.ObservationRecord;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+
+import java.time.Instant;
+import java.util.Collection;
+import java.util.List;
+
+public interface ObservationRecordRepository extends JpaRepository<ObservationRecord, Long> {
+
+    // 환자, 코드, 기간으로 관찰 값을 측정 시각 순으로 조회 (patientId, code, effectiveTime 인덱스 사용)
+    Page<ObservationRecord> findByPatientIdAndCodeAndEffectiveTimeBetweenOrderByEffectiveTimeAsc(
+            String patientId, String code, Instant from, Instant to, Pageable pageable);
+
+    List<ObservationRecord> findByObservationIdIn(Collection<String> observationIds);
+}
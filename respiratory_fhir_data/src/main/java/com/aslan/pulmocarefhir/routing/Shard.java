@@ -0,0 +1,55 @@
+package com.aslan.pulmocarefhir.routing;
+
+import ca.uhn.fhir.rest.client.api.IGenericClient;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+// 환자 데이터를 나누어 저장하는 FHIR 서버 하나와 그 서버 전용 클라이언트, 상태 정보
+// 연속 실패가 기준 횟수에 도달하면 비정상으로 표시하고, 상태 확인이 성공하면 다시 정상으로 되돌린다
+public class Shard {
+
+    private final String name;
+    private final IGenericClient client;
+    private final int failureThreshold;
+    private final AtomicInteger consecutiveFailures = new AtomicInteger();
+    private volatile boolean healthy = true;
+    private volatile String lastError;
+
+    public Shard(String name, IGenericClient client, int failureThreshold) {
+        this.name = name;
+        this.client = client;
+        this.failureThreshold = failureThreshold;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public IGenericClient getClient() {
+        return client;
+    }
+
+    public boolean isHealthy() {
+        return healthy;
+    }
+
+    public int getConsecutiveFailures() {
+        return consecutiveFailures.get();
+    }
+
+    public String getLastError() {
+        return lastError;
+    }
+
+    void markSuccess() {
+        consecutiveFailures.set(0);
+        healthy = true;
+    }
+
+    void markFailure(String error) {
+        lastError = error;
+        if (consecutiveFailures.incrementAndGet() >= failureThreshold) {
+            healthy = false;
+        }
+    }
+}
@@ -0,0 +1,348 @@
+package com.aslan.pulmocarefhir.routing;
+
+import ca.uhn.fhir.context.FhirContext;
+import ca.uhn.fhir.rest.client.api.IGenericClient;
+import ca.uhn.fhir.rest.client.api.ServerValidationModeEnum;
+import ca.uhn.fhir.rest.client.apache.ApacheRestfulClientFactory;
+import ca.uhn.fhir.rest.client.exceptions.FhirClientConnectionException;
+import ca.uhn.fhir.rest.server.exceptions.BaseServerResponseException;
+import com.aslan.pulmocarefhir.config.FhirHttpClientFactory;
+import com.aslan.pulmocarefhir.service.DeviceRegistry;
+import com.aslan.pulmocarefhir.service.TransactionExecutor;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import org.apache.http.impl.client.CloseableHttpClient;
+import org.hl7.fhir.r4.model.*;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PreDestroy;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.*;
+
+// 환자 ID 를 일관된 해싱(consistent hashing)으로 여러 FHIR 서버(샤드) 중 하나에 배정하는 라우터
+// 샤드마다 가상 노드를 링에 올려 두므로, 샤드를 추가/제거해도 다른 샤드에 배정된 환자는 그대로 유지된다
+// fhir.shards.endpoints 가 비어 있으면 fhir.client.server-base 하나만 쓰며, 이때는 번들을 나누지 않고 그대로 전송한다
+// 어느 경우든 샤드에 이미 등록된 Device 의 조건부 생성 엔트리는 빼고, 그 샤드에서 받은 Device ID 로 참조를 바꾸어 보낸다
+@Component
+public class ShardRouter implements MeterBinder {
+
+    private static final Logger logger = LoggerFactory.getLogger(ShardRouter.class);
+
+    private final TransactionExecutor transactionExecutor;
+    private final DeviceRegistry deviceRegistry;
+    private final List<Shard> shards = new ArrayList<>();
+    private final NavigableMap<Long, Shard> ring = new TreeMap<>();
+    private final List<CloseableHttpClient> httpClients = new ArrayList<>();
+
+    public ShardRouter(FhirContext fhirContext,
+                       IGenericClient fhirClient,
+                       FhirHttpClientFactory httpClientFactory,
+                       TransactionExecutor transactionExecutor,
+                       DeviceRegistry deviceRegistry,
+                       @Value("${fhir.client.server-base:http://localhost:8080/fhir}") String serverBase,
+                       @Value("${fhir.client.server-validation:ONCE}") ServerValidationModeEnum serverValidation,
+                       @Value("${fhir.shards.endpoints:}") List<String> endpoints,
+                       @Value("${fhir.shards.virtual-nodes:160}") int virtualNodes,
+                       @Value("${fhir.shards.failure-threshold:3}") int failureThreshold) {
+        this.transactionExecutor = transactionExecutor;
+        this.deviceRegistry = deviceRegistry;
+
+        for (String endpoint : endpoints) {
+            if (endpoint.isBlank()) {
+                continue;
+            }
+            // 샤드마다 커넥션 풀을 따로 두어 느린 샤드가 다른 샤드의 연결을 차지하지 않도록 한다
+            CloseableHttpClient httpClient = httpClientFactory.create();
+            httpClients.add(httpClient);
+            ApacheRestfulClientFactory clientFactory = new ApacheRestfulClientFactory(fhirContext);
+            clientFactory.setHttpClient(httpClient);
+            clientFactory.setServerValidationMode(serverValidation);
+            shards.add(new Shard(endpoint.trim(), clientFactory.newGenericClient(endpoint.trim()), failureThreshold));
+        }
+        if (shards.isEmpty()) {
+            shards.add(new Shard(serverBase, fhirClient, failureThreshold));
+        }
+
+        for (Shard shard : shards) {
+            for (int i = 0; i < virtualNodes; i++) {
+                ring.put(hash(shard.getName() + "#" + i), shard);
+            }
+        }
+        logger.info("Routing patients across {} FHIR shard(s): {}", shards.size(), getShardNames());
+    }
+
+    public boolean isSharded() {
+        return shards.size() > 1;
+    }
+
+    public List<Shard> getShards() {
+        return Collections.unmodifiableList(shards);
+    }
+
+    // 환자가 배정된 샤드를 반환하는 메서드
+    public Shard shardFor(String patientId) {
+        if (!isSharded()) {
+            return shards.get(0);
+        }
+        Map.Entry<Long, Shard> entry = ring.ceilingEntry(hash(patientId));
+        return entry != null ? entry.getValue() : ring.firstEntry().getValue();
+    }
+
+    // 환자가 배정된 샤드의 클라이언트를 반환하는 메서드, 샤드가 비정상이면 ShardUnavailableException 발생
+    public IGenericClient clientFor(String patientId) {
+        Shard shard = shardFor(patientId);
+        if (!shard.isHealthy()) {
+            throw new ShardUnavailableException(shard.getName());
+        }
+        return shard.getClient();
+    }
+
+    // 트랜잭션 번들을 환자별 샤드로 나누어 전송하고, 요청 엔트리 순서대로 응답을 합쳐 반환하는 메서드
+    // Patient/Observation 엔트리는 클라이언트가 정한 ID 로 PUT 하여 샤드 간 ID 가 겹치지 않게 하고, Device 처럼 환자에 속하지 않는
+    // 엔트리는 번들을 받는 모든 샤드에 함께 보낸다 (조건부 생성이므로 샤드마다 한 번만 만들어지고, 이후에는 기록된 ID 로 참조한다)
+    // 샤드 사이에는 원자성이 없으므로 한 샤드가 실패하면 먼저 반영된 샤드의 데이터는 남는다
+    public Bundle transaction(Bundle bundle) {
+        Map<Shard, List<Integer>> entriesByShard;
+        if (isSharded()) {
+            entriesByShard = partition(bundle);
+        } else {
+            List<Integer> indexes = new ArrayList<>();
+            for (int i = 0; i < bundle.getEntry().size(); i++) {
+                indexes.add(i);
+            }
+            entriesByShard = Map.of(shards.get(0), indexes);
+        }
+
+        Bundle.BundleEntryComponent[] responseEntries = new Bundle.BundleEntryComponent[bundle.getEntry().size()];
+        for (Map.Entry<Shard, List<Integer>> shardEntries : entriesByShard.entrySet()) {
+            Shard shard = shardEntries.getKey();
+            List<Integer> indexes = new ArrayList<>();
+            Map<String, String> resolvedDevices = new HashMap<>();
+            for (int index : shardEntries.getValue()) {
+                Bundle.BundleEntryComponent entry = bundle.getEntry().get(index);
+                String resolvedId = resolvedDeviceId(shard, entry);
+                if (resolvedId == null) {
+                    indexes.add(index);
+                    continue;
+                }
+                // 이미 등록된 Device 는 보내지 않고, 응답에는 기록된 ID 를 그대로 돌려준다
+                resolvedDevices.put(entry.getFullUrl(), resolvedId);
+                if (responseEntries[index] == null) {
+                    responseEntries[index] = new Bundle.BundleEntryComponent()
+                            .setResponse(new Bundle.BundleEntryResponseComponent().setStatus("200 OK").setLocation(resolvedId));
+                }
+            }
+
+            Bundle shardBundle = new Bundle().setType(bundle.getType());
+            for (int index : indexes) {
+                Bundle.BundleEntryComponent entry = bundle.getEntry().get(index);
+                if (entry.getResource() instanceof Observation) {
+                    Reference device = ((Observation) entry.getResource()).getDevice();
+                    if (resolvedDevices.containsKey(device.getReference())) {
+                        device.setReference(resolvedDevices.get(device.getReference()));
+                    }
+                }
+                shardBundle.addEntry(entry);
+            }
+            if (indexes.isEmpty()) {
+                continue;
+            }
+
+            Bundle shardResponse = execute(shard, shardBundle);
+            for (int i = 0; i < indexes.size() && i < shardResponse.getEntry().size(); i++) {
+                Bundle.BundleEntryComponent responseEntry = shardResponse.getEntry().get(i);
+                recordDevice(shard, shardBundle.getEntry().get(i), responseEntry);
+                if (responseEntries[indexes.get(i)] == null) {
+                    responseEntries[indexes.get(i)] = responseEntry;
+                }
+            }
+        }
+
+        Bundle response = new Bundle().setType(Bundle.BundleType.TRANSACTIONRESPONSE);
+        for (Bundle.BundleEntryComponent entry : responseEntries) {
+            response.addEntry(entry != null ? entry : new Bundle.BundleEntryComponent());
+        }
+        return response;
+    }
+
+    // 비정상으로 표시된 샤드에 CapabilityStatement 를 요청하여 응답하면 다시 정상으로 되돌리는 메서드
+    @Scheduled(fixedDelayString = "${fhir.shards.health-check-interval-ms:10000}")
+    public void checkHealth() {
+        for (Shard shard : shards) {
+            if (shard.isHealthy()) {
+                continue;
+            }
+            try {
+                shard.getClient().capabilities().ofType(CapabilityStatement.class).execute();
+                shard.markSuccess();
+                logger.info("FHIR shard {} is healthy again", shard.getName());
+            } catch (RuntimeException e) {
+                logger.debug("FHIR shard {} is still unavailable: {}", shard.getName(), e.getMessage());
+            }
+        }
+    }
+
+    // 샤드별 상태를 반환하는 메서드
+    public List<Map<String, Object>> getStatistics() {
+        List<Map<String, Object>> statistics = new ArrayList<>();
+        for (Shard shard : shards) {
+            Map<String, Object> shardStatistics = new LinkedHashMap<>();
+            shardStatistics.put("name", shard.getName());
+            shardStatistics.put("healthy", shard.isHealthy());
+            shardStatistics.put("consecutiveFailures", shard.getConsecutiveFailures());
+            shardStatistics.put("lastError", shard.getLastError());
+            statistics.add(shardStatistics);
+        }
+        return statistics;
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        for (Shard shard : shards) {
+            Gauge.builder("fhir.shard.healthy", shard, s -> s.isHealthy() ? 1 : 0)
+                    .tag("shard", shard.getName())
+                    .register(registry);
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        for (CloseableHttpClient httpClient : httpClients) {
+            try {
+                httpClient.close();
+            } catch (IOException e) {
+                logger.warn("Failed to close HTTP client: {}", e.getMessage());
+            }
+        }
+    }
+
+    // 연결 실패와 5xx 응답만 샤드 장애로 센다
+    private Bundle execute(Shard shard, Bundle bundle) {
+        if (!shard.isHealthy()) {
+            throw new ShardUnavailableException(shard.getName());
+        }
+        try {
+            Bundle response = transactionExecutor.execute(shard.getClient(), bundle);
+            shard.markSuccess();
+            return response;
+        } catch (FhirClientConnectionException e) {
+            shard.markFailure(e.getMessage());
+            throw e;
+        } catch (BaseServerResponseException e) {
+            if (e.getStatusCode() >= 500) {
+                shard.markFailure(e.getMessage());
+            } else {
+                shard.markSuccess();
+            }
+            throw e;
+        }
+    }
+
+    // 샤드에 이미 등록된 Device 의 조건부 생성 엔트리면 그 샤드의 "Device/ID" 를, 아니면 null 을 반환하는 메서드
+    private String resolvedDeviceId(Shard shard, Bundle.BundleEntryComponent entry) {
+        if (!(entry.getResource() instanceof Device) || !entry.getRequest().hasIfNoneExist()) {
+            return null;
+        }
+        return deviceRegistry.getResolvedId(shard.getName(), (Device) entry.getResource());
+    }
+
+    // 조건부 생성으로 보낸 Device 의 응답 location 을 그 샤드의 Device ID 로 기록하는 메서드
+    private void recordDevice(Shard shard, Bundle.BundleEntryComponent entry, Bundle.BundleEntryComponent responseEntry) {
+        if (entry.getResource() instanceof Device && entry.getRequest().hasIfNoneExist()
+                && responseEntry.getResponse().hasLocation()) {
+            String id = new IdType(responseEntry.getResponse().getLocation()).toUnqualifiedVersionless().getValue();
+            deviceRegistry.recordResolvedId(shard.getName(), (Device) entry.getResource(), id);
+        }
+    }
+
+    // 번들 엔트리를 환자가 배정된 샤드별 인덱스 목록으로 나누는 메서드, 각 목록은 원래 순서를 유지한다
+    private Map<Shard, List<Integer>> partition(Bundle bundle) {
+        Map<String, String> patientIdsByFullUrl = new HashMap<>();
+        for (Bundle.BundleEntryComponent entry : bundle.getEntry()) {
+            if (entry.getResource() instanceof Patient) {
+                String patientId = entry.getResource().getIdElement().getIdPart();
+                if (patientId == null) {
+                    throw new IllegalArgumentException("Patient entries need a client-assigned id when routing across shards");
+                }
+                entry.getRequest().setMethod(Bundle.HTTPVerb.PUT).setUrl("Patient/" + patientId);
+                patientIdsByFullUrl.put(entry.getFullUrl(), patientId);
+            } else if (entry.getResource() instanceof Observation) {
+                // 샤드마다 따로 매기는 ID 는 겹칠 수 있으므로 Observation 도 클라이언트가 정한 UUID 로 PUT 한다
+                String observationId = entry.getResource().getIdElement().getIdPart();
+                if (observationId == null) {
+                    throw new IllegalArgumentException("Observation entries need a client-assigned id when routing across shards");
+                }
+                entry.getRequest().setMethod(Bundle.HTTPVerb.PUT).setUrl("Observation/" + observationId);
+            }
+        }
+
+        Map<Shard, List<Integer>> entriesByShard = new LinkedHashMap<>();
+        List<Integer> shared = new ArrayList<>();
+        for (int i = 0; i < bundle.getEntry().size(); i++) {
+            String patientId = patientIdOf(bundle.getEntry().get(i), patientIdsByFullUrl);
+            if (patientId == null) {
+                shared.add(i);
+            } else {
+                entriesByShard.computeIfAbsent(shardFor(patientId), shard -> new ArrayList<>()).add(i);
+            }
+        }
+
+        if (entriesByShard.isEmpty()) {
+            entriesByShard.put(shardFor(String.valueOf(bundle.getEntryFirstRep().getFullUrl())), shared);
+        } else if (!shared.isEmpty()) {
+            for (List<Integer> indexes : entriesByShard.values()) {
+                indexes.addAll(shared);
+                Collections.sort(indexes);
+            }
+        }
+        return entriesByShard;
+    }
+
+    private String patientIdOf(Bundle.BundleEntryComponent entry, Map<String, String> patientIdsByFullUrl) {
+        Resource resource = entry.getResource();
+        if (resource instanceof Patient) {
+            return resource.getIdElement().getIdPart();
+        }
+        if (resource instanceof Observation && ((Observation) resource).hasSubject()) {
+            String reference = ((Observation) resource).getSubject().getReference();
+            if (patientIdsByFullUrl.containsKey(reference)) {
+                return patientIdsByFullUrl.get(reference);
+            }
+            IdType subject = new IdType(reference);
+            if ("Patient".equals(subject.getResourceType())) {
+                return subject.getIdPart();
+            }
+        }
+        return null;
+    }
+
+    // MD5 다이제스트의 앞 8바이트를 링의 위치로 사용한다
+    private static long hash(String key) {
+        try {
+            byte[] digest = MessageDigest.getInstance("MD5").digest(key.getBytes(StandardCharsets.UTF_8));
+            long hash = 0;
+            for (int i = 0; i < 8; i++) {
+                hash = (hash << 8) | (digest[i] & 0xff);
+            }
+            return hash;
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private List<String> getShardNames() {
+        List<String> names = new ArrayList<>();
+        for (Shard shard : shards) {
+            names.add(shard.getName());
+        }
+        return names;
+    }
+}
@@ -0,0 +1,16 @@
+package com.aslan.pulmocarefhir.routing;
+
+// 환자가 속한 샤드가 비정상 상태라 요청을 보내지 않았을 때 발생하는 예외
+public class ShardUnavailableException extends RuntimeException {
+
+    private final String shard;
+
+    public ShardUnavailableException(String shard) {
+        super("FHIR shard " + shard + " is unavailable");
+        this.shard = shard;
+    }
+
+    public String getShard() {
+        return shard;
+    }
+}
@@ -0,0 +1,61 @@
+package com.aslan.pulmocarefhir.service;
+
+import java.time.Instant;
+
+// 관찰 인덱스 백필 작업의 진행 상태
+public class BackfillStatus {
+
+    private final boolean running;
+    private final long indexed;
+    private final Instant startedAt;
+    private final Instant finishedAt;
+    private final String error;
+
+    private BackfillStatus(boolean running, long indexed, Instant startedAt, Instant finishedAt, String error) {
+        this.running = running;
+        this.indexed = indexed;
+        this.startedAt = startedAt;
+        this.finishedAt = finishedAt;
+        this.error = error;
+    }
+
+    public static BackfillStatus idle() {
+        return new BackfillStatus(false, 0, null, null, null);
+    }
+
+    public static BackfillStatus started() {
+        return new BackfillStatus(true, 0, Instant.now(), null, null);
+    }
+
+    public BackfillStatus progress(long indexed) {
+        return new BackfillStatus(true, indexed, startedAt, null, null);
+    }
+
+    public BackfillStatus finished(long indexed) {
+        return new BackfillStatus(false, indexed, startedAt, Instant.now(), null);
+    }
+
+    public BackfillStatus failed(long indexed, String error) {
+        return new BackfillStatus(false, indexed, startedAt, Instant.now(), error);
+    }
+
+    public boolean isRunning() {
+        return running;
+    }
+
+    public long getIndexed() {
+        return indexed;
+    }
+
+    public Instant getStartedAt() {
+        return startedAt;
+    }
+
+    public Instant getFinishedAt() {
+        return finishedAt;
+    }
+
+    public String getError() {
+        return error;
+    }
+}
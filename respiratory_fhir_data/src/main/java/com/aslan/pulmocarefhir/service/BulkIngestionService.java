@@ -0,0 +1,94 @@
+package com.aslan.pulmocarefhir.service;
+
+import com.aslan.pulmocarefhir.routing.ShardRouter;
+import com.aslan.pulmocarefhir.validation.BundleValidationService;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.stereotype.Service;
+
+import javax.annotation.PreDestroy;
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+// NDJSON 형식의 폐활량 측정 데이터를 배치 트랜잭션으로 대량 등록하는 서비스
+@Service
+public class BulkIngestionService {
+
+    private final SpirometryResourceFactory resourceFactory;
+    private final ShardRouter shardRouter;
+    private final BundleValidationService validationService;
+    private final ApplicationEventPublisher eventPublisher;
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final ExecutorService executor;
+    private final int batchSize;
+    private final int maxInFlight;
+
+    @Autowired
+    public BulkIngestionService(SpirometryResourceFactory resourceFactory,
+                                ShardRouter shardRouter,
+                                BundleValidationService validationService,
+                                ApplicationEventPublisher eventPublisher,
+                                @Value("${fhir.bulk.batch-size:50}") int batchSize,
+                                @Value("${fhir.bulk.max-in-flight:4}") int maxInFlight,
+                                @Value("${fhir.bulk.worker-threads:8}") int workerThreads) {
+        this.resourceFactory = resourceFactory;
+        this.shardRouter = shardRouter;
+        this.validationService = validationService;
+        this.eventPublisher = eventPublisher;
+        this.batchSize = batchSize;
+        this.maxInFlight = maxInFlight;
+        this.executor = Executors.newFixedThreadPool(workerThreads, new CustomizableThreadFactory("fhir-bulk-"));
+    }
+
+    // 결과를 출력 스트림에 기록하는 새로운 대량 등록 세션을 여는 메서드
+    public BulkIngestionSession openSession(OutputStream outputStream) {
+        return new BulkIngestionSession(resourceFactory, shardRouter, validationService, eventPublisher, executor, objectMapper, outputStream, batchSize, maxInFlight);
+    }
+
+    // NDJSON 입력을 한 줄씩 읽으면서 바로 배치에 추가하는 메서드
+    public void ingestNdjson(InputStream inputStream, OutputStream outputStream) throws IOException {
+        BufferedReader reader = new BufferedReader(new InputStreamReader(inputStream, StandardCharsets.UTF_8));
+        try (BulkIngestionSession session = openSession(outputStream)) {
+            String line;
+            long lineNumber = 0;
+            while ((line = reader.readLine()) != null) {
+                lineNumber++;
+                if (line.isBlank()) {
+                    continue;
+                }
+                try {
+                    JsonNode node = objectMapper.readTree(line);
+                    if (node.isObject()) {
+                        session.submit(lineNumber, toRecord(node));
+                    } else {
+                        session.reject(lineNumber, "Record must be a JSON object.");
+                    }
+                } catch (JsonProcessingException e) {
+                    session.reject(lineNumber, "Invalid JSON: " + e.getOriginalMessage());
+                }
+            }
+        }
+    }
+
+    // JSON 객체를 createObservations 가 사용하는 문자열 맵으로 변환하는 메서드
+    private Map<String, String> toRecord(JsonNode node) {
+        Map<String, String> record = new HashMap<>();
+        node.fields().forEachRemaining(field ->
+                record.put(field.getKey(), field.getValue().isNull() ? null : field.getValue().asText()));
+        return record;
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdown();
+    }
+}
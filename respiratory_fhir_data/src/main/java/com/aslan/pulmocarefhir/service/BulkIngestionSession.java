@@ -0,0 +1,176 @@
+package com.aslan.pulmocarefhir.service;
+
+import com.aslan.pulmocarefhir.event.TransactionCommittedEvent;
+import com.aslan.pulmocarefhir.routing.ShardRouter;
+import com.aslan.pulmocarefhir.validation.BundleValidationService;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.hl7.fhir.r4.model.*;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.context.ApplicationEventPublisher;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.text.ParseException;
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+
+// 레코드를 배치 크기만큼 하나의 트랜잭션 번들로 묶고, 제한된 개수의 트랜잭션만 동시에 전송하는 대량 등록 세션
+// 레코드별 결과는 입력 순서대로 NDJSON 한 줄씩 출력 스트림에 기록한다
+// 배치에는 Device 조건부 생성 엔트리를 하나만 두고, 모든 레코드의 Observation 이 그 엔트리를 참조한다
+public class BulkIngestionSession implements Closeable {
+
+    private static final Logger logger = LoggerFactory.getLogger(BulkIngestionSession.class);
+
+    private final SpirometryResourceFactory resourceFactory;
+    private final ShardRouter shardRouter;
+    private final BundleValidationService validationService;
+    private final ApplicationEventPublisher eventPublisher;
+    private final Executor executor;
+    private final ObjectMapper objectMapper;
+    private final OutputStream outputStream;
+    private final int batchSize;
+    private final int maxInFlight;
+    private final Deque<CompletableFuture<Batch>> inFlight = new ArrayDeque<>();
+    private Batch current = new Batch();
+    private long createdCount;
+    private long failedCount;
+
+    BulkIngestionSession(SpirometryResourceFactory resourceFactory, ShardRouter shardRouter,
+                         BundleValidationService validationService,
+                         ApplicationEventPublisher eventPublisher, Executor executor, ObjectMapper objectMapper,
+                         OutputStream outputStream, int batchSize, int maxInFlight) {
+        this.resourceFactory = resourceFactory;
+        this.shardRouter = shardRouter;
+        this.validationService = validationService;
+        this.eventPublisher = eventPublisher;
+        this.executor = executor;
+        this.objectMapper = objectMapper;
+        this.outputStream = outputStream;
+        this.batchSize = batchSize;
+        this.maxInFlight = maxInFlight;
+    }
+
+    // 레코드 하나를 리소스로 변환하여 현재 배치에 추가하는 메서드
+    public void submit(long recordNumber, Map<String, String> record) throws IOException {
+        BulkRecordResult result = new BulkRecordResult(recordNumber);
+        try {
+            Patient patient = resourceFactory.createPatient(record);
+            Device device = resourceFactory.createDevice();
+            List<Observation> observations = resourceFactory.createObservations(record, patient, device);
+            Bundle recordBundle = resourceFactory.createBundle(patient, device, observations);
+            validationService.validate(recordBundle);
+            current.add(result, recordBundle);
+        } catch (ParseException e) {
+            current.reject(result, "Invalid birthDate format. Please use 'yyyy-MM-dd'.");
+        } catch (RuntimeException e) {
+            current.reject(result, "Invalid record: " + e.getMessage());
+        }
+        dispatchIfFull();
+    }
+
+    // 읽을 수 없는 레코드를 전송 없이 실패로 기록하는 메서드
+    public void reject(long recordNumber, String message) throws IOException {
+        current.reject(new BulkRecordResult(recordNumber), message);
+        dispatchIfFull();
+    }
+
+    // 남은 배치를 전송하고 모든 트랜잭션의 결과를 기록한 뒤 세션을 종료하는 메서드
+    @Override
+    public void close() throws IOException {
+        dispatch();
+        while (!inFlight.isEmpty()) {
+            writeResults(inFlight.poll().join());
+        }
+        outputStream.flush();
+        logger.info("Bulk ingestion finished: created={}, failed={}", createdCount, failedCount);
+    }
+
+    private void dispatchIfFull() throws IOException {
+        if (current.size() >= batchSize) {
+            dispatch();
+        }
+    }
+
+    // 동시 전송 개수가 한도에 도달하면 가장 오래된 트랜잭션의 완료를 기다린 뒤 현재 배치를 전송한다
+    private void dispatch() throws IOException {
+        if (current.size() == 0) {
+            return;
+        }
+        while (inFlight.size() >= maxInFlight) {
+            writeResults(inFlight.poll().join());
+        }
+        Batch batch = current;
+        current = new Batch();
+        inFlight.add(CompletableFuture.supplyAsync(() -> execute(batch), executor));
+    }
+
+    // 배치 번들을 하나의 트랜잭션으로 서버에 전송하는 메서드
+    private Batch execute(Batch batch) {
+        Bundle bundle = batch.transaction.getBundle();
+        if (bundle.getEntry().isEmpty()) {
+            return batch;
+        }
+        try {
+            Bundle responseBundle = shardRouter.transaction(bundle);
+            batch.complete(responseBundle);
+            eventPublisher.publishEvent(new TransactionCommittedEvent(bundle, responseBundle));
+        } catch (RuntimeException e) {
+            logger.warn("Bulk transaction of {} entries failed: {}", bundle.getEntry().size(), e.getMessage());
+            batch.fail("Transaction failed: " + e.getMessage());
+        }
+        return batch;
+    }
+
+    private void writeResults(Batch batch) throws IOException {
+        for (BulkRecordResult result : batch.results) {
+            if (BulkRecordResult.STATUS_CREATED.equals(result.getStatus())) {
+                createdCount++;
+            } else {
+                failedCount++;
+            }
+            outputStream.write(objectMapper.writeValueAsBytes(result));
+            outputStream.write('\n');
+        }
+        outputStream.flush();
+    }
+
+    // 하나의 트랜잭션으로 전송되는 레코드 묶음
+    private static class Batch {
+        private final CombinedTransaction transaction = new CombinedTransaction();
+        private final List<BulkRecordResult> results = new ArrayList<>();
+        private final List<BulkRecordResult> accepted = new ArrayList<>();
+        private final List<Integer> patientEntryIndexes = new ArrayList<>();
+
+        int size() {
+            return results.size();
+        }
+
+        void add(BulkRecordResult result, Bundle recordBundle) {
+            results.add(result);
+            accepted.add(result);
+            // 레코드 번들의 첫 번째 엔트리는 Patient 이므로 응답에서 같은 위치의 location 으로 환자 ID를 찾는다
+            patientEntryIndexes.add(transaction.append(recordBundle));
+        }
+
+        void reject(BulkRecordResult result, String message) {
+            result.fail(message);
+            results.add(result);
+        }
+
+        void complete(Bundle responseBundle) {
+            for (int i = 0; i < accepted.size(); i++) {
+                Bundle.BundleEntryComponent entry = responseBundle.getEntry().get(patientEntryIndexes.get(i));
+                accepted.get(i).created(new IdType(entry.getResponse().getLocation()).getIdPart());
+            }
+        }
+
+        void fail(String message) {
+            for (BulkRecordResult result : accepted) {
+                result.fail(message);
+            }
+        }
+    }
+}
@@ -0,0 +1,52 @@
+package com.aslan.pulmocarefhir.service;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+
+// 대량 등록 요청의 레코드 단위 처리 결과
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public class BulkRecordResult {
+
+    public static final String STATUS_CREATED = "created";
+    public static final String STATUS_FAILED = "failed";
+
+    private final long record;
+    private String status;
+    private String patientId;
+    private String message;
+
+    public BulkRecordResult(long record) {
+        this.record = record;
+    }
+
+    public static BulkRecordResult failed(long record, String message) {
+        BulkRecordResult result = new BulkRecordResult(record);
+        result.fail(message);
+        return result;
+    }
+
+    public void created(String patientId) {
+        this.status = STATUS_CREATED;
+        this.patientId = patientId;
+    }
+
+    public void fail(String message) {
+        this.status = STATUS_FAILED;
+        this.message = message;
+    }
+
+    public long getRecord() {
+        return record;
+    }
+
+    public String getStatus() {
+        return status;
+    }
+
+    public String getPatientId() {
+        return patientId;
+    }
+
+    public String getMessage() {
+        return message;
+    }
+}
@@ -0,0 +1,54 @@
+package com.aslan.pulmocarefhir.service;
+
+import org.hl7.fhir.r4.model.Bundle;
+import org.hl7.fhir.r4.model.Device;
+import org.hl7.fhir.r4.model.Observation;
+
+import java.util.HashMap;
+import java.util.Map;
+
+// 여러 건의 트랜잭션 번들을 하나의 트랜잭션으로 합치는 번들
+// 레코드마다 들어 있는 같은 장비의 Device 조건부 생성(같은 ifNoneExist)은 처음 것 하나만 남기고,
+// 뒤에 오는 Observation 의 device 참조는 남긴 엔트리의 fullUrl 로 바꾼다
+// 원래 번들은 한 건씩 다시 보낼 수 있도록 바꾸지 않고, 참조를 바꿀 Observation 엔트리만 복사한다
+class CombinedTransaction {
+
+    private final Bundle bundle = new Bundle().setType(Bundle.BundleType.TRANSACTION);
+    private final Map<String, String> deviceFullUrls = new HashMap<>();
+
+    Bundle getBundle() {
+        return bundle;
+    }
+
+    // 번들의 엔트리를 이어 붙이고, 붙인 첫 엔트리의 위치를 반환하는 메서드
+    int append(Bundle source) {
+        int start = bundle.getEntry().size();
+        Map<String, String> replacedDevices = new HashMap<>();
+        for (Bundle.BundleEntryComponent entry : source.getEntry()) {
+            if (entry.getResource() instanceof Device && entry.getRequest().hasIfNoneExist()) {
+                String existing = deviceFullUrls.putIfAbsent(entry.getRequest().getIfNoneExist(), entry.getFullUrl());
+                if (existing != null) {
+                    replacedDevices.put(entry.getFullUrl(), existing);
+                    continue;
+                }
+            }
+            bundle.addEntry(entry);
+        }
+
+        if (!replacedDevices.isEmpty()) {
+            for (int i = start; i < bundle.getEntry().size(); i++) {
+                Bundle.BundleEntryComponent entry = bundle.getEntry().get(i);
+                if (!(entry.getResource() instanceof Observation)) {
+                    continue;
+                }
+                String device = ((Observation) entry.getResource()).getDevice().getReference();
+                if (replacedDevices.containsKey(device)) {
+                    Bundle.BundleEntryComponent copy = entry.copy();
+                    ((Observation) copy.getResource()).getDevice().setReference(replacedDevices.get(device));
+                    bundle.getEntry().set(i, copy);
+                }
+            }
+        }
+        return start;
+    }
+}
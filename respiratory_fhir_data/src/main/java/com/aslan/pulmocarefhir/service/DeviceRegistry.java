@@ -0,0 +1,74 @@
+package com.aslan.pulmocarefhir.service;
+
+import org.hl7.fhir.r4.model.*;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+
+// 측정 장비(Device)를 제조사/모델/일련번호로 식별하여 서버에 한 번만 등록하는 레지스트리
+// 번들에는 식별자 기반 조건부 생성(ifNoneExist)으로 포함하고, ShardRouter 가 서버(샤드)별로 부여받은 ID 를 기록해 두었다가
+// 이미 등록된 샤드로 보낼 때는 Device 엔트리를 빼고 기록된 ID 로 참조만 하게 한다
+// 샤드마다 Device ID 가 다르므로 샤드 이름과 장비 키를 함께 키로 쓴다
+@Component
+public class DeviceRegistry {
+
+    public static final String DEVICE_IDENTIFIER_SYSTEM = "urn:pulmocare:device";
+
+    private final String manufacturer;
+    private final String modelName;
+    private final String serialNumber;
+    private final Map<String, String> resolvedIds = new ConcurrentHashMap<>();
+
+    public DeviceRegistry(@Value("${fhir.device.manufacturer:Example Manufacturer}") String manufacturer,
+                          @Value("${fhir.device.model-name:Model XYZ}") String modelName,
+                          @Value("${fhir.device.serial-number:}") String serialNumber) {
+        this.manufacturer = manufacturer;
+        this.modelName = modelName;
+        this.serialNumber = serialNumber;
+    }
+
+    // 설정된 장비의 Device 객체를 생성하는 메서드, 레지스트리 키를 식별자로 붙인다
+    public Device createDevice() {
+        Device device = new Device();
+        device.setId(UUID.randomUUID().toString());
+        device.setManufacturer(manufacturer);
+        if (!serialNumber.isEmpty()) {
+            device.setSerialNumber(serialNumber);
+        }
+
+        Device.DeviceDeviceNameComponent deviceNameComponent = new Device.DeviceDeviceNameComponent();
+        deviceNameComponent.setName(modelName);
+        deviceNameComponent.setType(Device.DeviceNameType.MODELNAME);
+        device.addDeviceName(deviceNameComponent);
+
+        CodeableConcept type = new CodeableConcept();
+        type.addCoding(new Coding().setSystem("http://snomed.info/sct").setCode("127783003").setDisplay("Spirometry"));
+        device.setType(type);
+
+        device.addIdentifier().setSystem(DEVICE_IDENTIFIER_SYSTEM).setValue(keyOf(device));
+        return device;
+    }
+
+    // 지정한 샤드에 등록된 장비면 "Device/ID" 를, 아직 모르면 null 을 반환하는 메서드
+    public String getResolvedId(String shard, Device device) {
+        return resolvedIds.get(shard + "|" + keyOf(device));
+    }
+
+    // 샤드가 부여하거나 찾아낸 Device ID 를 기록하는 메서드
+    public void recordResolvedId(String shard, Device device, String id) {
+        resolvedIds.put(shard + "|" + keyOf(device), id);
+    }
+
+    // 조건부 생성에 사용할 검색 조건을 반환하는 메서드
+    public String getIfNoneExist(Device device) {
+        return "identifier=" + DEVICE_IDENTIFIER_SYSTEM + "|" + keyOf(device);
+    }
+
+    private String keyOf(Device device) {
+        String model = device.getDeviceName().isEmpty() ? "" : device.getDeviceNameFirstRep().getName();
+        return String.join("::", device.getManufacturer(), model, device.getSerialNumber() == null ? "" : device.getSerialNumber());
+    }
+}
@@ -0,0 +1,71 @@
+package com.aslan.pulmocarefhir.service;
+
+import ca.uhn.fhir.rest.client.api.IGenericClient;
+import org.hl7.fhir.r4.model.Bundle;
+
+// 한 환자의 $everything 조회 상태
+// 첫 페이지는 EverythingService.open 에서 미리 받아 두므로, 응답을 시작하기 전에 서버 오류나 없는 환자를 알 수 있다
+// 레코드 제한으로 결과를 다 읽지 못하면 truncated 가 되고, 페이지 경계에서 멈췄으면 서버의 다음 페이지 URL 을 남긴다
+public class EverythingPages {
+
+    private final IGenericClient client;
+    private final int limit;
+    private final Integer upstreamTotal;
+    private Bundle firstPage;
+    private int records;
+    private boolean truncated;
+    private String nextUrl;
+
+    EverythingPages(IGenericClient client, int limit, Bundle firstPage) {
+        this.client = client;
+        this.limit = limit;
+        this.firstPage = firstPage;
+        this.upstreamTotal = firstPage.hasTotal() ? firstPage.getTotal() : null;
+    }
+
+    IGenericClient getClient() {
+        return client;
+    }
+
+    int getLimit() {
+        return limit;
+    }
+
+    // 첫 페이지를 한 번만 꺼내는 메서드
+    Bundle takeFirstPage() {
+        Bundle page = firstPage;
+        firstPage = null;
+        return page;
+    }
+
+    void addRecords(int count) {
+        records += count;
+    }
+
+    void truncate(String nextUrl) {
+        this.truncated = true;
+        this.nextUrl = nextUrl;
+    }
+
+    // 전달한 entry 수
+    public int getRecords() {
+        return records;
+    }
+
+    public boolean isTruncated() {
+        return truncated;
+    }
+
+    // 잘린 뒤 이어서 읽을 서버의 다음 페이지 URL, 페이지 중간에서 잘렸거나 더 읽을 것이 없으면 null
+    public String getNextUrl() {
+        return nextUrl;
+    }
+
+    // 전체 결과 수, 서버가 알려 주었으면 그 값을, 아니면 잘리지 않았을 때만 전달한 entry 수를, 알 수 없으면 null 을 반환한다
+    public Integer getTotal() {
+        if (upstreamTotal != null) {
+            return upstreamTotal;
+        }
+        return truncated ? null : records;
+    }
+}
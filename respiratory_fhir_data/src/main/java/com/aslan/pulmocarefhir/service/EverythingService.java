@@ -0,0 +1,214 @@
+package com.aslan.pulmocarefhir.service;
+
+import ca.uhn.fhir.context.FhirContext;
+import ca.uhn.fhir.parser.IParser;
+import ca.uhn.fhir.rest.client.api.IGenericClient;
+import ca.uhn.fhir.util.UrlUtil;
+import com.aslan.pulmocarefhir.metrics.FhirMetrics;
+import com.aslan.pulmocarefhir.routing.ShardRouter;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.hl7.fhir.instance.model.api.IBaseBundle;
+import org.hl7.fhir.r4.model.Bundle;
+import org.hl7.fhir.r4.model.OperationOutcome;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.stereotype.Service;
+
+import javax.annotation.PreDestroy;
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.function.Consumer;
+
+// 환자의 $everything 결과를 Bundle.link[next] 를 따라 모든 페이지에 걸쳐 조회하는 서비스
+// 현재 페이지를 처리하는 동안 다음 페이지를 미리 요청하고, 전체 레코드 수는 maxRecords 로 제한한다 (잘린 결과는 표시한다)
+@Service
+public class EverythingService {
+
+    private final FhirContext fhirContext;
+    private final ShardRouter shardRouter;
+    private final FhirMetrics metrics;
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final ExecutorService prefetchExecutor;
+    private final int pageSize;
+    private final int maxRecords;
+    private final boolean prefetch;
+
+    public EverythingService(FhirContext fhirContext,
+                             ShardRouter shardRouter,
+                             FhirMetrics metrics,
+                             @Value("${fhir.everything.page-size:100}") int pageSize,
+                             @Value("${fhir.everything.max-records:10000}") int maxRecords,
+                             @Value("${fhir.everything.prefetch:true}") boolean prefetch,
+                             @Value("${fhir.everything.prefetch-threads:4}") int prefetchThreads) {
+        this.fhirContext = fhirContext;
+        this.shardRouter = shardRouter;
+        this.metrics = metrics;
+        this.pageSize = pageSize;
+        this.maxRecords = maxRecords;
+        this.prefetch = prefetch;
+        this.prefetchExecutor = Executors.newFixedThreadPool(prefetchThreads, new CustomizableThreadFactory("fhir-everything-"));
+    }
+
+    // 모든 페이지를 하나의 searchset 번들로 합쳐 반환하는 메서드
+    public Bundle fetchAll(String patientId) {
+        return fetchAll(patientId, PatientQuery.DEFAULT);
+    }
+
+    // 결과가 잘리면 total 대신 서버의 다음 페이지 링크(있으면)를 남긴다
+    public Bundle fetchAll(String patientId, PatientQuery query) {
+        EverythingPages pages = open(patientId, query);
+        Bundle merged = new Bundle().setType(Bundle.BundleType.SEARCHSET);
+        forEachPage(pages, page -> merged.getEntry().addAll(page.getEntry()));
+        if (pages.getTotal() != null) {
+            merged.setTotal(pages.getTotal());
+        }
+        if (pages.getNextUrl() != null) {
+            merged.addLink().setRelation(IBaseBundle.LINK_NEXT).setUrl(pages.getNextUrl());
+        }
+        return merged;
+    }
+
+    // 환자가 배정된 샤드에서 첫 페이지를 조회하는 메서드, 서버 오류나 없는 환자는 여기서 예외로 드러난다
+    // 조회 옵션에 _count 가 있으면 그 수만큼만 가져온다
+    public EverythingPages open(String patientId, PatientQuery query) {
+        IGenericClient client = shardRouter.clientFor(patientId);
+        int limit = query.getCount() != null ? Math.min(query.getCount(), maxRecords) : maxRecords;
+        int count = Math.min(pageSize, limit);
+        Bundle firstPage = metrics.timeUpstream("everything", () -> client.search()
+                .byUrl("Patient/" + UrlUtil.escapeUrlParam(patientId) + "/$everything?_count=" + count + query.toUpstreamParameters())
+                .returnBundle(Bundle.class)
+                .execute());
+        return new EverythingPages(client, limit, firstPage);
+    }
+
+    // 첫 페이지부터 받는 대로 entry 를 출력 스트림에 searchset 번들 JSON 으로 기록하는 메서드
+    // 전체 번들을 메모리에 만들지 않으므로 기록이 긴 환자도 페이지 크기만큼의 메모리만 사용한다
+    // 조회 옵션의 _summary/_elements 는 entry 의 리소스마다 적용하고, _pretty 가 아니면 공백 없이 기록한다
+    // 결과가 잘리면 경고 OperationOutcome 을 search.mode=outcome entry 로 추가하고, 다음 페이지 링크를 남기며 잘린 수를 total 로 쓰지 않는다
+    public int streamTo(EverythingPages pages, PatientQuery query, OutputStream outputStream) throws IOException {
+        IParser parser = query.configure(fhirContext.newJsonParser(), false);
+        Writer writer = new BufferedWriter(new OutputStreamWriter(outputStream, StandardCharsets.UTF_8));
+        writer.write("{\"resourceType\":\"Bundle\",\"type\":\"searchset\",\"entry\":[");
+
+        int[] written = {0};
+        try {
+            forEachPage(pages, page -> {
+                try {
+                    for (Bundle.BundleEntryComponent entry : page.getEntry()) {
+                        if (written[0]++ > 0) {
+                            writer.write(',');
+                        }
+                        writer.write('{');
+                        if (entry.hasFullUrl()) {
+                            writer.write("\"fullUrl\":");
+                            writer.write(objectMapper.writeValueAsString(entry.getFullUrl()));
+                            writer.write(',');
+                        }
+                        writer.write("\"resource\":");
+                        parser.encodeResourceToWriter(entry.getResource(), writer);
+                        writer.write('}');
+                    }
+                    writer.flush();
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+
+        if (pages.isTruncated()) {
+            if (written[0] > 0) {
+                writer.write(',');
+            }
+            writer.write("{\"resource\":");
+            fhirContext.newJsonParser().encodeResourceToWriter(truncationOutcome(pages), writer);
+            writer.write(",\"search\":{\"mode\":\"outcome\"}}");
+        }
+        writer.write(']');
+        if (pages.getNextUrl() != null) {
+            writer.write(",\"link\":[{\"relation\":\"next\",\"url\":" + objectMapper.writeValueAsString(pages.getNextUrl()) + "}]");
+        }
+        if (pages.getTotal() != null) {
+            writer.write(",\"total\":" + pages.getTotal());
+        }
+        writer.write('}');
+        writer.flush();
+        return pages.getRecords();
+    }
+
+    // 남은 페이지를 차례대로 소비자에게 전달하는 메서드, 모든 페이지는 환자가 배정된 샤드에서 읽는다
+    // 제한에 걸려 남은 결과를 버리면 pages 를 잘린 것으로 표시한다
+    public void forEachPage(EverythingPages pages, Consumer<Bundle> pageConsumer) {
+        IGenericClient client = pages.getClient();
+        int limit = pages.getLimit();
+        Bundle page = pages.takeFirstPage();
+        while (page != null) {
+            int remaining = limit - pages.getRecords();
+            boolean trimmed = page.getEntry().size() > remaining;
+            if (trimmed) {
+                page.getEntry().subList(remaining, page.getEntry().size()).clear();
+            }
+
+            // 다음 페이지가 필요하면 현재 페이지를 처리하는 동안 미리 요청한다
+            Bundle current = page;
+            Bundle.BundleLinkComponent nextLink = current.getLink(IBaseBundle.LINK_NEXT);
+            boolean hasNext = nextLink != null && !trimmed && pages.getRecords() + current.getEntry().size() < limit;
+            CompletableFuture<Bundle> next = hasNext && prefetch
+                    ? CompletableFuture.supplyAsync(() -> loadNextPage(client, current), prefetchExecutor)
+                    : null;
+
+            metrics.recordBundleEntries("everything-page", current.getEntry().size());
+            pageConsumer.accept(current);
+            pages.addRecords(current.getEntry().size());
+
+            if (trimmed) {
+                // 페이지 중간에서 잘랐으므로 서버의 다음 페이지 링크는 이어지는 위치가 아니다
+                pages.truncate(null);
+            } else if (nextLink != null && !hasNext) {
+                pages.truncate(nextLink.getUrl());
+            }
+
+            if (next != null) {
+                page = join(next);
+            } else {
+                page = hasNext ? loadNextPage(client, current) : null;
+            }
+        }
+    }
+
+    // 결과가 잘렸음을 알리는 경고 OperationOutcome 을 만드는 메서드
+    private OperationOutcome truncationOutcome(EverythingPages pages) {
+        OperationOutcome outcome = new OperationOutcome();
+        outcome.addIssue()
+                .setSeverity(OperationOutcome.IssueSeverity.WARNING)
+                .setCode(OperationOutcome.IssueType.INCOMPLETE)
+                .setDiagnostics("Result limited to " + pages.getRecords() + " entries"
+                        + (pages.getNextUrl() != null ? "; follow link[next] for the rest" : ""));
+        return outcome;
+    }
+
+    private Bundle join(CompletableFuture<Bundle> future) {
+        try {
+            return future.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw e;
+        }
+    }
+
+    private Bundle loadNextPage(IGenericClient client, Bundle page) {
+        return metrics.timeUpstream("everything-next-page", () -> client.loadPage().next(page).execute());
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        prefetchExecutor.shutdown();
+    }
+}
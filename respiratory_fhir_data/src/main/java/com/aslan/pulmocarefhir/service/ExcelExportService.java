@@ -0,0 +1,134 @@
+package com.aslan.pulmocarefhir.service;
+
+import com.aslan.pulmocarefhir.metrics.FhirMetrics;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.Timer;
+import org.apache.poi.ss.usermodel.Row;
+import org.apache.poi.ss.usermodel.Sheet;
+import org.apache.poi.xssf.streaming.SXSSFWorkbook;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+
+// FHIR Bundle 의 entry 를 엑셀 행으로 변환하는 서비스
+@Service
+public class ExcelExportService {
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final FhirMetrics metrics;
+    private final int rowAccessWindow;
+
+    public ExcelExportService(FhirMetrics metrics,
+                              @Value("${fhir.excel.row-access-window:100}") int rowAccessWindow) {
+        this.metrics = metrics;
+        this.rowAccessWindow = rowAccessWindow;
+    }
+
+    // 헤더 행을 작성하는 메서드
+    public void writeHeader(Sheet sheet) {
+        Row headerRow = sheet.createRow(0);
+        headerRow.createCell(0).setCellValue("ResourceType");
+        headerRow.createCell(1).setCellValue("ID");
+        headerRow.createCell(2).setCellValue("Name/Status");
+        headerRow.createCell(3).setCellValue("BirthDate/Category");
+        headerRow.createCell(4).setCellValue("Address/Code");
+        headerRow.createCell(5).setCellValue("MaritalStatus/Display");
+        headerRow.createCell(6).setCellValue("Value");
+        headerRow.createCell(7).setCellValue("Unit");
+        headerRow.createCell(8).setCellValue("Device");
+    }
+
+    // 리소스 하나를 데이터 행으로 작성하는 메서드
+    public void writeResourceRow(Row row, JsonNode resource) {
+        row.createCell(0).setCellValue(resource.path("resourceType").asText());
+        row.createCell(1).setCellValue(resource.path("id").asText());
+
+        if (resource.path("resourceType").asText().equals("Patient")) {
+            row.createCell(2).setCellValue(resource.path("name").get(0).path("family").asText());
+            row.createCell(3).setCellValue(resource.path("birthDate").asText());
+            row.createCell(4).setCellValue(resource.path("address").get(0).path("text").asText());
+            row.createCell(5).setCellValue(resource.path("maritalStatus").path("text").asText());
+        } else if (resource.path("resourceType").asText().equals("Observation")) {
+            row.createCell(2).setCellValue(resource.path("status").asText());
+
+            JsonNode categoryNode = resource.path("category");
+            String category = categoryNode.isArray() && categoryNode.size() > 0
+                    ? categoryNode.get(0).path("coding").get(0).path("display").asText()
+                    : "";
+            row.createCell(3).setCellValue(category);
+
+            JsonNode codeNode = resource.path("code").path("coding");
+            String code = codeNode.isArray() && codeNode.size() > 0
+                    ? codeNode.get(0).path("code").asText()
+                    : "";
+            String display = codeNode.isArray() && codeNode.size() > 0
+                    ? codeNode.get(0).path("display").asText()
+                    : "";
+            row.createCell(4).setCellValue(code);
+            row.createCell(5).setCellValue(display);
+
+            JsonNode valueNode = resource.path("valueQuantity");
+            row.createCell(6).setCellValue(valueNode.path("value").asDouble());
+            row.createCell(7).setCellValue(valueNode.path("unit").asText());
+
+            JsonNode deviceNode = resource.path("device");
+            row.createCell(8).setCellValue(deviceNode.path("reference").asText());
+        } else if (resource.path("resourceType").asText().equals("Device")) {
+            row.createCell(2).setCellValue(resource.path("manufacturer").asText());
+            row.createCell(3).setCellValue(resource.path("deviceName").get(0).path("name").asText());
+            row.createCell(4).setCellValue(resource.path("type").path("coding").get(0).path("display").asText());
+        } else {
+            row.createCell(2).setCellValue("");
+            row.createCell(3).setCellValue("");
+            row.createCell(4).setCellValue("");
+            row.createCell(5).setCellValue("");
+            row.createCell(6).setCellValue("");
+            row.createCell(7).setCellValue("");
+            row.createCell(8).setCellValue("");
+        }
+    }
+
+    // Bundle JSON 을 스트리밍 파서로 읽으면서 디스크 기반 워크북에 행을 기록하고, 결과 xlsx 를 바로 출력 스트림에 쓰는 메서드
+    // entry 는 한 건씩만 트리로 읽고, 메모리에는 rowAccessWindow 개의 행만 유지하므로 entry 수와 관계없이 사용 메모리가 일정하다
+    public int exportStreaming(InputStream inputStream, OutputStream outputStream) throws IOException {
+        Timer.Sample sample = metrics.startTimer();
+        SXSSFWorkbook workbook = new SXSSFWorkbook(rowAccessWindow);
+        workbook.setCompressTempFiles(true);
+        try (JsonParser parser = objectMapper.getFactory().createParser(inputStream)) {
+            Sheet sheet = workbook.createSheet("FHIR Data");
+            writeHeader(sheet);
+
+            int rowIndex = 1;
+            if (parser.nextToken() != JsonToken.START_OBJECT) {
+                throw new IOException("FHIR Bundle must be a JSON object");
+            }
+            while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                String fieldName = parser.getCurrentName();
+                JsonToken valueToken = parser.nextToken();
+                if ("entry".equals(fieldName) && valueToken == JsonToken.START_ARRAY) {
+                    while (parser.nextToken() == JsonToken.START_OBJECT) {
+                        JsonNode entry = objectMapper.readTree(parser);
+                        writeResourceRow(sheet.createRow(rowIndex++), entry.path("resource"));
+                    }
+                } else {
+                    parser.skipChildren();
+                }
+            }
+
+            workbook.write(outputStream);
+            outputStream.flush();
+            metrics.recordExcel(sample, "streaming", rowIndex - 1);
+            return rowIndex - 1;
+        } finally {
+            // 임시 파일 삭제
+            workbook.dispose();
+            workbook.close();
+        }
+    }
+}
@@ -0,0 +1,153 @@
+package com.aslan.pulmocarefhir.service;
+
+import ca.uhn.fhir.rest.client.exceptions.FhirClientConnectionException;
+import ca.uhn.fhir.rest.server.exceptions.BaseServerResponseException;
+import com.aslan.pulmocarefhir.config.FhirParsers;
+import com.aslan.pulmocarefhir.domain.JournalEntry;
+import com.aslan.pulmocarefhir.domain.JournalStatus;
+import com.aslan.pulmocarefhir.event.TransactionCommittedEvent;
+import com.aslan.pulmocarefhir.repository.JournalEntryRepository;
+import com.aslan.pulmocarefhir.routing.ShardRouter;
+import com.aslan.pulmocarefhir.routing.ShardUnavailableException;
+import org.hl7.fhir.r4.model.Bundle;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+
+// 저널에 쌓인 번들을 배치로 묶어 FHIR 서버에 전송하는 백그라운드 작업
+// 실패하면 지수 백오프로 재시도하고, 저널 식별자 기반 조건부 생성 덕분에 재전송해도 중복이 생기지 않는다
+@Component
+@ConditionalOnProperty(name = "fhir.journal.enabled", havingValue = "true")
+public class JournalDrainer {
+
+    private static final Logger logger = LoggerFactory.getLogger(JournalDrainer.class);
+
+    private final FhirParsers parsers;
+    private final ShardRouter shardRouter;
+    private final JournalEntryRepository repository;
+    private final ApplicationEventPublisher eventPublisher;
+    private final int batchSize;
+    private final long initialBackoffMillis;
+    private final long maxBackoffMillis;
+    private final Duration retention;
+
+    public JournalDrainer(FhirParsers parsers,
+                          ShardRouter shardRouter,
+                          JournalEntryRepository repository,
+                          ApplicationEventPublisher eventPublisher,
+                          @Value("${fhir.journal.batch-size:20}") int batchSize,
+                          @Value("${fhir.journal.initial-backoff-ms:1000}") long initialBackoffMillis,
+                          @Value("${fhir.journal.max-backoff-ms:300000}") long maxBackoffMillis,
+                          @Value("${fhir.journal.retention-hours:24}") long retentionHours) {
+        this.parsers = parsers;
+        this.shardRouter = shardRouter;
+        this.repository = repository;
+        this.eventPublisher = eventPublisher;
+        this.batchSize = batchSize;
+        this.initialBackoffMillis = initialBackoffMillis;
+        this.maxBackoffMillis = maxBackoffMillis;
+        this.retention = Duration.ofHours(retentionHours);
+    }
+
+    // 재시도 시각이 된 항목을 batchSize 만큼 읽어 전송하는 메서드
+    @Scheduled(fixedDelayString = "${fhir.journal.drain-interval-ms:1000}")
+    public void drain() {
+        List<JournalEntry> due = repository.findByStatusAndNextAttemptAtLessThanEqualOrderByIdAsc(
+                JournalStatus.PENDING, Instant.now(), PageRequest.of(0, batchSize));
+        if (due.isEmpty()) {
+            return;
+        }
+
+        List<JournalEntry> entries = new ArrayList<>();
+        List<Bundle> bundles = new ArrayList<>();
+        for (JournalEntry entry : due) {
+            try {
+                bundles.add(parsers.json().parseResource(Bundle.class, entry.getPayload()));
+                entries.add(entry);
+            } catch (RuntimeException e) {
+                entry.markFailed("Unreadable journal payload: " + e.getMessage());
+            }
+        }
+
+        forward(entries, bundles);
+        repository.saveAll(due);
+    }
+
+    // 보관 기간이 지난 전송 완료 항목을 정리하는 메서드
+    @Scheduled(fixedDelayString = "${fhir.journal.purge-interval-ms:3600000}")
+    public void purge() {
+        long deleted = repository.deleteByStatusAndForwardedAtBefore(JournalStatus.FORWARDED, Instant.now().minus(retention));
+        if (deleted > 0) {
+            logger.info("Purged {} forwarded journal entries", deleted);
+        }
+    }
+
+    // 여러 항목을 하나의 트랜잭션으로 전송하고, 서버가 거부하면 문제 항목을 찾기 위해 한 건씩 다시 전송한다
+    // 항목마다 들어 있는 같은 장비의 Device 조건부 생성은 합친 번들에 하나만 남긴다
+    private void forward(List<JournalEntry> entries, List<Bundle> bundles) {
+        if (entries.size() > 1) {
+            CombinedTransaction transaction = new CombinedTransaction();
+            for (Bundle bundle : bundles) {
+                transaction.append(bundle);
+            }
+            Bundle combined = transaction.getBundle();
+            try {
+                Bundle responseBundle = shardRouter.transaction(combined);
+                Instant now = Instant.now();
+                entries.forEach(entry -> entry.markForwarded(now));
+                eventPublisher.publishEvent(new TransactionCommittedEvent(combined, responseBundle));
+                return;
+            } catch (FhirClientConnectionException | ShardUnavailableException e) {
+                // 서버에 연결할 수 없으면 한 건씩 보내봐야 소용없으므로 전체를 재시도 대상으로 둔다
+                logger.warn("FHIR server unreachable, {} journal entries will be retried: {}", entries.size(), e.getMessage());
+                entries.forEach(entry -> scheduleRetry(entry, e));
+                return;
+            } catch (RuntimeException e) {
+                logger.warn("Journal batch of {} entries failed, forwarding one by one: {}", entries.size(), e.getMessage());
+            }
+        }
+
+        for (int i = 0; i < entries.size(); i++) {
+            forwardOne(entries.get(i), bundles.get(i));
+        }
+    }
+
+    private void forwardOne(JournalEntry entry, Bundle bundle) {
+        try {
+            Bundle responseBundle = shardRouter.transaction(bundle);
+            entry.markForwarded(Instant.now());
+            eventPublisher.publishEvent(new TransactionCommittedEvent(bundle, responseBundle));
+        } catch (FhirClientConnectionException e) {
+            scheduleRetry(entry, e);
+        } catch (BaseServerResponseException e) {
+            if (isPermanent(e.getStatusCode())) {
+                logger.error("Journal entry {} rejected by FHIR server: {}", entry.getId(), e.getMessage());
+                entry.markFailed(e.getMessage());
+            } else {
+                scheduleRetry(entry, e);
+            }
+        } catch (RuntimeException e) {
+            scheduleRetry(entry, e);
+        }
+    }
+
+    // 요청 자체가 잘못된 4xx 응답은 재시도해도 결과가 같으므로 실패로 처리한다
+    private boolean isPermanent(int statusCode) {
+        return statusCode >= 400 && statusCode < 500 && statusCode != 408 && statusCode != 429;
+    }
+
+    private void scheduleRetry(JournalEntry entry, Exception e) {
+        long backoff = Math.min(maxBackoffMillis, initialBackoffMillis << Math.min(entry.getAttempts(), 20));
+        entry.markRetry(Instant.now().plusMillis(backoff), e.getMessage());
+    }
+}
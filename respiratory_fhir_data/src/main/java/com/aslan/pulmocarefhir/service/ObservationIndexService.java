@@ -0,0 +1,161 @@
+package com.aslan.pulmocarefhir.service;
+
+import ca.uhn.fhir.context.FhirContext;
+import ca.uhn.fhir.rest.client.api.IGenericClient;
+import ca.uhn.fhir.util.BundleUtil;
+import com.aslan.pulmocarefhir.domain.ObservationRecord;
+import com.aslan.pulmocarefhir.event.TransactionCommittedEvent;
+import com.aslan.pulmocarefhir.repository.ObservationRecordRepository;
+import com.aslan.pulmocarefhir.routing.Shard;
+import com.aslan.pulmocarefhir.routing.ShardRouter;
+import com.aslan.pulmocarefhir.util.ObservationValues;
+import org.hl7.fhir.instance.model.api.IBaseBundle;
+import org.hl7.fhir.r4.model.Bundle;
+import org.hl7.fhir.r4.model.Observation;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Pageable;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.stereotype.Service;
+
+import javax.annotation.PreDestroy;
+import java.time.Instant;
+import java.util.*;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicReference;
+
+// 관찰 정보를 환자, LOINC 코드, 측정 시각으로 색인한 로컬 읽기 모델
+// PatientService/ServiceController 등을 통한 쓰기는 트랜잭션 반영 이벤트로 바로 색인하고, 기존 데이터는 백필 작업으로 채운다
+@Service
+public class ObservationIndexService {
+
+    private static final Logger logger = LoggerFactory.getLogger(ObservationIndexService.class);
+
+    private final FhirContext fhirContext;
+    private final ShardRouter shardRouter;
+    private final ObservationRecordRepository repository;
+    private final String[] codes;
+    private final int backfillPageSize;
+    private final ExecutorService backfillExecutor = Executors.newSingleThreadExecutor(new CustomizableThreadFactory("observation-backfill-"));
+    private final AtomicReference<BackfillStatus> backfillStatus = new AtomicReference<>(BackfillStatus.idle());
+
+    public ObservationIndexService(FhirContext fhirContext,
+                                   ShardRouter shardRouter,
+                                   ObservationRecordRepository repository,
+                                   @Value("${fhir.observation-index.codes:19868-9,19926-5}") String[] codes,
+                                   @Value("${fhir.observation-index.backfill-page-size:200}") int backfillPageSize) {
+        this.fhirContext = fhirContext;
+        this.shardRouter = shardRouter;
+        this.repository = repository;
+        this.codes = codes;
+        this.backfillPageSize = backfillPageSize;
+    }
+
+    // 서버에 반영된 관찰 정보를 색인하는 메서드, 색인 실패가 등록 요청을 실패시키지 않도록 예외는 기록만 한다
+    @EventListener
+    public void onTransactionCommitted(TransactionCommittedEvent event) {
+        try {
+            index(event.getCommittedResources(Observation.class));
+        } catch (RuntimeException e) {
+            logger.warn("Failed to index committed observations: {}", e.getMessage());
+        }
+    }
+
+    // 관찰 정보를 색인하는 메서드, 이미 색인된 관찰은 최신 값으로 갱신한다
+    public int index(List<Observation> observations) {
+        Map<String, ObservationRecord> records = new LinkedHashMap<>();
+        for (Observation observation : observations) {
+            ObservationRecord record = toRecord(observation);
+            if (record != null) {
+                records.put(record.getObservationId(), record);
+            }
+        }
+        if (records.isEmpty()) {
+            return 0;
+        }
+
+        List<ObservationRecord> toSave = new ArrayList<>();
+        for (ObservationRecord existing : repository.findByObservationIdIn(records.keySet())) {
+            ObservationRecord record = records.remove(existing.getObservationId());
+            existing.update(record.getPatientId(), record.getCode(), record.getEffectiveTime(), record.getValue(), record.getUnit());
+            toSave.add(existing);
+        }
+        toSave.addAll(records.values());
+        repository.saveAll(toSave);
+        return toSave.size();
+    }
+
+    // 환자와 코드, 기간으로 관찰 값을 페이지 단위로 조회하는 메서드
+    public Page<ObservationRecord> findTrend(String patientId, String code, Instant from, Instant to, Pageable pageable) {
+        return repository.findByPatientIdAndCodeAndEffectiveTimeBetweenOrderByEffectiveTimeAsc(patientId, code, from, to, pageable);
+    }
+
+    // FHIR 서버의 관찰 정보로 인덱스를 다시 채우는 백필 작업을 시작하는 메서드, 이미 실행 중이면 현재 상태를 반환한다
+    public BackfillStatus startBackfill() {
+        BackfillStatus current = backfillStatus.get();
+        if (current.isRunning()) {
+            return current;
+        }
+        BackfillStatus started = BackfillStatus.started();
+        if (!backfillStatus.compareAndSet(current, started)) {
+            return backfillStatus.get();
+        }
+        backfillExecutor.submit(this::runBackfill);
+        return started;
+    }
+
+    public BackfillStatus getBackfillStatus() {
+        return backfillStatus.get();
+    }
+
+    // 샤드가 여러 개면 모든 샤드의 관찰 정보를 차례대로 색인한다
+    private void runBackfill() {
+        long indexed = 0;
+        try {
+            for (Shard shard : shardRouter.getShards()) {
+                IGenericClient client = shard.getClient();
+                Bundle page = client.search()
+                        .forResource(Observation.class)
+                        .where(Observation.CODE.exactly().systemAndValues(ObservationValues.LOINC_SYSTEM, codes))
+                        .count(backfillPageSize)
+                        .returnBundle(Bundle.class)
+                        .execute();
+                while (true) {
+                    indexed += index(BundleUtil.toListOfResourcesOfType(fhirContext, page, Observation.class));
+                    backfillStatus.set(backfillStatus.get().progress(indexed));
+                    if (page.getLink(IBaseBundle.LINK_NEXT) == null) {
+                        break;
+                    }
+                    page = client.loadPage().next(page).execute();
+                }
+            }
+            backfillStatus.set(backfillStatus.get().finished(indexed));
+            logger.info("Observation index backfill finished: {} observations", indexed);
+        } catch (RuntimeException e) {
+            logger.error("Observation index backfill failed after {} observations", indexed, e);
+            backfillStatus.set(backfillStatus.get().failed(indexed, e.getMessage()));
+        }
+    }
+
+    // 관찰 리소스를 색인 레코드로 변환하는 메서드, 환자/코드/측정 시각이 없으면 색인하지 않는다
+    private ObservationRecord toRecord(Observation observation) {
+        String observationId = observation.getIdElement().getIdPart();
+        String patientId = observation.getSubject().getReferenceElement().getIdPart();
+        String code = ObservationValues.loincCode(observation);
+        Date effective = ObservationValues.effectiveTime(observation);
+        if (observationId == null || patientId == null || code == null || effective == null) {
+            return null;
+        }
+        return new ObservationRecord(observationId, patientId, code, effective.toInstant(),
+                ObservationValues.quantityValue(observation), ObservationValues.quantityUnit(observation));
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        backfillExecutor.shutdownNow();
+    }
+}
@@ -0,0 +1,105 @@
+package com.aslan.pulmocarefhir.service;
+
+import ca.uhn.fhir.parser.IParser;
+import ca.uhn.fhir.rest.api.SummaryEnum;
+import ca.uhn.fhir.util.UrlUtil;
+
+import java.util.*;
+
+// $everything 조회 옵션 (_summary, _elements, _count, _pretty)
+// _summary/_elements 는 서버에 그대로 전달하고, 서버가 무시하더라도 같은 결과가 되도록 인코딩할 때도 같은 옵션을 적용한다
+// _count 는 가져올 최대 레코드 수로, 페이지 크기도 이 값을 넘지 않는다
+public class PatientQuery {
+
+    public static final PatientQuery DEFAULT = new PatientQuery(null, Collections.emptySet(), null, false);
+
+    private final SummaryEnum summary;
+    private final Set<String> elements;
+    private final Integer count;
+    private final boolean pretty;
+
+    public PatientQuery(SummaryEnum summary, Set<String> elements, Integer count, boolean pretty) {
+        this.summary = summary;
+        this.elements = Collections.unmodifiableSet(new TreeSet<>(elements));
+        this.count = count;
+        this.pretty = pretty;
+    }
+
+    // 요청 파라미터 값으로 조회 옵션을 만드는 메서드, 값이 잘못되면 IllegalArgumentException 발생
+    public static PatientQuery of(String summary, String elements, Integer count, boolean pretty) {
+        SummaryEnum summaryMode = null;
+        if (summary != null && !summary.isBlank()) {
+            summaryMode = SummaryEnum.fromCode(summary.trim());
+            if (summaryMode == null) {
+                throw new IllegalArgumentException("Unsupported _summary value: " + summary);
+            }
+        }
+        Set<String> elementNames = new TreeSet<>();
+        if (elements != null) {
+            for (String element : elements.split(",")) {
+                if (!element.isBlank()) {
+                    elementNames.add(element.trim());
+                }
+            }
+        }
+        if (count != null && count < 1) {
+            throw new IllegalArgumentException("_count must be positive");
+        }
+        return new PatientQuery(summaryMode, elementNames, count, pretty);
+    }
+
+    public SummaryEnum getSummary() {
+        return summary;
+    }
+
+    public Set<String> getElements() {
+        return elements;
+    }
+
+    public Integer getCount() {
+        return count;
+    }
+
+    public boolean isPretty() {
+        return pretty;
+    }
+
+    // 서버에 전달할 _summary/_elements 파라미터를 "&" 로 시작하는 문자열로 반환하는 메서드
+    public String toUpstreamParameters() {
+        StringBuilder parameters = new StringBuilder();
+        if (summary != null) {
+            parameters.append("&_summary=").append(summary.getCode());
+        }
+        if (!elements.isEmpty()) {
+            parameters.append("&_elements=").append(UrlUtil.escapeUrlParam(String.join(",", elements)));
+        }
+        return parameters.toString();
+    }
+
+    // 결과 캐시와 동시 조회 합치기에 쓰는 키, 같은 결과를 내는 옵션은 같은 키가 된다
+    public String cacheKey(String patientId) {
+        return patientId + "|" + (summary != null ? summary.getCode() : "") + "|" + String.join(",", elements) + "|" + (count != null ? count : "");
+    }
+
+    // 새로 만든 파서에 옵션을 적용하는 메서드, bundle 이 true 면 번들 자체가 아닌 entry 의 리소스에만 _elements 를 적용한다
+    public IParser configure(IParser parser, boolean bundle) {
+        parser.setPrettyPrint(pretty);
+        if (summary == SummaryEnum.TRUE) {
+            parser.setSummaryMode(true);
+        } else if (summary == SummaryEnum.DATA) {
+            parser.setSuppressNarratives(true);
+        } else if (summary == SummaryEnum.TEXT) {
+            parser.setEncodeElements(new HashSet<>(Arrays.asList("*.text", "*.id", "*.meta", "*.(mandatory)")));
+        }
+        if (!elements.isEmpty() && summary != SummaryEnum.TEXT) {
+            Set<String> encodeElements = new HashSet<>();
+            for (String element : elements) {
+                encodeElements.add("*." + element);
+            }
+            encodeElements.add("*.(mandatory)");
+            parser.setEncodeElements(encodeElements);
+        }
+        parser.setEncodeElementsAppliesToChildResourcesOnly(bundle);
+        return parser;
+    }
+}
@@ -1,166 +1,151 @@
 package com.aslan.pulmocarefhir.service;
 
-import ca.uhn.fhir.context.FhirContext;
-import ca.uhn.fhir.rest.client.api.IGenericClient;
-import ca.uhn.fhir.rest.gclient.ITransactionTyped;
+import com.aslan.pulmocarefhir.cache.EverythingCache;
+import com.aslan.pulmocarefhir.config.FhirParsers;
+import com.aslan.pulmocarefhir.domain.JournalEntry;
+import com.aslan.pulmocarefhir.event.TransactionCommittedEvent;
+import com.aslan.pulmocarefhir.logging.ResourceAuditLogger;
+import com.aslan.pulmocarefhir.metrics.FhirMetrics;
+import com.aslan.pulmocarefhir.routing.ShardRouter;
+import com.aslan.pulmocarefhir.util.SingleFlight;
+import com.aslan.pulmocarefhir.validation.BundleValidationService;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
 import org.hl7.fhir.r4.model.*;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.context.event.EventListener;
 import org.springframework.stereotype.Service;
 
 import java.text.ParseException;
-import java.text.SimpleDateFormat;
 import java.util.*;
 
 @Service
 public class PatientService {
 
-    private final FhirContext fhirContext;
-    private final IGenericClient client;
-    private final Map<String, Patient> patientMap = new HashMap<>();
-    private final Map<String, List<Observation>> observationMap = new HashMap<>();
+    private final FhirParsers parsers;
+    private final SpirometryResourceFactory resourceFactory;
+    private final ApplicationEventPublisher eventPublisher;
+    private final EverythingCache everythingCache;
+    private final EverythingService everythingService;
+    private final WriteBehindJournalService journalService;
+    private final ShardRouter shardRouter;
+    private final FhirMetrics metrics;
+    private final BundleValidationService validationService;
+    private final ResourceAuditLogger auditLogger;
+    private final SingleFlight<String, PatientSummary> patientQueries;
 
     @Autowired
-    public PatientService(FhirContext fhirContext) {
-        this.fhirContext = fhirContext;
-        this.client = fhirContext.newRestfulGenericClient("http://localhost:8080/fhir");
+    public PatientService(FhirParsers parsers, SpirometryResourceFactory resourceFactory, ApplicationEventPublisher eventPublisher,
+                          EverythingCache everythingCache, EverythingService everythingService,
+                          WriteBehindJournalService journalService, ShardRouter shardRouter,
+                          FhirMetrics metrics, BundleValidationService validationService,
+                          ResourceAuditLogger auditLogger,
+                          @Value("${fhir.coalescing.timeout-ms:10000}") long coalescingTimeoutMillis) {
+        this.parsers = parsers;
+        this.resourceFactory = resourceFactory;
+        this.eventPublisher = eventPublisher;
+        this.everythingCache = everythingCache;
+        this.everythingService = everythingService;
+        this.journalService = journalService;
+        this.shardRouter = shardRouter;
+        this.metrics = metrics;
+        this.validationService = validationService;
+        this.auditLogger = auditLogger;
+        this.patientQueries = new SingleFlight<>(coalescingTimeoutMillis);
+
+        // 환자 조회 요청 중 진행 중인 조회에 합류한 요청의 수와 비율
+        FunctionCounter.builder("fhir.coalescing.requests", patientQueries, SingleFlight::getLeaderCount)
+                .tag("operation", "patient-everything").tag("role", "leader")
+                .register(metrics.getRegistry());
+        FunctionCounter.builder("fhir.coalescing.requests", patientQueries, SingleFlight::getFollowerCount)
+                .tag("operation", "patient-everything").tag("role", "follower")
+                .register(metrics.getRegistry());
+        Gauge.builder("fhir.coalescing.ratio", patientQueries, SingleFlight::getCoalescingRatio)
+                .tag("operation", "patient-everything")
+                .register(metrics.getRegistry());
     }
 
     // 환자와 관련된 정보를 생성하고 서버에 저장하는 메서드
     public String createPatient(Map<String, String> requestData) throws ParseException {
-        // 새로운 Patient 객체 생성 및 ID 설정
-        Patient patient = new Patient();
-        String patientId = UUID.randomUUID().toString();
-        patient.setId(patientId);
-        patient.addName().setFamily(requestData.get("username")).addGiven(requestData.get("username"));
-
-        // 생년월일 설정
-        String birthDateString = requestData.get("birthDate");
-        Date birthDate = new SimpleDateFormat("yyyy-MM-dd").parse(birthDateString);
-        patient.setBirthDate(birthDate);
-
-        // 주소와 결혼 상태 설정
-        patient.addAddress().setText(requestData.get("address"));
-        patient.setMaritalStatus(new CodeableConcept().setText(requestData.get("maritalStatus")));
+        // 새로운 Patient 객체 생성
+        Patient patient = resourceFactory.createPatient(requestData);
 
         // 새로운 Device 객체 생성 및 설정
-        Device device = createDevice();
+        Device device = resourceFactory.createDevice();
 
         // 요청 데이터에서 Observation 객체들을 생성
-        List<Observation> observations = createObservations(requestData, patient, device);
-
-        // 환자와 관찰 정보를 맵에 저장
-        patientMap.put(patientId, patient);
-        observationMap.put(patientId, observations);
+        List<Observation> observations = resourceFactory.createObservations(requestData, patient, device);
 
         // 번들 생성 및 리소스 추가
-        Bundle bundle = createBundle(patient, device, observations);
-
-        // 번들을 서버에 전송하고 응답 받기
-        ITransactionTyped<Bundle> transaction = client.transaction().withBundle(bundle);
-        Bundle responseBundle = transaction.encodedJson().execute();
+        Bundle bundle = resourceFactory.createBundle(patient, device, observations);
 
-        // 응답을 JSON 문자열로 변환하여 반환
-        return fhirContext.newJsonParser().setPrettyPrint(true).encodeResourceToString(responseBundle);
+        return submit(bundle);
     }
 
-    // 환자 정보를 조회하는 메서드
-    public String queryPatient(String patientId) {
-        // FHIR 서버에서 환자 정보를 조회하기 위한 URL 생성
-        String url = "http://localhost:8080/fhir/Patient/" + patientId + "/$everything";
-
-        // URL을 통해 FHIR 서버에 검색 요청
-        Bundle bundle = client.search()
-                .byUrl(url)
-                .returnBundle(Bundle.class)
-                .execute();
+    // Patient/Device/Observation 번들을 전송하고, 결과를 화면에 표시할 문자열로 반환하는 메서드
+    public String submit(Bundle bundle) {
+        SubmissionResult result = send(bundle);
+        if (result.isJournaled()) {
+            return "Accepted for delivery to the FHIR server (journal entry #" + result.getJournalEntry().getId() + ")";
+        }
 
         // 응답을 JSON 문자열로 변환하여 반환
-        return fhirContext.newJsonParser().setPrettyPrint(true).encodeResourceToString(bundle);
+        return metrics.timeEncode("transaction-result",
+                () -> parsers.prettyJson().encodeResourceToString(result.getResponseBundle()));
     }
 
-    // Observation 객체를 생성하는 메서드
-    private Observation createObservation(String code, String display, Double value, Patient patient, String unit, Device device) {
-        Observation observation = new Observation();
-        observation.setId(UUID.randomUUID().toString());
-        observation.setStatus(Observation.ObservationStatus.FINAL);
-
-        observation.getCategory().add(new CodeableConcept().addCoding(new Coding()
-                .setSystem("http://terminology.hl7.org/CodeSystem/observation-category")
-                .setCode("vital-signs")
-                .setDisplay("Vital Signs")));
-
-        observation.getCode().addCoding()
-                .setSystem("http://loinc.org")
-                .setCode(code)
-                .setDisplay(display);
-
-        observation.setValue(new Quantity()
-                .setValue(value)
-                .setUnit(unit)
-                .setSystem("http://unitsofmeasure.org")
-                .setCode(unit));
-
-        observation.getSubject().setReference("Patient/" + patient.getId());
-        observation.setEffective(new DateTimeType(new Date()));
-
-        if (device != null) {
-            observation.setDevice(new Reference("Device/" + device.getId()));
+    // 번들을 검증한 뒤 저널에 기록하거나 FHIR 서버에 전송하는 메서드
+    // fail-fast 검증 모드에서 오류가 있으면 BundleValidationException 발생
+    public SubmissionResult send(Bundle bundle) {
+        // 전송 전에 번들을 검증
+        validationService.validate(bundle);
+
+        // 저장 후 전송 모드에서는 저널에 기록하고 바로 응답
+        if (journalService.isEnabled()) {
+            JournalEntry entry = journalService.append(bundle);
+            auditLogger.logBundle("Journaled Bundle #" + entry.getId(), bundle);
+            return SubmissionResult.journaled(entry);
         }
 
-        return observation;
-    }
-
-    // Device 객체를 생성하는 메서드
-    private Device createDevice() {
-        Device device = new Device();
-        String deviceId = UUID.randomUUID().toString();
-        device.setId(deviceId);
-        device.setManufacturer("Example Manufacturer");
-
-        Device.DeviceDeviceNameComponent deviceNameComponent = new Device.DeviceDeviceNameComponent();
-        deviceNameComponent.setName("Model XYZ");
-        deviceNameComponent.setType(Device.DeviceNameType.MODELNAME);
-        device.addDeviceName(deviceNameComponent);
+        // 번들을 환자가 배정된 샤드에 전송하고 응답 받기
+        Bundle responseBundle = shardRouter.transaction(bundle);
 
-        CodeableConcept type = new CodeableConcept();
-        type.addCoding(new Coding().setSystem("http://snomed.info/sct").setCode("127783003").setDisplay("Spirometry"));
-        device.setType(type);
+        // 서버가 부여한 ID 로 캐시와 관찰 인덱스를 갱신하도록 이벤트 발행
+        eventPublisher.publishEvent(new TransactionCommittedEvent(bundle, responseBundle));
 
-        return device;
+        // 전송한 번들과 응답 번들의 리소스 ID 와 개수를 로그에 출력 (전체 JSON 은 DEBUG 샘플링 시에만)
+        auditLogger.logBundle("Created Bundle", bundle);
+        auditLogger.logBundle("Response Bundle", responseBundle);
+        return SubmissionResult.committed(responseBundle);
     }
 
-    // Observation 객체 리스트를 생성하는 메서드
-    private List<Observation> createObservations(Map<String, String> requestData, Patient patient, Device device) {
-        List<Observation> observations = new ArrayList<>();
-        observations.add(createObservation("19868-9", "Forced vital capacity [Volume] Respiratory system by Spirometry", Double.valueOf(requestData.get("FVC")), patient, "L", device));
-        observations.add(createObservation("19926-5", "FEV1/FVC", Double.valueOf(requestData.get("FEV1FVC")), patient, "%", device));
-        return observations;
+    // 환자 정보를 조회하여 화면에 표시할 요약을 반환하는 메서드, 변경이 없으면 캐시된 요약을 반환한다
+    // 서버에는 요약에 필요한 요소만 요청하고(_elements), 같은 환자에 대한 동시 조회는 하나의 서버 호출 결과를 함께 받는다
+    // 전체 기록은 /api/services/{id}/everything 에서 스트리밍으로 받는다
+    public PatientSummary queryPatient(String patientId) {
+        String cacheKey = PatientSummary.QUERY.cacheKey(patientId);
+        return patientQueries.execute(cacheKey, () -> everythingCache.getOrFetch(cacheKey, patientId,
+                () -> everythingService.fetchAll(patientId, PatientSummary.QUERY),
+                bundle -> PatientSummary.of(patientId, bundle)));
     }
 
-    // 번들 객체를 생성하고 리소스를 추가하는 메서드
-    private Bundle createBundle(Patient patient, Device device, List<Observation> observations) {
-        Bundle bundle = new Bundle();
-        bundle.setType(Bundle.BundleType.TRANSACTION);
-
-        Bundle.BundleEntryComponent patientEntry = bundle.addEntry();
-        patientEntry.setFullUrl("urn:uuid:" + patient.getId());
-        patientEntry.setResource(patient);
-        patientEntry.getRequest().setUrl("Patient").setMethod(Bundle.HTTPVerb.POST);
-
-        Bundle.BundleEntryComponent deviceEntry = bundle.addEntry();
-        deviceEntry.setFullUrl("urn:uuid:" + device.getId());
-        deviceEntry.setResource(device);
-        deviceEntry.getRequest().setUrl("Device").setMethod(Bundle.HTTPVerb.POST);
-
-        for (Observation observation : observations) {
-            observation.getSubject().setReference("urn:uuid:" + patient.getId());
-            observation.setDevice(new Reference("urn:uuid:" + device.getId()));
-            Bundle.BundleEntryComponent observationEntry = bundle.addEntry();
-            observationEntry.setFullUrl("urn:uuid:" + observation.getId());
-            observationEntry.setResource(observation);
-            observationEntry.getRequest().setUrl("Observation").setMethod(Bundle.HTTPVerb.POST);
+    // 환자 데이터가 반영되면 진행 중인 조회와 캐시된 결과를 떼어내어 이후 조회가 변경 전 결과를 받지 않도록 한다
+    @EventListener
+    public void onTransactionCommitted(TransactionCommittedEvent event) {
+        Set<String> patientIds = new HashSet<>();
+        for (Patient patient : event.getCommittedResources(Patient.class)) {
+            patientIds.add(patient.getIdElement().getIdPart());
+        }
+        for (Observation observation : event.getCommittedResources(Observation.class)) {
+            if (observation.getSubject().getReferenceElement().hasIdPart()) {
+                patientIds.add(observation.getSubject().getReferenceElement().getIdPart());
+            }
+        }
+        for (String patientId : patientIds) {
+            patientQueries.forget(PatientSummary.QUERY.cacheKey(patientId));
+            everythingCache.invalidate(patientId);
         }
-
-        return bundle;
     }
-}
\ No newline at end of file
+}
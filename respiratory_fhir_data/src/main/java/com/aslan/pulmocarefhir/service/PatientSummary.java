@@ -0,0 +1,102 @@
+package com.aslan.pulmocarefhir.service;
+
+import com.aslan.pulmocarefhir.util.ObservationValues;
+import org.hl7.fhir.r4.model.*;
+
+import java.text.SimpleDateFormat;
+import java.util.*;
+
+// 조회 결과 화면(result.html)에 표시하는 환자 요약 정보
+// 전체 번들 JSON 대신 환자 기본 정보와 측정값 목록만 담는다
+public class PatientSummary {
+
+    // 요약 화면에 필요한 요소만 서버에 요청하기 위한 조회 옵션 (_elements 는 기본 요소 이름을 쓰므로 선택형 요소는 value/effective 로 지정한다)
+    public static final PatientQuery QUERY = new PatientQuery(null,
+            new HashSet<>(Arrays.asList("name", "gender", "birthDate", "code", "value", "effective", "subject")),
+            null, false);
+
+    private final String patientId;
+    private String name;
+    private String gender;
+    private String birthDate;
+    private final List<Measurement> measurements = new ArrayList<>();
+
+    public PatientSummary(String patientId) {
+        this.patientId = patientId;
+    }
+
+    // $everything 번들에서 환자 정보와 측정값을 꺼내 요약을 만드는 메서드, 측정값은 측정 시각의 역순으로 정렬한다
+    public static PatientSummary of(String patientId, Bundle bundle) {
+        PatientSummary summary = new PatientSummary(patientId);
+        SimpleDateFormat dateFormat = new SimpleDateFormat("yyyy-MM-dd HH:mm");
+        List<Observation> observations = new ArrayList<>();
+        for (Bundle.BundleEntryComponent entry : bundle.getEntry()) {
+            Resource resource = entry.getResource();
+            if (resource instanceof Patient) {
+                Patient patient = (Patient) resource;
+                summary.name = patient.hasName() ? patient.getNameFirstRep().getNameAsSingleString() : null;
+                summary.gender = patient.hasGender() ? patient.getGender().getDisplay() : null;
+                summary.birthDate = patient.hasBirthDate() ? patient.getBirthDateElement().getValueAsString() : null;
+            } else if (resource instanceof Observation) {
+                observations.add((Observation) resource);
+            }
+        }
+
+        observations.sort(Comparator.comparing(ObservationValues::effectiveTime, Comparator.nullsLast(Comparator.reverseOrder())));
+        for (Observation observation : observations) {
+            Date effective = ObservationValues.effectiveTime(observation);
+            Double value = ObservationValues.quantityValue(observation);
+            String unit = ObservationValues.quantityUnit(observation);
+            summary.measurements.add(new Measurement(
+                    observation.getCode().hasText() ? observation.getCode().getText() : observation.getCode().getCodingFirstRep().getDisplay(),
+                    value != null ? value + (unit != null ? " " + unit : "") : null,
+                    effective != null ? dateFormat.format(effective) : null));
+        }
+        return summary;
+    }
+
+    public String getPatientId() {
+        return patientId;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public String getGender() {
+        return gender;
+    }
+
+    public String getBirthDate() {
+        return birthDate;
+    }
+
+    public List<Measurement> getMeasurements() {
+        return measurements;
+    }
+
+    // 측정 항목 하나의 표시 값
+    public static class Measurement {
+        private final String name;
+        private final String value;
+        private final String effective;
+
+        public Measurement(String name, String value, String effective) {
+            this.name = name;
+            this.value = value;
+            this.effective = effective;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public String getValue() {
+            return value;
+        }
+
+        public String getEffective() {
+            return effective;
+        }
+    }
+}
@@ -0,0 +1,180 @@
+package com.aslan.pulmocarefhir.service;
+
+import org.hl7.fhir.r4.model.*;
+import org.springframework.stereotype.Component;
+
+import java.text.ParseException;
+import java.text.SimpleDateFormat;
+import java.util.*;
+
+// 폐활량 측정 데이터를 Patient, Device, Observation, Bundle 리소스로 변환하는 컴포넌트
+@Component
+public class SpirometryResourceFactory {
+
+    public static final String WAVEFORM_CODE_SYSTEM = "urn:pulmocare:waveform";
+
+    private final DeviceRegistry deviceRegistry;
+
+    public SpirometryResourceFactory(DeviceRegistry deviceRegistry) {
+        this.deviceRegistry = deviceRegistry;
+    }
+
+    // 요청 데이터로부터 Patient 객체를 생성하는 메서드
+    public Patient createPatient(Map<String, String> requestData) throws ParseException {
+        // 새로운 Patient 객체 생성 및 ID 설정
+        Patient patient = new Patient();
+        patient.setId(UUID.randomUUID().toString());
+        patient.addName().setFamily(requestData.get("username")).addGiven(requestData.get("username"));
+
+        // 생년월일 설정
+        String birthDateString = requestData.get("birthDate");
+        Date birthDate = new SimpleDateFormat("yyyy-MM-dd").parse(birthDateString);
+        patient.setBirthDate(birthDate);
+
+        // 주소와 결혼 상태 설정
+        patient.addAddress().setText(requestData.get("address"));
+        patient.setMaritalStatus(new CodeableConcept().setText(requestData.get("maritalStatus")));
+
+        return patient;
+    }
+
+    // Observation 객체를 생성하는 메서드
+    public Observation createObservation(String code, String display, Double value, Patient patient, String unit, Device device) {
+        Observation observation = new Observation();
+        observation.setId(UUID.randomUUID().toString());
+        observation.setStatus(Observation.ObservationStatus.FINAL);
+
+        observation.getCategory().add(new CodeableConcept().addCoding(new Coding()
+                .setSystem("http://terminology.hl7.org/CodeSystem/observation-category")
+                .setCode("vital-signs")
+                .setDisplay("Vital Signs")));
+
+        observation.getCode().addCoding()
+                .setSystem("http://loinc.org")
+                .setCode(code)
+                .setDisplay(display);
+
+        // 측정값이 없으면 값 대신 dataAbsentReason 을 남기고, 거부 여부는 검증 단계에서 정한다
+        if (value != null) {
+            observation.setValue(new Quantity()
+                    .setValue(value)
+                    .setUnit(unit)
+                    .setSystem("http://unitsofmeasure.org")
+                    .setCode(unit));
+        } else {
+            observation.setDataAbsentReason(new CodeableConcept().addCoding(new Coding()
+                    .setSystem("http://terminology.hl7.org/CodeSystem/data-absent-reason")
+                    .setCode("asked-unknown")
+                    .setDisplay("Asked But Unknown")));
+        }
+
+        observation.getSubject().setReference("Patient/" + patient.getId());
+        observation.setEffective(new DateTimeType(new Date()));
+
+        if (device != null) {
+            observation.setDevice(new Reference("Device/" + device.getId()));
+        }
+
+        return observation;
+    }
+
+    // 측정 곡선을 같은 간격으로 줄인 유량(L/s)/부피(L) 값을 SampledData 구성요소로 담은 Observation 을 생성하는 메서드
+    public Observation createWaveformObservation(Patient patient, Device device, double periodMillis, double[] flow, double[] volume) {
+        Observation observation = new Observation();
+        observation.setId(UUID.randomUUID().toString());
+        observation.setStatus(Observation.ObservationStatus.FINAL);
+
+        observation.getCategory().add(new CodeableConcept().addCoding(new Coding()
+                .setSystem("http://terminology.hl7.org/CodeSystem/observation-category")
+                .setCode("exam")
+                .setDisplay("Exam")));
+
+        observation.getCode().setText("Forced expiration flow-volume curve").addCoding()
+                .setSystem(WAVEFORM_CODE_SYSTEM)
+                .setCode("forced-expiration-curve")
+                .setDisplay("Forced expiration flow-volume curve");
+
+        observation.addComponent(createWaveformComponent("expiratory-flow", "Expiratory flow", "L/s", periodMillis, flow));
+        observation.addComponent(createWaveformComponent("expired-volume", "Expired volume", "L", periodMillis, volume));
+
+        observation.getSubject().setReference("Patient/" + patient.getId());
+        observation.setEffective(new DateTimeType(new Date()));
+
+        if (device != null) {
+            observation.setDevice(new Reference("Device/" + device.getId()));
+        }
+
+        return observation;
+    }
+
+    private Observation.ObservationComponentComponent createWaveformComponent(String code, String display, String unit,
+                                                                                double periodMillis, double[] values) {
+        StringBuilder data = new StringBuilder(values.length * 6);
+        for (int i = 0; i < values.length; i++) {
+            if (i > 0) {
+                data.append(' ');
+            }
+            data.append(Math.round(values[i] * 1000) / 1000.0);
+        }
+
+        Observation.ObservationComponentComponent component = new Observation.ObservationComponentComponent();
+        component.getCode().addCoding().setSystem(WAVEFORM_CODE_SYSTEM).setCode(code).setDisplay(display);
+        component.setValue(new SampledData()
+                .setOrigin(new Quantity().setValue(0).setUnit(unit).setSystem("http://unitsofmeasure.org").setCode(unit))
+                .setPeriod(periodMillis)
+                .setDimensions(1)
+                .setData(data.toString()));
+        return component;
+    }
+
+    // Device 객체를 생성하는 메서드
+    public Device createDevice() {
+        return deviceRegistry.createDevice();
+    }
+
+    // Observation 객체 리스트를 생성하는 메서드
+    public List<Observation> createObservations(Map<String, String> requestData, Patient patient, Device device) {
+        List<Observation> observations = new ArrayList<>();
+        observations.add(createObservation("19868-9", "Forced vital capacity [Volume] Respiratory system by Spirometry", parseMeasurement(requestData.get("FVC")), patient, "L", device));
+        observations.add(createObservation("19926-5", "FEV1/FVC", parseMeasurement(requestData.get("FEV1FVC")), patient, "%", device));
+        return observations;
+    }
+
+    // 측정값 문자열을 숫자로 변환하는 메서드, 값이 없으면 null 을 반환하고 숫자가 아니면 NumberFormatException 발생
+    private Double parseMeasurement(String value) {
+        if (value == null || value.isBlank()) {
+            return null;
+        }
+        return Double.valueOf(value.trim());
+    }
+
+    // 번들 객체를 생성하고 리소스를 추가하는 메서드
+    // 장비는 조건부 생성으로 추가하고, 이미 등록된 샤드로 보낼 때는 ShardRouter 가 엔트리를 빼고 기존 ID 로 참조를 바꾼다
+    public Bundle createBundle(Patient patient, Device device, List<Observation> observations) {
+        Bundle bundle = new Bundle();
+        bundle.setType(Bundle.BundleType.TRANSACTION);
+
+        Bundle.BundleEntryComponent patientEntry = bundle.addEntry();
+        patientEntry.setFullUrl("urn:uuid:" + patient.getId());
+        patientEntry.setResource(patient);
+        patientEntry.getRequest().setUrl("Patient").setMethod(Bundle.HTTPVerb.POST);
+
+        String deviceReference = "urn:uuid:" + device.getId();
+        Bundle.BundleEntryComponent deviceEntry = bundle.addEntry();
+        deviceEntry.setFullUrl(deviceReference);
+        deviceEntry.setResource(device);
+        deviceEntry.getRequest().setUrl("Device").setMethod(Bundle.HTTPVerb.POST)
+                .setIfNoneExist(deviceRegistry.getIfNoneExist(device));
+
+        for (Observation observation : observations) {
+            observation.getSubject().setReference("urn:uuid:" + patient.getId());
+            observation.setDevice(new Reference(deviceReference));
+            Bundle.BundleEntryComponent observationEntry = bundle.addEntry();
+            observationEntry.setFullUrl("urn:uuid:" + observation.getId());
+            observationEntry.setResource(observation);
+            observationEntry.getRequest().setUrl("Observation").setMethod(Bundle.HTTPVerb.POST);
+        }
+
+        return bundle;
+    }
+}
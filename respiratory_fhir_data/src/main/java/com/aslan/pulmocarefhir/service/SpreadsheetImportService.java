@@ -0,0 +1,213 @@
+package com.aslan.pulmocarefhir.service;
+
+import org.apache.commons.csv.CSVFormat;
+import org.apache.commons.csv.CSVParser;
+import org.apache.commons.csv.CSVRecord;
+import org.apache.poi.openxml4j.exceptions.OpenXML4JException;
+import org.apache.poi.openxml4j.opc.OPCPackage;
+import org.apache.poi.openxml4j.opc.PackageAccess;
+import org.apache.poi.openxml4j.opc.PackagePart;
+import org.apache.poi.ss.usermodel.DataFormatter;
+import org.apache.poi.ss.usermodel.DateUtil;
+import org.apache.poi.ss.util.CellReference;
+import org.apache.poi.ss.util.NumberToTextConverter;
+import org.apache.poi.util.XMLHelper;
+import org.apache.poi.xssf.eventusermodel.ReadOnlySharedStringsTable;
+import org.apache.poi.xssf.eventusermodel.XSSFReader;
+import org.apache.poi.xssf.eventusermodel.XSSFSheetXMLHandler;
+import org.apache.poi.xssf.usermodel.XSSFComment;
+import org.apache.poi.xssf.usermodel.XSSFRelation;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.xml.sax.InputSource;
+import org.xml.sax.SAXException;
+import org.xml.sax.XMLReader;
+
+import javax.xml.parsers.ParserConfigurationException;
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.*;
+
+// 병원에서 보관하던 폐활량 측정 스프레드시트(xlsx, csv)를 읽어 대량 등록 세션으로 넘기는 서비스
+// xlsx 는 XSSFWorkbook 대신 SAX 이벤트 방식으로, csv 는 한 레코드씩 읽으므로 행 수와 관계없이 메모리 사용량이 일정하다
+// 첫 행은 헤더로 보고, 열 이름을 createObservations 가 사용하는 필드 이름으로 바꾼다
+// 단, xlsx 의 공유 문자열 표(sharedStrings.xml)는 ReadOnlySharedStringsTable 이 전부 메모리에 올리므로 압축을 푼 크기를 제한한다
+@Service
+public class SpreadsheetImportService {
+
+    // 헤더를 소문자로 바꾸고 영문자/숫자 외의 문자를 뺀 이름과 레코드 필드 이름의 대응
+    private static final Map<String, String> COLUMN_FIELDS = Map.of(
+            "username", "username",
+            "name", "username",
+            "birthdate", "birthDate",
+            "address", "address",
+            "maritalstatus", "maritalStatus",
+            "fvc", "FVC",
+            "fev1fvc", "FEV1FVC");
+
+    private static final List<String> REQUIRED_FIELDS = List.of("username", "birthDate", "FVC", "FEV1FVC");
+
+    private final BulkIngestionService bulkIngestionService;
+    private final long maxSharedStringsBytes;
+
+    public SpreadsheetImportService(BulkIngestionService bulkIngestionService,
+                                    @Value("${fhir.import.max-shared-strings-bytes:67108864}") long maxSharedStringsBytes) {
+        this.bulkIngestionService = bulkIngestionService;
+        this.maxSharedStringsBytes = maxSharedStringsBytes;
+    }
+
+    // 응답을 시작하기 전에 xlsx 를 열 수 있고 공유 문자열 표가 제한 이내인지 확인하는 메서드
+    // 제한을 넘으면 IllegalArgumentException 을, 올바른 xlsx 가 아니면 IOException 을 던진다
+    public void checkXlsx(Path file) throws IOException {
+        try (OPCPackage pkg = OPCPackage.open(file.toFile(), PackageAccess.READ)) {
+            checkSharedStrings(pkg);
+        } catch (OpenXML4JException e) {
+            throw new IOException("Invalid xlsx file: " + e.getMessage(), e);
+        }
+    }
+
+    // xlsx 의 첫 번째 시트를 행 단위로 읽어 등록하고, 행별 결과를 NDJSON 으로 기록하는 메서드
+    public void importXlsx(Path file, OutputStream outputStream) throws IOException {
+        try (OPCPackage pkg = OPCPackage.open(file.toFile(), PackageAccess.READ);
+             BulkIngestionSession session = bulkIngestionService.openSession(outputStream)) {
+            checkSharedStrings(pkg);
+            XSSFReader reader = new XSSFReader(pkg);
+            ReadOnlySharedStringsTable strings = new ReadOnlySharedStringsTable(pkg);
+            Iterator<InputStream> sheets = reader.getSheetsData();
+            if (!sheets.hasNext()) {
+                return;
+            }
+            try (InputStream sheet = sheets.next()) {
+                XMLReader xmlReader = XMLHelper.newXMLReader();
+                xmlReader.setContentHandler(new XSSFSheetXMLHandler(reader.getStylesTable(), strings,
+                        new SheetRowHandler(session), new IsoDateFormatter(), false));
+                xmlReader.parse(new InputSource(sheet));
+            } catch (UncheckedIOException e) {
+                throw e.getCause();
+            }
+        } catch (OpenXML4JException | SAXException | ParserConfigurationException e) {
+            throw new IOException("Invalid xlsx file: " + e.getMessage(), e);
+        }
+    }
+
+    // csv 를 레코드 단위로 읽어 등록하고, 행별 결과를 NDJSON 으로 기록하는 메서드
+    public void importCsv(Path file, OutputStream outputStream) throws IOException {
+        CSVFormat format = CSVFormat.DEFAULT.builder()
+                .setHeader()
+                .setSkipHeaderRecord(true)
+                .setIgnoreSurroundingSpaces(true)
+                .setIgnoreEmptyLines(true)
+                .build();
+        try (Reader reader = Files.newBufferedReader(file, StandardCharsets.UTF_8);
+             CSVParser parser = format.parse(reader);
+             BulkIngestionSession session = bulkIngestionService.openSession(outputStream)) {
+            List<String> fields = new ArrayList<>();
+            for (String header : parser.getHeaderNames()) {
+                fields.add(toField(header));
+            }
+            for (CSVRecord csvRecord : parser) {
+                Map<String, String> record = new HashMap<>();
+                for (int i = 0; i < csvRecord.size() && i < fields.size(); i++) {
+                    if (fields.get(i) != null) {
+                        record.put(fields.get(i), csvRecord.get(i));
+                    }
+                }
+                // 헤더가 1행이므로 데이터 행 번호는 레코드 번호 + 1
+                submit(session, csvRecord.getRecordNumber() + 1, record);
+            }
+        }
+    }
+
+    // 압축을 푼 공유 문자열 표를 제한까지만 읽어 크기를 확인하는 메서드 (zip 항목의 크기 정보는 믿지 않는다)
+    private void checkSharedStrings(OPCPackage pkg) throws IOException {
+        for (PackagePart part : pkg.getPartsByContentType(XSSFRelation.SHARED_STRINGS.getContentType())) {
+            long size = 0;
+            byte[] buffer = new byte[8192];
+            try (InputStream inputStream = part.getInputStream()) {
+                int read;
+                while ((read = inputStream.read(buffer)) != -1) {
+                    size += read;
+                    if (size > maxSharedStringsBytes) {
+                        throw new IllegalArgumentException("Shared strings table exceeds " + maxSharedStringsBytes
+                                + " bytes; save the sheet as csv and import that instead.");
+                    }
+                }
+            }
+        }
+    }
+
+    private static void submit(BulkIngestionSession session, long rowNumber, Map<String, String> record) throws IOException {
+        for (String field : REQUIRED_FIELDS) {
+            String value = record.get(field);
+            if (value == null || value.isBlank()) {
+                session.reject(rowNumber, "Missing value for " + field);
+                return;
+            }
+        }
+        session.submit(rowNumber, record);
+    }
+
+    private static String toField(String header) {
+        return COLUMN_FIELDS.get(header.toLowerCase(Locale.ROOT).replaceAll("[^a-z0-9]", ""));
+    }
+
+    // 시트의 행 이벤트를 레코드로 모아 세션에 넘기는 핸들러
+    private static class SheetRowHandler implements XSSFSheetXMLHandler.SheetContentsHandler {
+        private final BulkIngestionSession session;
+        private final Map<Integer, String> fields = new HashMap<>();
+        private Map<String, String> record;
+        private boolean header = true;
+
+        SheetRowHandler(BulkIngestionSession session) {
+            this.session = session;
+        }
+
+        @Override
+        public void startRow(int rowNum) {
+            record = new HashMap<>();
+        }
+
+        @Override
+        public void endRow(int rowNum) {
+            if (header) {
+                header = false;
+                return;
+            }
+            if (record.isEmpty()) {
+                return;
+            }
+            try {
+                // 엑셀 화면과 같은 1 부터 시작하는 행 번호로 결과를 기록한다
+                submit(session, rowNum + 1, record);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+
+        @Override
+        public void cell(String cellReference, String formattedValue, XSSFComment comment) {
+            int column = new CellReference(cellReference).getCol();
+            if (header) {
+                String field = toField(formattedValue);
+                if (field != null) {
+                    fields.put(column, field);
+                }
+            } else if (fields.containsKey(column)) {
+                record.put(fields.get(column), formattedValue);
+            }
+        }
+    }
+
+    // 날짜 셀은 yyyy-MM-dd 로, 숫자 셀은 표시 형식(%, 소수 자릿수)과 관계없이 원래 값으로 변환하는 포매터
+    private static class IsoDateFormatter extends DataFormatter {
+        @Override
+        public String formatRawCellContents(double value, int formatIndex, String formatString) {
+            if (DateUtil.isADateFormat(formatIndex, formatString) && DateUtil.isValidExcelDate(value)) {
+                return DateUtil.getLocalDateTime(value).toLocalDate().toString();
+            }
+            return NumberToTextConverter.toText(value);
+        }
+    }
+}
@@ -0,0 +1,36 @@
+package com.aslan.pulmocarefhir.service;
+
+import com.aslan.pulmocarefhir.domain.JournalEntry;
+import org.hl7.fhir.r4.model.Bundle;
+
+// 번들 전송 결과, 저장 후 전송 모드에서는 저널 항목을, 아니면 FHIR 서버의 응답 번들을 가진다
+public class SubmissionResult {
+
+    private final JournalEntry journalEntry;
+    private final Bundle responseBundle;
+
+    private SubmissionResult(JournalEntry journalEntry, Bundle responseBundle) {
+        this.journalEntry = journalEntry;
+        this.responseBundle = responseBundle;
+    }
+
+    public static SubmissionResult journaled(JournalEntry journalEntry) {
+        return new SubmissionResult(journalEntry, null);
+    }
+
+    public static SubmissionResult committed(Bundle responseBundle) {
+        return new SubmissionResult(null, responseBundle);
+    }
+
+    public boolean isJournaled() {
+        return journalEntry != null;
+    }
+
+    public JournalEntry getJournalEntry() {
+        return journalEntry;
+    }
+
+    public Bundle getResponseBundle() {
+        return responseBundle;
+    }
+}
@@ -0,0 +1,32 @@
+package com.aslan.pulmocarefhir.service;
+
+import ca.uhn.fhir.rest.client.api.IGenericClient;
+import com.aslan.pulmocarefhir.config.FhirParsers;
+import com.aslan.pulmocarefhir.metrics.FhirMetrics;
+import org.hl7.fhir.r4.model.Bundle;
+import org.springframework.stereotype.Component;
+
+// 트랜잭션 번들을 FHIR 서버에 전송하는 공통 컴포넌트
+// 요청 인코딩, 서버 왕복, 응답 파싱을 나누어 실행하여 각 구간의 시간과 페이로드 크기를 기록한다
+@Component
+public class TransactionExecutor {
+
+    private final FhirParsers parsers;
+    private final FhirMetrics metrics;
+
+    public TransactionExecutor(FhirParsers parsers, FhirMetrics metrics) {
+        this.parsers = parsers;
+        this.metrics = metrics;
+    }
+
+    public Bundle execute(IGenericClient client, Bundle bundle) {
+        metrics.recordBundleEntries("transaction", bundle.getEntry().size());
+        String requestJson = metrics.timeEncode("transaction-request",
+                () -> parsers.json().encodeResourceToString(bundle));
+        String responseJson = metrics.timeUpstream("transaction",
+                () -> client.transaction().withBundle(requestJson).execute());
+        metrics.recordPayloadBytes("transaction-response", responseJson);
+        return metrics.timeParse("transaction-response",
+                () -> parsers.json().parseResource(Bundle.class, responseJson));
+    }
+}
@@ -0,0 +1,81 @@
+package com.aslan.pulmocarefhir.service;
+
+import com.aslan.pulmocarefhir.config.FhirParsers;
+import com.aslan.pulmocarefhir.domain.JournalEntry;
+import com.aslan.pulmocarefhir.domain.JournalStatus;
+import com.aslan.pulmocarefhir.repository.JournalEntryRepository;
+import org.hl7.fhir.r4.model.*;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.time.Instant;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Optional;
+
+// 트랜잭션 번들을 로컬 H2 저널에 먼저 기록하고 바로 응답하는 저장 후 전송(write-behind) 서비스
+// 실제 전송은 JournalDrainer 가 백그라운드에서 처리한다
+@Service
+public class WriteBehindJournalService {
+
+    public static final String JOURNAL_IDENTIFIER_SYSTEM = "urn:pulmocare:journal";
+
+    private final FhirParsers parsers;
+    private final JournalEntryRepository repository;
+    private final boolean enabled;
+
+    public WriteBehindJournalService(FhirParsers parsers,
+                                     JournalEntryRepository repository,
+                                     @Value("${fhir.journal.enabled:false}") boolean enabled) {
+        this.parsers = parsers;
+        this.repository = repository;
+        this.enabled = enabled;
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    // 번들을 저널에 기록하는 메서드
+    public JournalEntry append(Bundle bundle) {
+        makeIdempotent(bundle);
+        String payload = parsers.json().encodeResourceToString(bundle);
+        return repository.save(new JournalEntry(payload, Instant.now()));
+    }
+
+    public Optional<JournalEntry> find(Long id) {
+        return repository.findById(id);
+    }
+
+    // 상태별 저널 항목 수를 반환하는 메서드
+    public Map<String, Long> getStatistics() {
+        Map<String, Long> statistics = new LinkedHashMap<>();
+        for (JournalStatus status : JournalStatus.values()) {
+            statistics.put(status.name(), repository.countByStatus(status));
+        }
+        return statistics;
+    }
+
+    // 같은 번들을 다시 전송해도 리소스가 중복 생성되지 않도록 저널 식별자를 붙이고 조건부 생성(ifNoneExist)으로 바꾸는 메서드
+    private void makeIdempotent(Bundle bundle) {
+        for (Bundle.BundleEntryComponent entry : bundle.getEntry()) {
+            if (entry.getRequest().getMethod() != Bundle.HTTPVerb.POST || entry.getRequest().hasIfNoneExist() || !entry.hasFullUrl()) {
+                continue;
+            }
+            String value = entry.getFullUrl().replace("urn:uuid:", "");
+            Identifier identifier = new Identifier().setSystem(JOURNAL_IDENTIFIER_SYSTEM).setValue(value);
+
+            Resource resource = entry.getResource();
+            if (resource instanceof Patient) {
+                ((Patient) resource).addIdentifier(identifier);
+            } else if (resource instanceof Observation) {
+                ((Observation) resource).addIdentifier(identifier);
+            } else if (resource instanceof Device) {
+                ((Device) resource).addIdentifier(identifier);
+            } else {
+                continue;
+            }
+            entry.getRequest().setIfNoneExist("identifier=" + JOURNAL_IDENTIFIER_SYSTEM + "|" + value);
+        }
+    }
+}
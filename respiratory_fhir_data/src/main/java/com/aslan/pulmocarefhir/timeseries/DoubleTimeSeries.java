@@ -0,0 +1,107 @@
+package com.aslan.pulmocarefhir.timeseries;
+
+import java.util.Arrays;
+
+// 측정 시각(long, epoch millis)과 값(double)을 시각 순으로 정렬된 기본형 배열에 보관하는 시계열
+// 측정값 하나당 16바이트만 사용하며 객체를 만들지 않으므로 GC 부담이 거의 없다
+// 시각당 값은 하나이며, 같은 시각의 측정값이 다시 들어오면(정정된 Observation 등) 새 값으로 바꾼다
+public final class DoubleTimeSeries {
+
+    static final double MILLIS_PER_YEAR = 365.2425 * 24 * 60 * 60 * 1000;
+
+    private long[] timestamps;
+    private double[] values;
+    private int size;
+
+    public DoubleTimeSeries(int initialCapacity) {
+        this.timestamps = new long[Math.max(initialCapacity, 1)];
+        this.values = new double[Math.max(initialCapacity, 1)];
+    }
+
+    // 측정값을 추가하는 메서드, 같은 시각의 값이 이미 있으면 덮어쓴다
+    public synchronized void add(long timestamp, double value) {
+        int index;
+        if (size == 0 || timestamp > timestamps[size - 1]) {
+            index = size;
+        } else {
+            index = insertionPoint(timestamp);
+            if (index < size && timestamps[index] == timestamp) {
+                values[index] = value;
+                return;
+            }
+        }
+
+        if (size == timestamps.length) {
+            int capacity = size + (size >> 1) + 1;
+            timestamps = Arrays.copyOf(timestamps, capacity);
+            values = Arrays.copyOf(values, capacity);
+        }
+        if (index < size) {
+            System.arraycopy(timestamps, index, timestamps, index + 1, size - index);
+            System.arraycopy(values, index, values, index + 1, size - index);
+        }
+        timestamps[index] = timestamp;
+        values[index] = value;
+        size++;
+    }
+
+    public synchronized int size() {
+        return size;
+    }
+
+    // 배열이 차지하는 대략적인 바이트 수
+    public synchronized long capacityBytes() {
+        return (long) timestamps.length * Long.BYTES + (long) values.length * Double.BYTES;
+    }
+
+    // [from, to] 구간의 최소/최대/평균, 최소제곱 기울기(연간 변화량), 최신값을 계산하는 메서드
+    public synchronized SeriesStatistics statistics(long from, long to) {
+        int start = insertionPoint(from);
+        int end = insertionPoint(to == Long.MAX_VALUE ? to : to + 1);
+        int count = end - start;
+        if (count <= 0) {
+            return SeriesStatistics.EMPTY;
+        }
+
+        double min = Double.POSITIVE_INFINITY;
+        double max = Double.NEGATIVE_INFINITY;
+        double sumX = 0;
+        double sumY = 0;
+        long origin = timestamps[start];
+        for (int i = start; i < end; i++) {
+            double value = values[i];
+            min = Math.min(min, value);
+            max = Math.max(max, value);
+            sumX += (timestamps[i] - origin) / MILLIS_PER_YEAR;
+            sumY += value;
+        }
+        double meanX = sumX / count;
+        double meanY = sumY / count;
+
+        double covariance = 0;
+        double varianceX = 0;
+        for (int i = start; i < end; i++) {
+            double dx = (timestamps[i] - origin) / MILLIS_PER_YEAR - meanX;
+            covariance += dx * (values[i] - meanY);
+            varianceX += dx * dx;
+        }
+        Double slopePerYear = varianceX > 0 ? covariance / varianceX : null;
+
+        return new SeriesStatistics(count, min, max, meanY, slopePerYear, values[end - 1], timestamps[end - 1]);
+    }
+
+    // timestamp 이상인 첫 위치를 이진 탐색으로 찾는 메서드
+    private int insertionPoint(long timestamp) {
+        int low = 0;
+        int high = size;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (timestamps[mid] < timestamp) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+}
@@ -0,0 +1,147 @@
+package com.aslan.pulmocarefhir.timeseries;
+
+import com.aslan.pulmocarefhir.domain.ObservationRecord;
+import com.aslan.pulmocarefhir.event.TransactionCommittedEvent;
+import com.aslan.pulmocarefhir.repository.ObservationRecordRepository;
+import com.aslan.pulmocarefhir.util.ObservationValues;
+import org.hl7.fhir.r4.model.Observation;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Sort;
+import org.springframework.stereotype.Component;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+
+// 환자별, 코드별 폐기능 측정값(FVC, FEV1/FVC, PEF, SpO2)을 기본형 배열 시계열로 보관하는 메모리 저장소
+// Observation 객체 그래프 대신 측정값당 16바이트만 사용하여 한 JVM 에서 수만 명의 대시보드를 제공한다
+@Component
+public class LungFunctionSeriesStore {
+
+    private static final Logger logger = LoggerFactory.getLogger(LungFunctionSeriesStore.class);
+
+    private final ObservationRecordRepository observationRecordRepository;
+    private final String[] codes;
+    private final Map<String, Integer> codeIndexes = new HashMap<>();
+    private final Map<String, DoubleTimeSeries[]> seriesByPatient = new ConcurrentHashMap<>();
+    private final int initialCapacity;
+    private final boolean loadOnStartup;
+
+    public LungFunctionSeriesStore(ObservationRecordRepository observationRecordRepository,
+                                   @Value("${fhir.timeseries.codes:19868-9,19926-5,19935-6,59408-5}") String[] codes,
+                                   @Value("${fhir.timeseries.initial-capacity:8}") int initialCapacity,
+                                   @Value("${fhir.timeseries.load-on-startup:true}") boolean loadOnStartup) {
+        this.observationRecordRepository = observationRecordRepository;
+        this.codes = codes;
+        this.initialCapacity = initialCapacity;
+        this.loadOnStartup = loadOnStartup;
+        for (int i = 0; i < codes.length; i++) {
+            codeIndexes.put(codes[i], i);
+        }
+    }
+
+    // 측정값을 추가하는 메서드, 보관 대상이 아닌 코드는 무시한다
+    public void add(String patientId, String code, long timestamp, double value) {
+        Integer codeIndex = codeIndexes.get(code);
+        if (codeIndex == null) {
+            return;
+        }
+        DoubleTimeSeries[] series = seriesByPatient.computeIfAbsent(patientId, key -> new DoubleTimeSeries[codes.length]);
+        DoubleTimeSeries codeSeries;
+        synchronized (series) {
+            codeSeries = series[codeIndex];
+            if (codeSeries == null) {
+                codeSeries = new DoubleTimeSeries(initialCapacity);
+                series[codeIndex] = codeSeries;
+            }
+        }
+        codeSeries.add(timestamp, value);
+    }
+
+    // 환자의 특정 코드 시계열을 [from, to] 구간으로 집계하는 메서드
+    public SeriesStatistics statistics(String patientId, String code, long from, long to) {
+        DoubleTimeSeries series = find(patientId, code);
+        return series != null ? series.statistics(from, to) : SeriesStatistics.EMPTY;
+    }
+
+    // 환자의 모든 코드 시계열을 집계하는 메서드
+    public Map<String, SeriesStatistics> statistics(String patientId, long from, long to) {
+        Map<String, SeriesStatistics> statistics = new LinkedHashMap<>();
+        for (String code : codes) {
+            statistics.put(code, statistics(patientId, code, from, to));
+        }
+        return statistics;
+    }
+
+    // 저장소 규모를 반환하는 메서드
+    public Map<String, Object> getStatistics() {
+        long points = 0;
+        long bytes = 0;
+        for (DoubleTimeSeries[] series : seriesByPatient.values()) {
+            for (DoubleTimeSeries codeSeries : series) {
+                if (codeSeries != null) {
+                    points += codeSeries.size();
+                    bytes += codeSeries.capacityBytes();
+                }
+            }
+        }
+        Map<String, Object> statistics = new LinkedHashMap<>();
+        statistics.put("patients", seriesByPatient.size());
+        statistics.put("points", points);
+        statistics.put("arrayBytes", bytes);
+        return statistics;
+    }
+
+    // 서버에 반영된 관찰 값을 시계열에 추가하는 메서드
+    @EventListener
+    public void onTransactionCommitted(TransactionCommittedEvent event) {
+        for (Observation observation : event.getCommittedResources(Observation.class)) {
+            String patientId = observation.getSubject().getReferenceElement().getIdPart();
+            String code = ObservationValues.loincCode(observation);
+            Date effective = ObservationValues.effectiveTime(observation);
+            Double value = ObservationValues.quantityValue(observation);
+            if (patientId != null && code != null && effective != null && value != null) {
+                add(patientId, code, effective.getTime(), value);
+            }
+        }
+    }
+
+    // 기동 시 관찰 인덱스에 저장된 값으로 시계열을 채우는 메서드
+    @EventListener(ApplicationReadyEvent.class)
+    public void loadFromIndex() {
+        if (!loadOnStartup) {
+            return;
+        }
+        long loaded = 0;
+        Page<ObservationRecord> page = observationRecordRepository.findAll(PageRequest.of(0, 10000, Sort.by("id")));
+        while (true) {
+            for (ObservationRecord record : page) {
+                if (record.getValue() != null) {
+                    add(record.getPatientId(), record.getCode(), record.getEffectiveTime().toEpochMilli(), record.getValue());
+                    loaded++;
+                }
+            }
+            if (!page.hasNext()) {
+                break;
+            }
+            page = observationRecordRepository.findAll(page.nextPageable());
+        }
+        logger.info("Loaded {} lung function values for {} patients", loaded, seriesByPatient.size());
+    }
+
+    private DoubleTimeSeries find(String patientId, String code) {
+        Integer codeIndex = codeIndexes.get(code);
+        DoubleTimeSeries[] series = seriesByPatient.get(patientId);
+        if (codeIndex == null || series == null) {
+            return null;
+        }
+        synchronized (series) {
+            return series[codeIndex];
+        }
+    }
+}
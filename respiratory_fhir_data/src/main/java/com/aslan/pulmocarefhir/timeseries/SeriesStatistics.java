@@ -0,0 +1,64 @@
+package com.aslan.pulmocarefhir.timeseries;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+
+import java.time.Instant;
+
+// 시계열 구간의 집계 결과
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public class SeriesStatistics {
+
+    static final SeriesStatistics EMPTY = new SeriesStatistics(0, null, null, null, null, null, null);
+
+    private final int count;
+    private final Double min;
+    private final Double max;
+    private final Double mean;
+    private final Double slopePerYear;
+    private final Double latestValue;
+    private final Long latestTime;
+
+    SeriesStatistics(int count, Double min, Double max, Double mean, Double slopePerYear, Double latestValue, Long latestTime) {
+        this.count = count;
+        this.min = min;
+        this.max = max;
+        this.mean = mean;
+        this.slopePerYear = slopePerYear;
+        this.latestValue = latestValue;
+        this.latestTime = latestTime;
+    }
+
+    public int getCount() {
+        return count;
+    }
+
+    public Double getMin() {
+        return min;
+    }
+
+    public Double getMax() {
+        return max;
+    }
+
+    public Double getMean() {
+        return mean;
+    }
+
+    // 최소제곱 직선의 연간 변화량
+    public Double getSlopePerYear() {
+        return slopePerYear;
+    }
+
+    // 연간 감소량 (예: FVC 가 매년 0.03 L 씩 줄면 0.03)
+    public Double getAnnualDeclineRate() {
+        return slopePerYear != null ? -slopePerYear : null;
+    }
+
+    public Double getLatestValue() {
+        return latestValue;
+    }
+
+    public String getLatestTime() {
+        return latestTime != null ? Instant.ofEpochMilli(latestTime).toString() : null;
+    }
+}
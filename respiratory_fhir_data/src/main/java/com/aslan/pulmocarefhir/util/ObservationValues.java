@@ -0,0 +1,51 @@
+package com.aslan.pulmocarefhir.util;
+
+import org.hl7.fhir.r4.model.Coding;
+import org.hl7.fhir.r4.model.Observation;
+import org.hl7.fhir.r4.model.Quantity;
+
+import java.util.Date;
+
+// Observation 리소스에서 LOINC 코드, 측정 시각, 측정값을 꺼내는 유틸리티
+public final class ObservationValues {
+
+    public static final String LOINC_SYSTEM = "http://loinc.org";
+
+    private ObservationValues() {
+    }
+
+    // 첫 번째 LOINC 코드를 반환, 없으면 null
+    public static String loincCode(Observation observation) {
+        for (Coding coding : observation.getCode().getCoding()) {
+            if (LOINC_SYSTEM.equals(coding.getSystem())) {
+                return coding.getCode();
+            }
+        }
+        return null;
+    }
+
+    // effective[x] 의 측정 시각을 반환, 없으면 issued
+    public static Date effectiveTime(Observation observation) {
+        if (observation.hasEffectiveDateTimeType()) {
+            return observation.getEffectiveDateTimeType().getValue();
+        }
+        if (observation.hasEffectivePeriod()) {
+            return observation.getEffectivePeriod().getStart();
+        }
+        return observation.getIssued();
+    }
+
+    // valueQuantity 의 값을 반환, 없으면 null
+    public static Double quantityValue(Observation observation) {
+        if (!observation.hasValueQuantity()) {
+            return null;
+        }
+        Quantity quantity = observation.getValueQuantity();
+        return quantity.hasValue() ? quantity.getValue().doubleValue() : null;
+    }
+
+    // valueQuantity 의 단위를 반환, 없으면 null
+    public static String quantityUnit(Observation observation) {
+        return observation.hasValueQuantity() ? observation.getValueQuantity().getUnit() : null;
+    }
+}
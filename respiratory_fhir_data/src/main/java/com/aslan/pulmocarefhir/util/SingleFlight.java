@@ -0,0 +1,88 @@
+package com.aslan.pulmocarefhir.util;
+
+import java.util.Map;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+// 같은 키에 대한 동시 요청을 하나의 실행으로 합치는 유틸리티(single-flight)
+// 먼저 온 요청(leader)만 실제로 실행하고, 실행 중에 도착한 요청(follower)은 그 결과를 최대 timeout 만큼 기다려 함께 받는다
+// timeout 은 follower 가 기다리는 시간이며, leader 는 호출한 스레드에서 그대로 실행되므로 loader 가 쓰는 HTTP 클라이언트의
+// 연결/소켓 타임아웃(fhir.client.connect-timeout-ms, fhir.client.socket-timeout-ms)으로 제한된다
+// 실행이 끝나면 키를 바로 지우므로 결과를 보관하지 않으며, 이후 요청은 새로 실행한다
+public class SingleFlight<K, V> {
+
+    private final Map<K, CompletableFuture<V>> inFlight = new ConcurrentHashMap<>();
+    private final long defaultTimeoutMillis;
+    private final AtomicLong leaderCount = new AtomicLong();
+    private final AtomicLong followerCount = new AtomicLong();
+
+    public SingleFlight(long defaultTimeoutMillis) {
+        this.defaultTimeoutMillis = defaultTimeoutMillis;
+    }
+
+    // 생성할 때 지정한 기본 timeout 으로 실행하는 메서드
+    public V execute(K key, Supplier<V> loader) {
+        return execute(key, defaultTimeoutMillis, loader);
+    }
+
+    // 호출마다 follower 가 기다릴 timeout 을 지정해 실행하는 메서드
+    // 같은 키라도 호출마다 다른 값을 줄 수 있으며, follower 는 자신이 지정한 timeout 만큼만 기다린다
+    public V execute(K key, long timeoutMillis, Supplier<V> loader) {
+        CompletableFuture<V> created = new CompletableFuture<>();
+        CompletableFuture<V> existing = inFlight.putIfAbsent(key, created);
+        if (existing != null) {
+            followerCount.incrementAndGet();
+            return await(key, existing, timeoutMillis);
+        }
+
+        leaderCount.incrementAndGet();
+        try {
+            V value = loader.get();
+            created.complete(value);
+            return value;
+        } catch (RuntimeException | Error e) {
+            created.completeExceptionally(e);
+            throw e;
+        } finally {
+            inFlight.remove(key, created);
+        }
+    }
+
+    // 진행 중인 실행이 시작된 뒤 데이터가 바뀐 경우, 이후 요청이 그 결과를 받지 않고 새로 실행하도록 키를 떼어내는 메서드
+    // 이미 기다리고 있는 요청은 진행 중인 결과를 그대로 받는다
+    public void forget(K key) {
+        inFlight.remove(key);
+    }
+
+    public long getLeaderCount() {
+        return leaderCount.get();
+    }
+
+    public long getFollowerCount() {
+        return followerCount.get();
+    }
+
+    // 전체 요청 중 다른 요청의 실행 결과를 함께 받은 비율
+    public double getCoalescingRatio() {
+        long followers = followerCount.get();
+        long total = leaderCount.get() + followers;
+        return total == 0 ? 0.0 : (double) followers / total;
+    }
+
+    private V await(K key, CompletableFuture<V> future, long timeoutMillis) {
+        try {
+            return future.get(timeoutMillis, TimeUnit.MILLISECONDS);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw new CompletionException(e.getCause());
+        } catch (TimeoutException e) {
+            throw new CompletionException(new TimeoutException("Timed out after " + timeoutMillis + " ms waiting for in-flight request " + key));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new CompletionException(e);
+        }
+    }
+}
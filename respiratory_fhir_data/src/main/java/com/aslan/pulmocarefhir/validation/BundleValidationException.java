@@ -0,0 +1,18 @@
+package com.aslan.pulmocarefhir.validation;
+
+import java.util.List;
+
+// fail-fast 검증 모드에서 번들에 오류가 있을 때 발생하는 예외
+public class BundleValidationException extends RuntimeException {
+
+    private final List<String> errors;
+
+    public BundleValidationException(List<String> errors) {
+        super("Bundle validation failed: " + String.join("; ", errors));
+        this.errors = List.copyOf(errors);
+    }
+
+    public List<String> getErrors() {
+        return errors;
+    }
+}
@@ -0,0 +1,165 @@
+package com.aslan.pulmocarefhir.validation;
+
+import ca.uhn.fhir.context.FhirContext;
+import ca.uhn.fhir.context.support.DefaultProfileValidationSupport;
+import ca.uhn.fhir.validation.FhirValidator;
+import ca.uhn.fhir.validation.ResultSeverityEnum;
+import ca.uhn.fhir.validation.SingleValidationMessage;
+import ca.uhn.fhir.validation.ValidationResult;
+import com.aslan.pulmocarefhir.config.FhirContextPrewarmer;
+import com.aslan.pulmocarefhir.metrics.FhirMetrics;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Timer;
+import org.hl7.fhir.common.hapi.validation.support.*;
+import org.hl7.fhir.common.hapi.validation.validator.FhirInstanceValidator;
+import org.hl7.fhir.r4.model.Bundle;
+import org.hl7.fhir.r4.model.Observation;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.stereotype.Service;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+// 전송 전에 트랜잭션 번들을 FHIR 프로파일과 용어(UCUM 단위 등) 기준으로 검증하는 서비스
+// 검증기와 StructureDefinition/용어 캐시는 애플리케이션 전체에서 하나만 만들고 시작 시점에 미리 준비한다
+// - off: 검증하지 않음
+// - fail-fast: 요청 스레드에서 검증하고 오류가 있으면 전송하지 않음
+// - audit: 번들 복사본을 별도 스레드에서 검증하고 결과는 로그와 지표로만 남김
+@Service
+public class BundleValidationService {
+
+    public enum Mode { OFF, FAIL_FAST, AUDIT }
+
+    private static final Logger logger = LoggerFactory.getLogger(BundleValidationService.class);
+
+    private final FhirContext fhirContext;
+    private final FhirMetrics metrics;
+    private final Mode mode;
+    private final Counter droppedCounter;
+    private FhirValidator validator;
+    private ThreadPoolExecutor auditExecutor;
+
+    public BundleValidationService(FhirContext fhirContext,
+                                   FhirMetrics metrics,
+                                   @Value("${fhir.validation.mode:off}") String mode,
+                                   @Value("${fhir.validation.audit-queue-capacity:1000}") int auditQueueCapacity) {
+        this.fhirContext = fhirContext;
+        this.metrics = metrics;
+        this.mode = Mode.valueOf(mode.trim().toUpperCase(Locale.ROOT).replace('-', '_'));
+        this.droppedCounter = Counter.builder("fhir.validation.dropped").register(metrics.getRegistry());
+        if (this.mode == Mode.AUDIT) {
+            this.auditExecutor = new ThreadPoolExecutor(1, 1, 0L, TimeUnit.MILLISECONDS,
+                    new ArrayBlockingQueue<>(auditQueueCapacity), new CustomizableThreadFactory("fhir-validation-"));
+        }
+    }
+
+    // 검증기를 만들고 샘플 번들을 한 번 검증하여 StructureDefinition 스냅샷과 용어 캐시를 채우는 메서드
+    @PostConstruct
+    public void initialize() {
+        if (mode == Mode.OFF) {
+            return;
+        }
+        long start = System.nanoTime();
+        ValidationSupportChain supportChain = new ValidationSupportChain(
+                new DefaultProfileValidationSupport(fhirContext),
+                new CommonCodeSystemsTerminologyService(fhirContext),
+                new InMemoryTerminologyServerValidationSupport(fhirContext),
+                new SnapshotGeneratingValidationSupport(fhirContext));
+        CachingValidationSupport cachingSupport = new CachingValidationSupport(supportChain);
+
+        FhirInstanceValidator instanceValidator = new FhirInstanceValidator(cachingSupport);
+        instanceValidator.setAnyExtensionsAllowed(true);
+        instanceValidator.setErrorForUnknownProfiles(false);
+        validator = fhirContext.newValidator().registerValidatorModule(instanceValidator);
+
+        validator.validateWithResult(FhirContextPrewarmer.sampleBundle());
+        logger.info("Bundle validator ({}) initialized in {} ms", mode, TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+    }
+
+    public Mode getMode() {
+        return mode;
+    }
+
+    // 설정된 모드에 따라 번들을 검증하는 메서드, fail-fast 모드에서 오류가 있으면 BundleValidationException 을 던진다
+    public void validate(Bundle bundle) {
+        if (mode == Mode.FAIL_FAST) {
+            List<String> errors = collectErrors(bundle);
+            if (!errors.isEmpty()) {
+                throw new BundleValidationException(errors);
+            }
+        } else if (mode == Mode.AUDIT) {
+            // 요청 스레드가 이후에 번들을 수정해도(저널 식별자 등) 영향이 없도록 복사본을 검증한다
+            Bundle copy = bundle.copy();
+            try {
+                auditExecutor.execute(() -> {
+                    List<String> errors = collectErrors(copy);
+                    if (!errors.isEmpty()) {
+                        logger.warn("Bundle failed validation (audit only): {}", errors);
+                    }
+                });
+            } catch (RejectedExecutionException e) {
+                droppedCounter.increment();
+            }
+        }
+    }
+
+    // 검증 시간과 결과를 기록하고 ERROR/FATAL 메시지를 반환하는 메서드
+    private List<String> collectErrors(Bundle bundle) {
+        Timer.Sample sample = metrics.startTimer();
+        List<String> errors = new ArrayList<>(checkMeasurements(bundle));
+        ValidationResult result = validator.validateWithResult(bundle);
+        for (SingleValidationMessage message : result.getMessages()) {
+            if (message.getSeverity() == ResultSeverityEnum.ERROR || message.getSeverity() == ResultSeverityEnum.FATAL) {
+                errors.add(message.getLocationString() + ": " + message.getMessage());
+            }
+        }
+        sample.stop(Timer.builder("fhir.validation")
+                .tag("mode", mode.name().toLowerCase(Locale.ROOT))
+                .tag("outcome", errors.isEmpty() ? "valid" : "invalid")
+                .publishPercentileHistogram()
+                .register(metrics.getRegistry()));
+        return errors;
+    }
+
+    // 기본 프로파일은 값이 없는 Observation 을 허용하므로, 측정값과 단위가 있는지 따로 확인한다
+    private List<String> checkMeasurements(Bundle bundle) {
+        List<String> errors = new ArrayList<>();
+        for (Bundle.BundleEntryComponent entry : bundle.getEntry()) {
+            if (!(entry.getResource() instanceof Observation)) {
+                continue;
+            }
+            Observation observation = (Observation) entry.getResource();
+            String location = entry.getFullUrl() + " (" + observation.getCode().getCodingFirstRep().getCode() + ")";
+            // 측정 곡선처럼 값을 구성요소에 담은 Observation 은 각 구성요소에 값이 있는지 확인한다
+            if (!observation.hasValue() && observation.hasComponent()) {
+                for (Observation.ObservationComponentComponent component : observation.getComponent()) {
+                    if (!component.hasValueQuantity() && !component.hasValueSampledData()) {
+                        errors.add(location + ": Observation.component.value[x] is required");
+                    }
+                }
+            } else if (!observation.hasValueQuantity() || !observation.getValueQuantity().hasValue()) {
+                errors.add(location + ": Observation.valueQuantity.value is required");
+            } else if (!observation.getValueQuantity().hasCode()) {
+                errors.add(location + ": Observation.valueQuantity.code (UCUM unit) is required");
+            }
+        }
+        return errors;
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        if (auditExecutor != null) {
+            auditExecutor.shutdown();
+        }
+    }
+}
@@ -0,0 +1,41 @@
+package com.aslan.pulmocarefhir.waveform;
+
+// 측정 샘플을 미리 할당한 float 배열에 순서대로 보관하는 버퍼
+// FEV1/PEF 는 호기 시작 부분에서 정해지므로 가득 차면 오래된 샘플을 덮어쓰지 않고 더 받지 않으며,
+// 샘플을 추가할 때 객체를 만들지 않는다
+// 한 측정 세션에서만 사용하므로 동기화하지 않는다
+public final class SampleBuffer {
+
+    private final float[] samples;
+    private int size;
+
+    public SampleBuffer(int capacity) {
+        this.samples = new float[capacity];
+    }
+
+    // 샘플을 추가하는 메서드, 버퍼가 가득 차면 추가하지 않고 false 를 반환한다
+    public boolean add(float sample) {
+        if (size == samples.length) {
+            return false;
+        }
+        samples[size++] = sample;
+        return true;
+    }
+
+    // 보관 중인 샘플 중 index 번째(가장 오래된 샘플이 0)를 반환하는 메서드
+    public float get(int index) {
+        return samples[index];
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public int capacity() {
+        return samples.length;
+    }
+
+    public void clear() {
+        size = 0;
+    }
+}
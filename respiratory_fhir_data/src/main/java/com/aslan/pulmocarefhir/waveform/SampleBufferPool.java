@@ -0,0 +1,55 @@
+package com.aslan.pulmocarefhir.waveform;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.atomic.AtomicLong;
+
+// 측정 세션마다 빌려 쓰는 샘플 버퍼 풀
+// 시작 시점에 최대 동시 세션 수만큼 버퍼를 만들어 두고 재사용하므로, 세션이 많아도 새 배열을 할당하지 않는다
+// 남은 버퍼가 없으면 새 세션을 받지 않는다
+@Component
+public class SampleBufferPool implements MeterBinder {
+
+    private final BlockingQueue<SampleBuffer> available;
+    private final int size;
+    private final AtomicLong rejectedCount = new AtomicLong();
+
+    public SampleBufferPool(@Value("${fhir.waveform.max-sessions:64}") int maxSessions,
+                            @Value("${fhir.waveform.max-sample-rate-hz:1000}") int maxSampleRateHz,
+                            @Value("${fhir.waveform.max-seconds:20}") int maxSeconds) {
+        this.size = maxSessions;
+        this.available = new ArrayBlockingQueue<>(maxSessions);
+        for (int i = 0; i < maxSessions; i++) {
+            available.add(new SampleBuffer(maxSampleRateHz * maxSeconds));
+        }
+    }
+
+    // 버퍼를 빌리는 메서드, 남은 버퍼가 없으면 null 을 반환한다
+    public SampleBuffer acquire() {
+        SampleBuffer buffer = available.poll();
+        if (buffer == null) {
+            rejectedCount.incrementAndGet();
+        }
+        return buffer;
+    }
+
+    public void release(SampleBuffer buffer) {
+        buffer.clear();
+        available.offer(buffer);
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        Gauge.builder("fhir.waveform.sessions.active", available, queue -> size - queue.size())
+                .register(registry);
+        FunctionCounter.builder("fhir.waveform.sessions.rejected", rejectedCount, AtomicLong::get)
+                .register(registry);
+    }
+}
@@ -0,0 +1,58 @@
+package com.aslan.pulmocarefhir.waveform;
+
+// 일정한 간격으로 받은 호기 유량(L/s) 샘플에서 FVC/FEV1/PEF 를 계산하고 곡선을 줄이는 유틸리티
+// 유량이 기준값을 처음 넘은 시점을 호기 시작으로 보고, 그때부터 유량을 적분하여 부피를 구한다
+public final class WaveformAnalyzer {
+
+    // 호기 시작으로 보는 유량 (L/s)
+    static final double START_FLOW_THRESHOLD = 0.2;
+
+    private WaveformAnalyzer() {
+    }
+
+    // maxPoints 개 이하의 구간으로 나누어 유량은 구간 평균, 부피는 구간 끝의 누적값으로 줄인다
+    public static WaveformResult analyze(SampleBuffer samples, int sampleRateHz, int maxPoints) {
+        double interval = 1.0 / sampleRateHz;
+        int start = 0;
+        while (start < samples.size() && samples.get(start) < START_FLOW_THRESHOLD) {
+            start++;
+        }
+        int count = samples.size() - start;
+        if (count <= 0) {
+            throw new IllegalArgumentException("No expiration found in " + samples.size() + " samples");
+        }
+
+        int step = (count + maxPoints - 1) / maxPoints;
+        int points = (count + step - 1) / step;
+        double[] flow = new double[points];
+        double[] volume = new double[points];
+
+        double expired = 0;
+        double fvc = 0;
+        double fev1 = 0;
+        double pef = 0;
+        int oneSecond = sampleRateHz;
+        double bucketSum = 0;
+        for (int i = 0; i < count; i++) {
+            double sample = samples.get(start + i);
+            expired += sample * interval;
+            fvc = Math.max(fvc, expired);
+            pef = Math.max(pef, sample);
+            if (i < oneSecond) {
+                fev1 = expired;
+            }
+
+            bucketSum += sample;
+            if ((i + 1) % step == 0 || i == count - 1) {
+                int point = i / step;
+                flow[point] = bucketSum / (i - point * step + 1);
+                volume[point] = expired;
+                bucketSum = 0;
+            }
+        }
+        // 1초가 되기 전에 끝난 측정은 FEV1 이 FVC 를 넘지 않도록 한다
+        fev1 = Math.min(fev1, fvc);
+
+        return new WaveformResult(fvc, fev1, pef, samples.size(), step * 1000.0 / sampleRateHz, flow, volume);
+    }
+}
@@ -0,0 +1,100 @@
+package com.aslan.pulmocarefhir.waveform;
+
+import com.aslan.pulmocarefhir.metrics.FhirMetrics;
+import com.aslan.pulmocarefhir.service.PatientService;
+import com.aslan.pulmocarefhir.service.SpirometryResourceFactory;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Timer;
+import org.hl7.fhir.r4.model.*;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.text.ParseException;
+import java.util.*;
+
+// 폐활량계가 보내는 측정 곡선을 세션 단위로 받아, 측정이 끝나면 FVC/FEV1/PEF 와 줄인 곡선을 Observation 으로 만들어
+// 기존 Patient/Device 번들 전송 흐름(검증, 저널, 샤드 라우팅)으로 저장하는 서비스
+@Service
+public class WaveformIngestionService {
+
+    private final SpirometryResourceFactory resourceFactory;
+    private final PatientService patientService;
+    private final SampleBufferPool bufferPool;
+    private final FhirMetrics metrics;
+    private final Counter samplesCounter;
+    private final int maxSampleRateHz;
+    private final int maxSeconds;
+    private final int maxPoints;
+
+    public WaveformIngestionService(SpirometryResourceFactory resourceFactory,
+                                    PatientService patientService,
+                                    SampleBufferPool bufferPool,
+                                    FhirMetrics metrics,
+                                    @Value("${fhir.waveform.max-sample-rate-hz:1000}") int maxSampleRateHz,
+                                    @Value("${fhir.waveform.max-seconds:20}") int maxSeconds,
+                                    @Value("${fhir.waveform.downsample-points:250}") int maxPoints) {
+        this.resourceFactory = resourceFactory;
+        this.patientService = patientService;
+        this.bufferPool = bufferPool;
+        this.metrics = metrics;
+        this.samplesCounter = Counter.builder("fhir.waveform.samples").register(metrics.getRegistry());
+        this.maxSampleRateHz = maxSampleRateHz;
+        this.maxSeconds = maxSeconds;
+        this.maxPoints = maxPoints;
+    }
+
+    // 측정 세션을 시작하는 메서드, 샘플링 주파수가 범위를 벗어나면 IllegalArgumentException,
+    // 동시 세션 수가 한도에 도달하면 IllegalStateException 발생
+    public WaveformSession start(Map<String, String> requestData, int sampleRateHz) {
+        if (sampleRateHz < 1 || sampleRateHz > maxSampleRateHz) {
+            throw new IllegalArgumentException("sampleRateHz must be between 1 and " + maxSampleRateHz);
+        }
+        SampleBuffer buffer = bufferPool.acquire();
+        if (buffer == null) {
+            throw new IllegalStateException("Too many concurrent waveform sessions");
+        }
+        // 세션에서 받을 수 있는 샘플 수는 실제 샘플링 주파수 기준의 최대 측정 시간으로 정한다
+        return new WaveformSession(requestData, sampleRateHz, buffer, sampleRateHz * maxSeconds);
+    }
+
+    // 측정을 마치고 지표를 계산하여 번들로 전송한 뒤 결과를 반환하는 메서드, 버퍼는 release 로 따로 돌려준다
+    // 최대 측정 시간을 넘어 샘플을 잃은 세션은 지표가 틀릴 수 있으므로 IllegalStateException 을 던지고 저장하지 않는다
+    public Map<String, Object> finish(WaveformSession session) throws ParseException {
+        if (session.isOverflowed()) {
+            throw new IllegalStateException("Measurement exceeded " + maxSeconds + " seconds; the result was not stored");
+        }
+        Timer.Sample sample = metrics.startTimer();
+        samplesCounter.increment(session.getReceivedSamples());
+        WaveformResult result = WaveformAnalyzer.analyze(session.getBuffer(), session.getSampleRateHz(), maxPoints);
+
+        Patient patient = resourceFactory.createPatient(session.getRequestData());
+        Device device = resourceFactory.createDevice();
+        List<Observation> observations = new ArrayList<>();
+        observations.add(resourceFactory.createObservation("19868-9", "Forced vital capacity [Volume] Respiratory system by Spirometry", round(result.getFvc()), patient, "L", device));
+        observations.add(resourceFactory.createObservation("20150-9", "FEV1", round(result.getFev1()), patient, "L", device));
+        observations.add(resourceFactory.createObservation("19926-5", "FEV1/FVC", round(result.getFev1FvcRatio()), patient, "%", device));
+        observations.add(resourceFactory.createObservation("19935-6", "Maximum expiratory gas flow Respiratory system airway by Peak flow meter", round(result.getPef() * 60), patient, "L/min", device));
+        observations.add(resourceFactory.createWaveformObservation(patient, device, result.getPeriodMillis(), result.getFlow(), result.getVolume()));
+
+        String response = patientService.submit(resourceFactory.createBundle(patient, device, observations));
+        sample.stop(Timer.builder("fhir.waveform.finish").publishPercentileHistogram().register(metrics.getRegistry()));
+
+        Map<String, Object> summary = new LinkedHashMap<>();
+        summary.put("type", "result");
+        summary.put("samples", result.getSampleCount());
+        summary.put("fvc", round(result.getFvc()));
+        summary.put("fev1", round(result.getFev1()));
+        summary.put("fev1Fvc", round(result.getFev1FvcRatio()));
+        summary.put("pef", round(result.getPef() * 60));
+        summary.put("response", response);
+        return summary;
+    }
+
+    public void release(WaveformSession session) {
+        bufferPool.release(session.getBuffer());
+    }
+
+    private static double round(double value) {
+        return Math.round(value * 100) / 100.0;
+    }
+}
@@ -0,0 +1,60 @@
+package com.aslan.pulmocarefhir.waveform;
+
+// 한 번의 강제 호기 측정 곡선에서 계산한 폐기능 지표와 줄인 곡선
+public class WaveformResult {
+
+    private final double fvc;
+    private final double fev1;
+    private final double pef;
+    private final int sampleCount;
+    private final double periodMillis;
+    private final double[] flow;
+    private final double[] volume;
+
+    public WaveformResult(double fvc, double fev1, double pef, int sampleCount, double periodMillis, double[] flow, double[] volume) {
+        this.fvc = fvc;
+        this.fev1 = fev1;
+        this.pef = pef;
+        this.sampleCount = sampleCount;
+        this.periodMillis = periodMillis;
+        this.flow = flow;
+        this.volume = volume;
+    }
+
+    // 강제 폐활량 (L)
+    public double getFvc() {
+        return fvc;
+    }
+
+    // 1초간 강제 호기량 (L)
+    public double getFev1() {
+        return fev1;
+    }
+
+    // FEV1/FVC (%)
+    public double getFev1FvcRatio() {
+        return fvc > 0 ? fev1 / fvc * 100 : 0;
+    }
+
+    // 최대 호기 유량 (L/s)
+    public double getPef() {
+        return pef;
+    }
+
+    public int getSampleCount() {
+        return sampleCount;
+    }
+
+    // 줄인 곡선의 샘플 간격 (ms)
+    public double getPeriodMillis() {
+        return periodMillis;
+    }
+
+    public double[] getFlow() {
+        return flow;
+    }
+
+    public double[] getVolume() {
+        return volume;
+    }
+}
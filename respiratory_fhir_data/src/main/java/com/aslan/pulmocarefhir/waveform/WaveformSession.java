@@ -0,0 +1,62 @@
+package com.aslan.pulmocarefhir.waveform;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.Map;
+
+// WebSocket 연결 하나에서 진행 중인 측정 세션
+// 시작 메시지의 환자 정보와 샘플링 주파수, 풀에서 빌린 샘플 버퍼를 가진다
+public class WaveformSession {
+
+    private final Map<String, String> requestData;
+    private final int sampleRateHz;
+    private final SampleBuffer buffer;
+    private final int maxSamples;
+    private long receivedSamples;
+    private boolean overflowed;
+
+    WaveformSession(Map<String, String> requestData, int sampleRateHz, SampleBuffer buffer, int maxSamples) {
+        this.requestData = requestData;
+        this.sampleRateHz = sampleRateHz;
+        this.buffer = buffer;
+        this.maxSamples = Math.min(maxSamples, buffer.capacity());
+    }
+
+    // little-endian float32 유량(L/s) 샘플을 버퍼에 추가하는 메서드, 샘플마다 객체를 만들지 않도록 바이트 버퍼에서 바로 읽는다
+    // 세션의 최대 측정 시간을 넘는 샘플이 오면 더 받지 않고 false 를 반환하며, 이 세션의 결과는 저장하지 않는다
+    public boolean append(ByteBuffer payload) {
+        ByteBuffer samples = payload.order(ByteOrder.LITTLE_ENDIAN);
+        while (samples.remaining() >= Float.BYTES) {
+            if (buffer.size() >= maxSamples || !buffer.add(samples.getFloat())) {
+                overflowed = true;
+                return false;
+            }
+            receivedSamples++;
+        }
+        return true;
+    }
+
+    public boolean isOverflowed() {
+        return overflowed;
+    }
+
+    public int getMaxSamples() {
+        return maxSamples;
+    }
+
+    public Map<String, String> getRequestData() {
+        return requestData;
+    }
+
+    public int getSampleRateHz() {
+        return sampleRateHz;
+    }
+
+    public long getReceivedSamples() {
+        return receivedSamples;
+    }
+
+    SampleBuffer getBuffer() {
+        return buffer;
+    }
+}
@@ -0,0 +1,127 @@
+package com.aslan.pulmocarefhir.waveform;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Component;
+import org.springframework.web.socket.*;
+import org.springframework.web.socket.handler.AbstractWebSocketHandler;
+
+import java.io.IOException;
+import java.util.*;
+import java.util.concurrent.ExecutorService;
+
+// 폐활량계 측정 곡선을 받는 WebSocket 핸들러 (/ws/spirometry)
+// 1) 텍스트 {"type":"start","sampleRateHz":1000,"username":...,"birthDate":"yyyy-MM-dd",...} 로 세션을 시작하고
+// 2) 바이너리 메시지로 little-endian float32 유량(L/s) 샘플을 보낸 뒤
+// 3) 텍스트 {"type":"end"} 를 보내면 계산 결과({"type":"result",...})를 받고 연결이 닫힌다
+@Component
+public class WaveformWebSocketHandler extends AbstractWebSocketHandler {
+
+    private static final Logger logger = LoggerFactory.getLogger(WaveformWebSocketHandler.class);
+    private static final String SESSION_ATTRIBUTE = "waveformSession";
+
+    private final WaveformIngestionService ingestionService;
+    private final ExecutorService requestExecutor;
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    public WaveformWebSocketHandler(WaveformIngestionService ingestionService, ExecutorService requestExecutor) {
+        this.ingestionService = ingestionService;
+        this.requestExecutor = requestExecutor;
+    }
+
+    @Override
+    protected void handleTextMessage(WebSocketSession session, TextMessage message) throws IOException {
+        JsonNode command = objectMapper.readTree(message.getPayload());
+        String type = command.path("type").asText();
+        if ("start".equals(type)) {
+            start(session, command);
+        } else if ("end".equals(type)) {
+            finish(session);
+        } else {
+            sendError(session, "Unknown message type: " + type);
+        }
+    }
+
+    @Override
+    protected void handleBinaryMessage(WebSocketSession session, BinaryMessage message) throws IOException {
+        WaveformSession waveformSession = (WaveformSession) session.getAttributes().get(SESSION_ATTRIBUTE);
+        if (waveformSession == null) {
+            sendError(session, "Send a start message before samples");
+            return;
+        }
+        // 최대 측정 시간을 넘으면 세션을 실패로 끝낸다 (버퍼는 afterConnectionClosed 에서 돌려준다)
+        if (!waveformSession.append(message.getPayload())) {
+            sendError(session, "Measurement exceeded " + waveformSession.getMaxSamples() + " samples at "
+                    + waveformSession.getSampleRateHz() + " Hz; the result was not stored");
+            session.close(CloseStatus.POLICY_VIOLATION);
+        }
+    }
+
+    @Override
+    public void afterConnectionClosed(WebSocketSession session, CloseStatus status) {
+        // 측정을 마치지 않고 끊긴 세션의 버퍼를 풀에 돌려준다
+        WaveformSession waveformSession = (WaveformSession) session.getAttributes().remove(SESSION_ATTRIBUTE);
+        if (waveformSession != null) {
+            ingestionService.release(waveformSession);
+        }
+    }
+
+    private void start(WebSocketSession session, JsonNode command) throws IOException {
+        if (session.getAttributes().containsKey(SESSION_ATTRIBUTE)) {
+            sendError(session, "Session already started");
+            return;
+        }
+        Map<String, String> requestData = new HashMap<>();
+        command.fields().forEachRemaining(field -> requestData.put(field.getKey(), field.getValue().asText()));
+        try {
+            WaveformSession waveformSession = ingestionService.start(requestData, command.path("sampleRateHz").asInt());
+            session.getAttributes().put(SESSION_ATTRIBUTE, waveformSession);
+            send(session, Map.of("type", "started"));
+        } catch (IllegalStateException e) {
+            sendError(session, e.getMessage());
+            session.close(CloseStatus.SERVICE_OVERLOAD);
+        } catch (IllegalArgumentException e) {
+            sendError(session, e.getMessage());
+        }
+    }
+
+    // 지표 계산과 FHIR 서버 전송은 WebSocket 스레드를 막지 않도록 요청 실행기에서 처리한다
+    private void finish(WebSocketSession session) throws IOException {
+        WaveformSession waveformSession = (WaveformSession) session.getAttributes().remove(SESSION_ATTRIBUTE);
+        if (waveformSession == null) {
+            sendError(session, "No session in progress");
+            return;
+        }
+        requestExecutor.execute(() -> {
+            try {
+                send(session, ingestionService.finish(waveformSession));
+                session.close(CloseStatus.NORMAL);
+            } catch (Exception e) {
+                logger.warn("Waveform session {} failed: {}", session.getId(), e.getMessage());
+                try {
+                    sendError(session, e.getMessage());
+                    session.close(CloseStatus.SERVER_ERROR);
+                } catch (IOException closeError) {
+                    logger.debug("Could not report failure to waveform session {}: {}", session.getId(), closeError.getMessage());
+                }
+            } finally {
+                ingestionService.release(waveformSession);
+            }
+        });
+    }
+
+    private void sendError(WebSocketSession session, String message) throws IOException {
+        Map<String, Object> error = new LinkedHashMap<>();
+        error.put("type", "error");
+        error.put("message", message);
+        send(session, error);
+    }
+
+    private void send(WebSocketSession session, Map<String, ?> body) throws IOException {
+        if (session.isOpen()) {
+            session.sendMessage(new TextMessage(objectMapper.writeValueAsString(body)));
+        }
+    }
+}
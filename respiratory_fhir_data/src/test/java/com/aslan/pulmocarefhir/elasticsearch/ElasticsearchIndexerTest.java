@@ -0,0 +1,180 @@
+package com.aslan.pulmocarefhir.elasticsearch;
+
+import com.aslan.pulmocarefhir.event.TransactionCommittedEvent;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.sun.net.httpserver.HttpServer;
+import org.hl7.fhir.r4.model.*;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+// 프로세스 안에서 띄운 _bulk 스텁 HTTP 서버로 색인 파이프라인을 확인하는 테스트
+// 스텁은 받은 요청 본문을 기록하고, 미리 지정한 상태 코드 순서대로 응답한다 (지정하지 않으면 200)
+class ElasticsearchIndexerTest {
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final BlockingQueue<String> requests = new LinkedBlockingQueue<>();
+    private final BlockingQueue<Integer> statuses = new LinkedBlockingQueue<>();
+    private HttpServer server;
+    private ElasticsearchIndexer indexer;
+
+    @BeforeEach
+    void startStub() throws IOException {
+        server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 0);
+        server.createContext("/_bulk", exchange -> {
+            requests.add(new String(exchange.getRequestBody().readAllBytes(), StandardCharsets.UTF_8));
+            Integer status = statuses.poll();
+            byte[] body = (status == null ? "{\"errors\":false,\"items\":[]}" : "{}").getBytes(StandardCharsets.UTF_8);
+            exchange.getResponseHeaders().add("Content-Type", "application/json");
+            exchange.sendResponseHeaders(status == null ? 200 : status, body.length);
+            try (OutputStream outputStream = exchange.getResponseBody()) {
+                outputStream.write(body);
+            }
+        });
+        server.start();
+    }
+
+    @AfterEach
+    void stop() throws InterruptedException {
+        if (indexer != null) {
+            indexer.stop();
+        }
+        server.stop(0);
+    }
+
+    @Test
+    void sendsActionAndDocumentPairsAfterFlushInterval() throws Exception {
+        indexer = startIndexer(10, 500, 200, 50, 0);
+
+        indexer.onTransactionCommitted(committed("p1", 1));
+
+        String body = requests.poll(5, TimeUnit.SECONDS);
+        assertThat(body).isNotNull().endsWith("\n");
+        String[] lines = body.split("\n");
+        assertThat(lines).hasSize(4);
+
+        JsonNode patientAction = objectMapper.readTree(lines[0]).path("index");
+        assertThat(patientAction.path("_index").asText()).isEqualTo("fhir-patients");
+        assertThat(patientAction.path("_id").asText()).isEqualTo("p1");
+        JsonNode patientDocument = objectMapper.readTree(lines[1]);
+        assertThat(patientDocument.path("patientId").asText()).isEqualTo("p1");
+        assertThat(patientDocument.path("family").asText()).isEqualTo("Hong");
+
+        JsonNode observationAction = objectMapper.readTree(lines[2]).path("index");
+        assertThat(observationAction.path("_index").asText()).isEqualTo("fhir-observations");
+        assertThat(observationAction.path("_id").asText()).isEqualTo("p1-o0");
+        JsonNode observationDocument = objectMapper.readTree(lines[3]);
+        assertThat(observationDocument.path("patientId").asText()).isEqualTo("p1");
+        assertThat(observationDocument.path("code").asText()).isEqualTo("19868-9");
+        assertThat(observationDocument.path("value").asDouble()).isEqualTo(3.42);
+        assertThat(observationDocument.path("unit").asText()).isEqualTo("L");
+
+        awaitStatistic("indexedCount", 2L);
+    }
+
+    @Test
+    void flushesAsSoonAsBatchIsFull() throws Exception {
+        // 전송 주기(3 s)보다 짧게 기다려서 배치 크기만으로 전송되는지 확인한다
+        indexer = startIndexer(10, 2, 3000, 50, 0);
+
+        indexer.onTransactionCommitted(committed("p1", 3));
+
+        String first = requests.poll(1, TimeUnit.SECONDS);
+        String second = requests.poll(1, TimeUnit.SECONDS);
+        assertThat(first).isNotNull();
+        assertThat(second).isNotNull();
+        assertThat(first.split("\n")).hasSize(4);
+        assertThat(second.split("\n")).hasSize(4);
+        awaitStatistic("indexedCount", 4L);
+    }
+
+    @Test
+    void retriesBatchAfterServerError() throws Exception {
+        statuses.add(503);
+        indexer = startIndexer(10, 500, 100, 50, 3);
+
+        indexer.onTransactionCommitted(committed("p1", 1));
+
+        String failed = requests.poll(5, TimeUnit.SECONDS);
+        String retried = requests.poll(5, TimeUnit.SECONDS);
+        assertThat(failed).isNotNull();
+        assertThat(retried).isEqualTo(failed);
+        awaitStatistic("indexedCount", 2L);
+        assertThat(indexer.getStatistics().get("failedCount")).isEqualTo(0L);
+    }
+
+    @Test
+    void dropsDocumentsWhenQueueIsFullWithoutBlockingTheEvent() {
+        // 전송 스레드를 시작하지 않으므로 큐는 비워지지 않는다
+        indexer = newIndexer(1, 500, 1000, 100, 0);
+
+        long started = System.nanoTime();
+        indexer.onTransactionCommitted(committed("p1", 5));
+        long elapsedMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - started);
+
+        Map<String, Object> statistics = indexer.getStatistics();
+        assertThat(statistics.get("queueDepth")).isEqualTo(1);
+        assertThat(statistics.get("droppedCount")).isEqualTo(5L);
+        // 버린 문서마다 기다리지 않고 이벤트 전체에서 offerTimeout 한 번만 기다린다
+        assertThat(elapsedMillis).isLessThan(1000);
+    }
+
+    private ElasticsearchIndexer startIndexer(int queueCapacity, int batchSize, long flushIntervalMillis,
+                                              long offerTimeoutMillis, int maxRetries) {
+        ElasticsearchIndexer started = newIndexer(queueCapacity, batchSize, flushIntervalMillis, offerTimeoutMillis, maxRetries);
+        started.start();
+        return started;
+    }
+
+    private ElasticsearchIndexer newIndexer(int queueCapacity, int batchSize, long flushIntervalMillis,
+                                            long offerTimeoutMillis, int maxRetries) {
+        return new ElasticsearchIndexer(true, "http://127.0.0.1:" + server.getAddress().getPort(), "fhir-",
+                queueCapacity, batchSize, flushIntervalMillis, offerTimeoutMillis, maxRetries, 10);
+    }
+
+    // Patient 하나와 FVC Observation 여러 개가 반영된 트랜잭션 이벤트를 만드는 메서드
+    private static TransactionCommittedEvent committed(String patientId, int observationCount) {
+        Bundle request = new Bundle().setType(Bundle.BundleType.TRANSACTION);
+        Bundle response = new Bundle().setType(Bundle.BundleType.TRANSACTIONRESPONSE);
+
+        Patient patient = new Patient();
+        patient.addName().setFamily("Hong");
+        request.addEntry().setFullUrl("urn:uuid:" + patientId).setResource(patient);
+        response.addEntry().getResponse().setStatus("201 Created").setLocation("Patient/" + patientId + "/_history/1");
+
+        for (int i = 0; i < observationCount; i++) {
+            Observation observation = new Observation();
+            observation.setStatus(Observation.ObservationStatus.FINAL);
+            observation.getCode().addCoding().setSystem("http://loinc.org").setCode("19868-9");
+            observation.setValue(new Quantity().setValue(3.42).setUnit("L"));
+            observation.getSubject().setReference("urn:uuid:" + patientId);
+            request.addEntry().setFullUrl("urn:uuid:" + patientId + "-o" + i).setResource(observation);
+            response.addEntry().getResponse().setStatus("201 Created")
+                    .setLocation("Observation/" + patientId + "-o" + i + "/_history/1");
+        }
+        return new TransactionCommittedEvent(request, response);
+    }
+
+    private void awaitStatistic(String name, Object expected) throws InterruptedException {
+        Supplier<Object> actual = () -> indexer.getStatistics().get(name);
+        long deadline = System.currentTimeMillis() + 5000;
+        while (!expected.equals(actual.get()) && System.currentTimeMillis() < deadline) {
+            Thread.sleep(20);
+        }
+        assertThat(actual.get()).isEqualTo(expected);
+    }
+}
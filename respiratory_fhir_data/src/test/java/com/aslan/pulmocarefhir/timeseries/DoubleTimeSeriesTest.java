@@ -0,0 +1,102 @@
+package com.aslan.pulmocarefhir.timeseries;
+
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.within;
+
+// 정정된 측정값 교체와 구간 집계(최소/최대/평균/기울기)를 확인하는 테스트
+class DoubleTimeSeriesTest {
+
+    private static final long YEAR = (long) DoubleTimeSeries.MILLIS_PER_YEAR;
+
+    @Test
+    void replacesValueMeasuredAtSameTimestamp() {
+        DoubleTimeSeries series = new DoubleTimeSeries(4);
+        series.add(1000, 3.0);
+        series.add(2000, 2.0);
+        series.add(3000, 4.0);
+
+        // 중간 시각과 마지막 시각의 값을 각각 정정한다
+        series.add(2000, 3.5);
+        series.add(3000, 2.5);
+
+        assertThat(series.size()).isEqualTo(3);
+        SeriesStatistics statistics = series.statistics(Long.MIN_VALUE, Long.MAX_VALUE);
+        assertThat(statistics.getCount()).isEqualTo(3);
+        assertThat(statistics.getMin()).isEqualTo(2.5);
+        assertThat(statistics.getMax()).isEqualTo(3.5);
+        assertThat(statistics.getMean()).isCloseTo(3.0, within(1e-9));
+        assertThat(statistics.getLatestValue()).isEqualTo(2.5);
+    }
+
+    @Test
+    void keepsMeasurementsSortedWhenAddedOutOfOrder() {
+        // 초기 용량보다 많이 넣어서 배열이 늘어나는 경우도 확인한다
+        DoubleTimeSeries series = new DoubleTimeSeries(1);
+        series.add(3000, 3.0);
+        series.add(1000, 1.0);
+        series.add(4000, 4.0);
+        series.add(2000, 2.0);
+
+        assertThat(series.size()).isEqualTo(4);
+        SeriesStatistics statistics = series.statistics(Long.MIN_VALUE, Long.MAX_VALUE);
+        assertThat(statistics.getLatestValue()).isEqualTo(4.0);
+        assertThat(statistics.getLatestTime()).isEqualTo("1970-01-01T00:00:04Z");
+    }
+
+    @Test
+    void computesMinMaxMeanAndSlopeOverRange() {
+        // FVC 가 매년 0.03 L 씩 줄어드는 시계열
+        DoubleTimeSeries series = new DoubleTimeSeries(8);
+        for (int year = 0; year < 5; year++) {
+            series.add(year * YEAR, 4.00 - 0.03 * year);
+        }
+
+        SeriesStatistics statistics = series.statistics(Long.MIN_VALUE, Long.MAX_VALUE);
+        assertThat(statistics.getCount()).isEqualTo(5);
+        assertThat(statistics.getMin()).isCloseTo(3.88, within(1e-9));
+        assertThat(statistics.getMax()).isCloseTo(4.00, within(1e-9));
+        assertThat(statistics.getMean()).isCloseTo(3.94, within(1e-9));
+        assertThat(statistics.getSlopePerYear()).isCloseTo(-0.03, within(1e-6));
+        assertThat(statistics.getAnnualDeclineRate()).isCloseTo(0.03, within(1e-6));
+    }
+
+    @Test
+    void includesBothEndsOfRange() {
+        DoubleTimeSeries series = new DoubleTimeSeries(8);
+        for (int i = 1; i <= 5; i++) {
+            series.add(i * 1000L, i);
+        }
+
+        SeriesStatistics statistics = series.statistics(2000, 4000);
+        assertThat(statistics.getCount()).isEqualTo(3);
+        assertThat(statistics.getMin()).isEqualTo(2.0);
+        assertThat(statistics.getMax()).isEqualTo(4.0);
+        assertThat(statistics.getMean()).isCloseTo(3.0, within(1e-9));
+        assertThat(statistics.getLatestValue()).isEqualTo(4.0);
+    }
+
+    @Test
+    void returnsEmptyStatisticsForRangeWithoutMeasurements() {
+        DoubleTimeSeries series = new DoubleTimeSeries(4);
+        series.add(1000, 1.0);
+
+        SeriesStatistics statistics = series.statistics(2000, 3000);
+        assertThat(statistics.getCount()).isZero();
+        assertThat(statistics.getMean()).isNull();
+        assertThat(statistics.getLatestTime()).isNull();
+    }
+
+    @Test
+    void leavesSlopeUndefinedForSingleMeasurement() {
+        DoubleTimeSeries series = new DoubleTimeSeries(4);
+        series.add(1000, 3.2);
+
+        SeriesStatistics statistics = series.statistics(Long.MIN_VALUE, Long.MAX_VALUE);
+        assertThat(statistics.getCount()).isEqualTo(1);
+        assertThat(statistics.getMean()).isEqualTo(3.2);
+        assertThat(statistics.getSlopePerYear()).isNull();
+        assertThat(statistics.getAnnualDeclineRate()).isNull();
+    }
+}
@@ -0,0 +1,80 @@
+package com.aslan.pulmocarefhir.waveform;
+
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.assertj.core.api.Assertions.within;
+
+// 유량이 구간마다 일정한 합성 곡선으로 FVC/FEV1/PEF 를 확인하는 테스트
+class WaveformAnalyzerTest {
+
+    private static final int SAMPLE_RATE_HZ = 100;
+
+    @Test
+    void computesIndicesFromStartOfExpiration() {
+        // 호기 전 0.1 s, 6 L/s 로 0.5 s, 1 L/s 로 1 s, 0.5 L/s 로 0.5 s
+        SampleBuffer samples = curve(new float[]{0.0f, 6.0f, 1.0f, 0.5f}, new int[]{10, 50, 100, 50});
+
+        WaveformResult result = WaveformAnalyzer.analyze(samples, SAMPLE_RATE_HZ, 1000);
+
+        // 호기 시작 후 1초까지: 6 * 0.5 + 1 * 0.5
+        assertThat(result.getFev1()).isCloseTo(3.5, within(1e-9));
+        // 전체: 6 * 0.5 + 1 * 1 + 0.5 * 0.5
+        assertThat(result.getFvc()).isCloseTo(4.25, within(1e-9));
+        assertThat(result.getPef()).isCloseTo(6.0, within(1e-9));
+        assertThat(result.getFev1FvcRatio()).isCloseTo(3.5 / 4.25 * 100, within(1e-9));
+        assertThat(result.getSampleCount()).isEqualTo(210);
+    }
+
+    @Test
+    void limitsFev1ToFvcForExpirationShorterThanOneSecond() {
+        // 2 L/s 로 0.6 s 만 내쉰 측정
+        SampleBuffer samples = curve(new float[]{2.0f}, new int[]{60});
+
+        WaveformResult result = WaveformAnalyzer.analyze(samples, SAMPLE_RATE_HZ, 1000);
+
+        assertThat(result.getFvc()).isCloseTo(1.2, within(1e-9));
+        assertThat(result.getFev1()).isCloseTo(1.2, within(1e-9));
+        assertThat(result.getFev1FvcRatio()).isCloseTo(100.0, within(1e-9));
+        assertThat(result.getPef()).isCloseTo(2.0, within(1e-9));
+    }
+
+    @Test
+    void reducesCurveToAtMostMaxPoints() {
+        SampleBuffer samples = curve(new float[]{6.0f, 1.0f}, new int[]{50, 150});
+
+        WaveformResult result = WaveformAnalyzer.analyze(samples, SAMPLE_RATE_HZ, 20);
+
+        assertThat(result.getFlow()).hasSize(20);
+        assertThat(result.getVolume()).hasSize(20);
+        assertThat(result.getPeriodMillis()).isCloseTo(100.0, within(1e-9));
+        assertThat(result.getFlow()[0]).isCloseTo(6.0, within(1e-9));
+        assertThat(result.getFlow()[19]).isCloseTo(1.0, within(1e-9));
+        assertThat(result.getVolume()[4]).isCloseTo(3.0, within(1e-9));
+        assertThat(result.getVolume()[19]).isCloseTo(result.getFvc(), within(1e-9));
+    }
+
+    @Test
+    void rejectsCurveWithoutExpiration() {
+        SampleBuffer samples = curve(new float[]{0.1f}, new int[]{50});
+
+        assertThatThrownBy(() -> WaveformAnalyzer.analyze(samples, SAMPLE_RATE_HZ, 1000))
+                .isInstanceOf(IllegalArgumentException.class);
+    }
+
+    // flows[i] 유량을 counts[i] 개씩 이어 붙인 곡선을 만드는 메서드
+    private static SampleBuffer curve(float[] flows, int[] counts) {
+        int total = 0;
+        for (int count : counts) {
+            total += count;
+        }
+        SampleBuffer samples = new SampleBuffer(total);
+        for (int i = 0; i < flows.length; i++) {
+            for (int j = 0; j < counts[i]; j++) {
+                samples.add(flows[i]);
+            }
+        }
+        return samples;
+    }
+}